@@ -0,0 +1,112 @@
+package no.flaming_adventure.model;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Base of the JMH benchmarks of the data model against an {@link EmbeddedDatabase embedded database}.
+ *
+ * <p> Each trial starts a server of its own, fills it with the given number of reservations and rebuilds the daily
+ * occupancy, so a trial measures the same database every time. The benchmarks are in this package to reach the
+ * package-private internals of the data model, and are run with <code>gradle jmh</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public abstract class DatabaseBenchmark {
+
+    /************************************************************************
+     *
+     * Static fields
+     *
+     ************************************************************************/
+
+    /**
+     * Kept to keep the data model from logging every insert, the level of an unreferenced logger may be lost.
+     */
+    private static final Logger LOGGER = Logger.getLogger("no.flaming_adventure");
+
+    /************************************************************************
+     *
+     * Fields
+     *
+     ************************************************************************/
+
+    private EmbeddedDatabase database;
+
+    ConnectionPool  connectionPool;
+    DataModel       dataModel;
+
+    /************************************************************************
+     *
+     * Setup and teardown
+     *
+     ************************************************************************/
+
+    @Setup(Level.Trial)
+    public void startDatabase() throws Exception {
+        LOGGER.setLevel(java.util.logging.Level.WARNING);
+
+        database = EmbeddedDatabase.start();
+        connectionPool = database.open();
+        dataModel = new DataModel(connectionPool);
+        if (database.fill(reservations())) {
+            dataModel.rebuildOccupancy();
+        }
+        prepare();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopDatabase() throws Exception {
+        cleanUp();
+        connectionPool.close();
+        database.close();
+    }
+
+    /************************************************************************
+     *
+     * Package API
+     *
+     ************************************************************************/
+
+    /**
+     * Return the number of reservations to fill the database with, usually a <code>reservations</code> parameter.
+     */
+    abstract int reservations();
+
+    /**
+     * Prepare the benchmark once the database has been filled.
+     */
+    void prepare() throws Exception {
+    }
+
+    /**
+     * Release what was acquired by {@link #prepare()}, before the database is stopped.
+     */
+    void cleanUp() throws Exception {
+    }
+
+    /**
+     * Open a plain connection to the database, outside of the data model's pool.
+     */
+    Connection connect() throws SQLException {
+        return database.connect();
+    }
+}
@@ -0,0 +1,270 @@
+package no.flaming_adventure.model;
+
+import ch.vorburger.exec.ManagedProcessException;
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A scratch MariaDB server run by the benchmarks, so they don't need a database server of their own.
+ *
+ * <p> The server binaries are unpacked from the MariaDB4j jars to a temporary directory, and the server listens on a
+ * free port with a temporary data directory, both deleted when the process exits. Its database starts out with
+ * version 0 of the schema (<code>src/dist/schema.ddl</code>), is migrated to the latest schema when opened and
+ * filled with generated records as needed.
+ */
+final class EmbeddedDatabase implements AutoCloseable {
+
+    /************************************************************************
+     *
+     * Static fields
+     *
+     ************************************************************************/
+
+    private static final String DATABASE = "flaming_adventure_bench";
+    private static final String USERNAME = "root";
+    private static final String PASSWORD = "";
+
+    private static final String SCHEMA = "schema.ddl";
+
+    private static final int HUTS = 20;
+
+    private static final int BATCH_SIZE = 1000;
+
+    /**
+     * Generated records are dated within this many days of today, in either direction.
+     */
+    private static final int DAYS = 3 * 365;
+
+    /************************************************************************
+     *
+     * Fields
+     *
+     ************************************************************************/
+
+    private final DB        server;
+    private final String    URL;
+
+    private final Random random = new Random(42);
+
+    /************************************************************************
+     *
+     * Constructors
+     *
+     ************************************************************************/
+
+    private EmbeddedDatabase(DB server, String URL) {
+        this.server = server;
+        this.URL    = URL;
+    }
+
+    /************************************************************************
+     *
+     * Package API
+     *
+     ************************************************************************/
+
+    /**
+     * Start a server and create the database.
+     */
+    static EmbeddedDatabase start() throws IOException, ManagedProcessException, SQLException {
+        DBConfigurationBuilder config = DBConfigurationBuilder.newBuilder();
+        config.setPort(0);
+        // Each server unpacks its binaries to a directory of its own, as the default one is deleted by the shutdown
+        // hook of whichever process stops first, e.g. the previous JMH fork.
+        config.setBaseDir(Files.createTempDirectory("MariaDB4j").toString());
+        // The server refuses to run as root unless told to, which it is in containers.
+        config.addArg("--user=" + System.getProperty("user.name"));
+
+        DB server = DB.newEmbeddedDB(config.build());
+        server.start();
+        try {
+            // The database is created over JDBC rather than with DB.createDB(), which needs the mysql client's
+            // shared libraries to be installed.
+            try (Connection connection = DriverManager.getConnection(config.getURL(""), USERNAME, PASSWORD);
+                 Statement stmt = connection.createStatement()) {
+                stmt.executeUpdate("CREATE DATABASE " + DATABASE + ";");
+            }
+
+            EmbeddedDatabase database = new EmbeddedDatabase(server, config.getURL(DATABASE));
+            try (Connection connection = database.connect();
+                 Statement stmt = connection.createStatement()) {
+                // The tables of the initial schema refer to each other regardless of the order they are created in.
+                stmt.execute("SET foreign_key_checks = 0;");
+                for (String statement : readSchema()) {
+                    stmt.execute(statement);
+                }
+            }
+            return database;
+        } catch (SQLException | RuntimeException e) {
+            server.stop();
+            throw e;
+        }
+    }
+
+    /**
+     * Open a connection pool to the database, migrating it to the latest schema.
+     */
+    ConnectionPool open() throws SQLException {
+        ConnectionPool connectionPool = new ConnectionPool(URL, USERNAME, PASSWORD);
+        new SchemaMigrator(connectionPool).migrate();
+        return connectionPool;
+    }
+
+    /**
+     * Open a plain connection to the database, outside of any pool.
+     */
+    Connection connect() throws SQLException {
+        return DriverManager.getConnection(URL, USERNAME, PASSWORD);
+    }
+
+    /**
+     * Generate reservations until there are at least the given number of them, and a broken and a forgotten item for
+     * every twentieth reservation.
+     *
+     * <p> The daily occupancy is not maintained, it must be rebuilt afterwards if any records were generated.
+     *
+     * @return true if any records were generated.
+     */
+    boolean fill(int reservations) throws SQLException {
+        String batchURL = URL + (URL.contains("?") ? "&" : "?") + "rewriteBatchedStatements=true";
+        try (Connection connection = DriverManager.getConnection(batchURL, USERNAME, PASSWORD)) {
+            int[] hutIds = huts(connection);
+            int missing = reservations - count(connection, "reservations");
+            if (missing <= 0) { return false; }
+
+            // Note that the driver only rewrites batches of statements without a trailing semicolon.
+            connection.setAutoCommit(false);
+            try (PreparedStatement reservation = connection.prepareStatement(
+                         "INSERT INTO reservations (hut_id, date, name, email, count) VALUES (?, ?, ?, ?, ?)");
+                 PreparedStatement broken = connection.prepareStatement(
+                         "INSERT INTO broken_items (hut_id, item, date, fixed) VALUES (?, ?, ?, ?)");
+                 PreparedStatement forgotten = connection.prepareStatement(
+                         "INSERT INTO forgotten_items (hut_id, item, name, contact, date, delivered) " +
+                         "VALUES (?, ?, ?, ?, ?, ?)")) {
+                for (int i = 1; i <= missing; i++) {
+                    int hutId = hutIds[random.nextInt(hutIds.length)];
+                    Date date = randomDate();
+
+                    reservation.setInt(1, hutId);
+                    reservation.setDate(2, date);
+                    reservation.setString(3, "Guest " + i);
+                    reservation.setString(4, "guest" + i + "@example.com");
+                    reservation.setInt(5, 1 + random.nextInt(6));
+                    reservation.addBatch();
+
+                    if (i % 20 == 0) {
+                        broken.setInt(1, hutId);
+                        broken.setString(2, "Item " + i);
+                        broken.setDate(3, date);
+                        broken.setBoolean(4, random.nextBoolean());
+                        broken.addBatch();
+
+                        forgotten.setInt(1, hutId);
+                        forgotten.setString(2, "Item " + i);
+                        forgotten.setString(3, "Guest " + i);
+                        forgotten.setString(4, "guest" + i + "@example.com");
+                        forgotten.setDate(5, date);
+                        forgotten.setBoolean(6, random.nextBoolean());
+                        forgotten.addBatch();
+                    }
+
+                    if (i % BATCH_SIZE == 0 || i == missing) {
+                        reservation.executeBatch();
+                        broken.executeBatch();
+                        forgotten.executeBatch();
+                        connection.commit();
+                    }
+                }
+            } finally {
+                connection.setAutoCommit(true);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Stop the server.
+     */
+    @Override public void close() throws ManagedProcessException {
+        server.stop();
+    }
+
+    /************************************************************************
+     *
+     * Private implementation
+     *
+     ************************************************************************/
+
+    private int[] huts(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            for (int i = count(connection, "huts"); i < HUTS; i++) {
+                stmt.executeUpdate("INSERT INTO huts (name, capacity, firewood) VALUES ('Hut " + i + "', " +
+                                   (10 + random.nextInt(30)) + ", 0);");
+            }
+            ResultSet resultSet = stmt.executeQuery("SELECT id FROM huts;");
+            int[] ids = new int[count(connection, "huts")];
+            for (int i = 0; resultSet.next(); i++) {
+                ids[i] = resultSet.getInt(1);
+            }
+            return ids;
+        }
+    }
+
+    private static int count(Connection connection, String table) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            ResultSet resultSet = stmt.executeQuery("SELECT COUNT(*) FROM " + table + ";");
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    private Date randomDate() {
+        return Date.valueOf(LocalDate.now().plusDays(random.nextInt(2 * DAYS + 1) - DAYS));
+    }
+
+    /**
+     * Read the statements of the initial schema, each terminated by a semicolon at the end of a line.
+     */
+    private static List<String> readSchema() {
+        InputStream stream = EmbeddedDatabase.class.getClassLoader().getResourceAsStream(SCHEMA);
+        if (stream == null) {
+            throw new IllegalStateException("Missing schema: " + SCHEMA);
+        }
+
+        List<String> statements = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            StringBuilder builder = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("--")) { continue; }
+                builder.append(line).append('\n');
+                if (trimmed.endsWith(";")) {
+                    statements.add(builder.toString());
+                    builder.setLength(0);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read schema: " + SCHEMA, e);
+        }
+        return statements;
+    }
+}
@@ -0,0 +1,96 @@
+package no.flaming_adventure.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Measures the insertion of records, per record, one at a time as entered in the forms and in batches as imported.
+ *
+ * <p> The records are created anew for every call, since inserting them sets their IDs. Every call adds to the
+ * tables, so the later iterations of a trial insert into slightly larger tables than the first.
+ */
+public class InsertPathBenchmark extends DatabaseBenchmark {
+
+    private static final int BATCH = 100;
+
+    @Param({"10000"})
+    public int reservations;
+
+    private final LocalDate today = LocalDate.now();
+
+    private List<Hut> huts;
+
+    private int record = 0;
+
+    @Benchmark
+    public void insertReservation() throws SQLException {
+        dataModel.insertReservation(reservation(record++));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void insertReservations() throws SQLException {
+        dataModel.insertReservations(batch(this::reservation));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void insertBrokenItems() throws SQLException {
+        dataModel.insertBrokenItems(batch(i -> new BrokenItem(-1, hut(i), "Item " + i, date(i), false, null)));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void insertForgottenItems() throws SQLException {
+        dataModel.insertForgottenItems(batch(i -> new ForgottenItem(-1, hut(i), "Item " + i, "Guest " + i,
+                                                                    "guest" + i + "@example.com", date(i), false,
+                                                                    null)));
+    }
+
+    @Benchmark
+    public void insertEquipmentItem() throws SQLException {
+        int i = record++;
+        dataModel.insertEquipment(new Equipment(-1, hut(i), "Item " + i, date(i), 1));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void insertEquipment() throws SQLException {
+        dataModel.insertEquipment(batch(i -> new Equipment(-1, hut(i), "Item " + i, date(i), 1)));
+    }
+
+    @Override int reservations() {
+        return reservations;
+    }
+
+    @Override void prepare() throws Exception {
+        huts = dataModel.getHuts();
+    }
+
+    private Reservation reservation(int i) {
+        return new Reservation(-1, hut(i), date(i), "Guest " + i, "guest" + i + "@example.com", 1, null);
+    }
+
+    private <T> List<T> batch(IntFunction<T> record) {
+        List<T> records = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            records.add(record.apply(this.record++));
+        }
+        return records;
+    }
+
+    private Hut hut(int i) {
+        return huts.get(i % huts.size());
+    }
+
+    private LocalDate date(int i) {
+        return today.plusDays(i % 365);
+    }
+}
@@ -0,0 +1,41 @@
+package no.flaming_adventure.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Measures the lookup of a hut's occupancy at a date, as done for every reservation entered in the form.
+ *
+ * <p> Successive calls cycle through the huts and the dates of the coming year, so they don't all hit the same row.
+ */
+public class OccupancyBenchmark extends DatabaseBenchmark {
+
+    private static final int DAYS = 365;
+
+    @Param({"10000"})
+    public int reservations;
+
+    private final LocalDate today = LocalDate.now();
+
+    private List<Hut> huts;
+
+    private int call = 0;
+
+    @Benchmark
+    public Integer occupancy() throws SQLException {
+        int i = call++;
+        return dataModel.occupancy(huts.get(i % huts.size()), today.plusDays(i % DAYS));
+    }
+
+    @Override int reservations() {
+        return reservations;
+    }
+
+    @Override void prepare() throws Exception {
+        huts = dataModel.getHuts();
+    }
+}
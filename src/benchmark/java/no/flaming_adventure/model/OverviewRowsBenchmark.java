@@ -0,0 +1,141 @@
+package no.flaming_adventure.model;
+
+import javafx.collections.ObservableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+/**
+ * Measures the retrieval of the overview's rows for several date ranges and numbers of reservations, and compares it
+ * with the overview query it replaced, which aggregated whole tables without the help of an index, both as originally
+ * written against <code>reservations</code> and as later changed to read <code>hut_daily_occupancy</code>.
+ *
+ * <p> The difference shows best at a million reservations. Loading them into the embedded database takes a while, so
+ * the smaller sizes can be run on their own with e.g. <code>-p reservations=1000,10000</code>.
+ */
+public class OverviewRowsBenchmark extends DatabaseBenchmark {
+
+    /**
+     * The date ranges of the overview.
+     */
+    public enum Range {
+        NEXT_MONTH  (0, 30),
+        PAST_YEAR   (-365, 0),
+        FROM_TODAY  (0, null),
+        ALL         (null, null);
+
+        private final Integer fromDays;
+        private final Integer toDays;
+
+        Range(Integer fromDays, Integer toDays) {
+            this.fromDays   = fromDays;
+            this.toDays     = toDays;
+        }
+
+        LocalDate from(LocalDate today) {
+            return fromDays == null ? null : today.plusDays(fromDays);
+        }
+
+        LocalDate to(LocalDate today) {
+            return toDays == null ? null : today.plusDays(toDays);
+        }
+    }
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int reservations;
+
+    @Param
+    public Range range;
+
+    private final LocalDate today = LocalDate.now();
+
+    private LocalDate from;
+    private LocalDate to;
+
+    private Connection          connection;
+    private PreparedStatement   previousReservations;
+    private PreparedStatement   previousOccupancy;
+
+    @Benchmark
+    public ObservableList<OverviewRow> current() throws SQLException {
+        return dataModel.overviewRows(from, to);
+    }
+
+    @Benchmark
+    public int previousReservations() throws SQLException {
+        return drain(previousReservations);
+    }
+
+    @Benchmark
+    public int previousOccupancy() throws SQLException {
+        return drain(previousOccupancy);
+    }
+
+    @Override int reservations() {
+        return reservations;
+    }
+
+    @Override void prepare() throws Exception {
+        from = range.from(today);
+        to = range.to(today);
+
+        connection = connect();
+        previousReservations = preparePrevious("reservations", "count");
+        previousOccupancy = preparePrevious("hut_daily_occupancy", "guests");
+    }
+
+    @Override void cleanUp() throws Exception {
+        connection.close();
+    }
+
+    private static int drain(PreparedStatement stmt) throws SQLException {
+        int rows = 0;
+        try (ResultSet resultSet = stmt.executeQuery()) {
+            while (resultSet.next()) { rows++; }
+        }
+        return rows;
+    }
+
+    /**
+     * Prepare the overview query as it was before it was rewritten, aggregating the given table for the occupancy.
+     */
+    private PreparedStatement preparePrevious(String table, String column) throws SQLException {
+        String range;
+        if (from != null && to != null) {
+            range = "WHERE date BETWEEN ? AND ?\n";
+        } else if (from != null) {
+            range = "WHERE date >= ?\n";
+        } else if (to != null) {
+            range = "WHERE date <= ?\n";
+        } else {
+            range = "";
+        }
+
+        String sql = "SELECT\n" +
+                     "  huts.*, R.count, N.next, B.broken_count, F.forgotten_count\n" +
+                     "FROM huts\n" +
+                     "  LEFT JOIN (SELECT hut_id, SUM(" + column + ") AS count FROM " + table + "\n" + range +
+                     "             GROUP BY hut_id) AS R ON R.hut_id = huts.id\n" +
+                     "  LEFT JOIN (SELECT hut_id, MIN(date) AS next FROM " + table + "\n" +
+                     "             WHERE date >= '" + Date.valueOf(today) + "'\n" +
+                     "             GROUP BY hut_id) AS N ON N.hut_id = huts.id\n" +
+                     "  LEFT JOIN (SELECT hut_id, COUNT(id) AS broken_count FROM broken_items\n" + range +
+                     "             GROUP BY hut_id) AS B ON B.hut_id = huts.id\n" +
+                     "  LEFT JOIN (SELECT hut_id, COUNT(id) AS forgotten_count FROM forgotten_items\n" + range +
+                     "             GROUP BY hut_id) AS F ON F.hut_id = huts.id;";
+
+        PreparedStatement stmt = connection.prepareStatement(sql);
+        int i = 1;
+        for (int subquery = 0; subquery < 3; subquery++) {
+            if (from != null) { stmt.setDate(i++, Date.valueOf(from)); }
+            if (to != null) { stmt.setDate(i++, Date.valueOf(to)); }
+        }
+        return stmt;
+    }
+}
@@ -0,0 +1,75 @@
+package no.flaming_adventure.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the generation of the page and count queries, which is done for every page retrieved. No database is
+ * involved, only the building of the SQL and its parameters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class QueryGenerationBenchmark {
+
+    private final Hut       hut     = new Hut(1, "Hut 1", 20, 0);
+    private final LocalDate from    = LocalDate.of(2015, 1, 1);
+    private final LocalDate to      = LocalDate.of(2015, 12, 31);
+
+    /**
+     * A page of unfiltered records.
+     */
+    @Benchmark
+    public SQLQuery page() {
+        return DataModel.genSQLGenericPage("reservations", 0, 50, "hut_id", null, "date", null, null, null, null);
+    }
+
+    /**
+     * A page of records filtered on hut and dates.
+     */
+    @Benchmark
+    public SQLQuery filteredPage() {
+        return DataModel.genSQLGenericPage("reservations", 0, 50, "hut_id", hut, "date", from, to,
+                                           "reservations.id", null);
+    }
+
+    /**
+     * A page located by a seek predicate, with its total counted along with it, as the tables retrieve them.
+     */
+    @Benchmark
+    public SQLQuery seekPage() {
+        SQLQuery count = DataModel.genSQLGenericCount("broken_items", hut, "date", from, to, "fixed = 0");
+        return DataModel.genSQLGenericPage("broken_items", 0, 50, "hut_id", hut, "date", from, to,
+                                           "broken_items.id", "fixed = 0", null, "broken_items.id > ?",
+                                           Arrays.asList(1000), count);
+    }
+
+    /**
+     * A page of records matching a full-text search, ranked by relevance.
+     */
+    @Benchmark
+    public SQLQuery searchPage() {
+        return DataModel.genSQLGenericPage("forgotten_items", 0, 50, "hut_id", null, "date", null, null, null, null,
+                                           "blue jacket", null, Collections.emptyList(), null);
+    }
+
+    @Benchmark
+    public SQLQuery count() {
+        return DataModel.genSQLGenericCount("reservations", hut, "date", from, to, null);
+    }
+}
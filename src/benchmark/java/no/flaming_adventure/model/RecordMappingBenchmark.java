@@ -0,0 +1,256 @@
+package no.flaming_adventure.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures the mapping of 10k rows to records by the data model's row mappers, against mapping them by column label.
+ *
+ * <p> A page of 10k records of each kind is selected once, with the query the data model would use, into a
+ * scrollable result set that is mapped repeatedly, so only the mapping is measured and not the query. The
+ * <code>ByLabel</code> benchmarks look every column up by its qualified label, as the data model did before the row
+ * mappers, which resolve the column indexes once per query and then read by index.
+ *
+ * <p> Reservations are also mapped with every property created afterwards, as when the properties were created up
+ * front. Run with <code>-prof gc</code>, the allocations per operation (<code>gc.alloc.rate.norm</code>) are the bytes
+ * allocated per 10k rows, the difference between the two being what is saved for rows that are never bound to a view.
+ */
+public class RecordMappingBenchmark extends DatabaseBenchmark {
+
+    /************************************************************************
+     *
+     * Static fields
+     *
+     ************************************************************************/
+
+    /**
+     * The number of rows mapped per operation.
+     */
+    private static final int ROWS = 10000;
+
+    /************************************************************************
+     *
+     * Fields
+     *
+     ************************************************************************/
+
+    /**
+     * A broken and a forgotten item are generated for every twentieth reservation, and a page of each is inserted on
+     * top.
+     */
+    @Param({"20000"})
+    public int reservations;
+
+    private final Map<Integer, Hut> hutsById = new HashMap<>();
+
+    private Connection connection;
+
+    private Rows reservationRows;
+    private Rows forgottenItemRows;
+    private Rows brokenItemRows;
+    private Rows equipmentRows;
+
+    /************************************************************************
+     *
+     * Benchmarks
+     *
+     ************************************************************************/
+
+    @Benchmark
+    public List<Reservation> mapReservations() throws SQLException {
+        return map(dataModel.reservationMapper, reservationRows);
+    }
+
+    @Benchmark
+    public List<Reservation> mapReservationsByLabel() throws SQLException {
+        List<Reservation> records = new ArrayList<>(ROWS);
+        ResultSet resultSet = reservationRows.resultSet;
+        resultSet.beforeFirst();
+        while (resultSet.next()) {
+            records.add(new Reservation(resultSet.getInt("reservations.id"),
+                                        hutsById.get(resultSet.getInt("reservations.hut_id")),
+                                        resultSet.getDate("reservations.date").toLocalDate(),
+                                        resultSet.getString("reservations.name"),
+                                        resultSet.getString("reservations.email"),
+                                        resultSet.getInt("reservations.count"),
+                                        resultSet.getString("reservations.comment")));
+        }
+        return records;
+    }
+
+    @Benchmark
+    public List<Reservation> mapReservationsWithProperties() throws SQLException {
+        List<Reservation> records = map(dataModel.reservationMapper, reservationRows);
+        for (Reservation reservation : records) {
+            reservation.idProperty();
+            reservation.hutProperty();
+            reservation.dateProperty();
+            reservation.nameProperty();
+            reservation.emailProperty();
+            reservation.countProperty();
+            reservation.commentProperty();
+        }
+        return records;
+    }
+
+    @Benchmark
+    public List<ForgottenItem> mapForgottenItems() throws SQLException {
+        return map(dataModel.forgottenItemMapper, forgottenItemRows);
+    }
+
+    @Benchmark
+    public List<ForgottenItem> mapForgottenItemsByLabel() throws SQLException {
+        List<ForgottenItem> records = new ArrayList<>(ROWS);
+        ResultSet resultSet = forgottenItemRows.resultSet;
+        resultSet.beforeFirst();
+        while (resultSet.next()) {
+            records.add(new ForgottenItem(resultSet.getInt("forgotten_items.id"),
+                                          hutsById.get(resultSet.getInt("forgotten_items.hut_id")),
+                                          resultSet.getString("forgotten_items.item"),
+                                          resultSet.getString("forgotten_items.name"),
+                                          resultSet.getString("forgotten_items.contact"),
+                                          resultSet.getDate("forgotten_items.date").toLocalDate(),
+                                          resultSet.getBoolean("forgotten_items.delivered"),
+                                          resultSet.getString("forgotten_items.comment")));
+        }
+        return records;
+    }
+
+    @Benchmark
+    public List<BrokenItem> mapBrokenItems() throws SQLException {
+        return map(dataModel.brokenItemMapper, brokenItemRows);
+    }
+
+    @Benchmark
+    public List<BrokenItem> mapBrokenItemsByLabel() throws SQLException {
+        List<BrokenItem> records = new ArrayList<>(ROWS);
+        ResultSet resultSet = brokenItemRows.resultSet;
+        resultSet.beforeFirst();
+        while (resultSet.next()) {
+            records.add(new BrokenItem(resultSet.getInt("broken_items.id"),
+                                       hutsById.get(resultSet.getInt("broken_items.hut_id")),
+                                       resultSet.getString("broken_items.item"),
+                                       resultSet.getDate("broken_items.date").toLocalDate(),
+                                       resultSet.getBoolean("broken_items.fixed"),
+                                       resultSet.getString("broken_items.comment")));
+        }
+        return records;
+    }
+
+    @Benchmark
+    public List<Equipment> mapEquipment() throws SQLException {
+        return map(dataModel.equipmentMapper, equipmentRows);
+    }
+
+    @Benchmark
+    public List<Equipment> mapEquipmentByLabel() throws SQLException {
+        List<Equipment> records = new ArrayList<>(ROWS);
+        ResultSet resultSet = equipmentRows.resultSet;
+        resultSet.beforeFirst();
+        while (resultSet.next()) {
+            records.add(new Equipment(resultSet.getInt("equipment.id"),
+                                      hutsById.get(resultSet.getInt("equipment.hut_id")),
+                                      resultSet.getString("equipment.name"),
+                                      resultSet.getDate("equipment.purchase_date").toLocalDate(),
+                                      resultSet.getInt("equipment.count")));
+        }
+        return records;
+    }
+
+    /************************************************************************
+     *
+     * Package API
+     *
+     ************************************************************************/
+
+    @Override int reservations() {
+        return reservations;
+    }
+
+    @Override void prepare() throws Exception {
+        List<Hut> huts = dataModel.getHuts();
+        for (Hut hut : huts) {
+            hutsById.put(hut.getId(), hut);
+        }
+        List<Equipment>     equipment       = new ArrayList<>(ROWS);
+        List<ForgottenItem> forgottenItems  = new ArrayList<>(ROWS);
+        List<BrokenItem>    brokenItems     = new ArrayList<>(ROWS);
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < ROWS; i++) {
+            Hut hut = huts.get(i % huts.size());
+            equipment.add(new Equipment(-1, hut, "Item " + i, today, 1));
+            forgottenItems.add(new ForgottenItem(-1, hut, "Item " + i, "Name " + i, "name" + i + "@example.com",
+                                                 today, false, "Comment " + i));
+            brokenItems.add(new BrokenItem(-1, hut, "Item " + i, today, false, "Comment " + i));
+        }
+        dataModel.insertEquipment(equipment);
+        dataModel.insertForgottenItems(forgottenItems);
+        dataModel.insertBrokenItems(brokenItems);
+
+        connection = connect();
+        reservationRows     = select("reservations", "date");
+        forgottenItemRows   = select("forgotten_items", "date");
+        brokenItemRows      = select("broken_items", "date");
+        equipmentRows       = select("equipment", "purchase_date");
+    }
+
+    @Override void cleanUp() throws Exception {
+        connection.close();
+    }
+
+    /************************************************************************
+     *
+     * Private implementation
+     *
+     ************************************************************************/
+
+    /**
+     * A page of rows and the query they were selected with, which the row mappers resolve their columns for.
+     */
+    private static final class Rows {
+        private final String    sql;
+        private final ResultSet resultSet;
+
+        private Rows(String sql, ResultSet resultSet) {
+            this.sql        = sql;
+            this.resultSet  = resultSet;
+        }
+    }
+
+    private Rows select(String table, String dateField) throws SQLException {
+        SQLQuery query = DataModel.genSQLGenericPage(table, 0, ROWS, "hut_id", null, dateField, null, null,
+                                                     table + ".id", null);
+        PreparedStatement stmt = connection.prepareStatement(query.getSQL(), ResultSet.TYPE_SCROLL_INSENSITIVE,
+                                                             ResultSet.CONCUR_READ_ONLY);
+        List<Object> parameters = query.getParameters();
+        for (int i = 0; i < parameters.size(); i++) {
+            stmt.setObject(i + 1, parameters.get(i));
+        }
+        ResultSet resultSet = stmt.executeQuery();
+        if (! resultSet.absolute(ROWS)) {
+            throw new IllegalStateException("Less than " + ROWS + " rows in " + table + ".");
+        }
+        return new Rows(query.getSQL(), resultSet);
+    }
+
+    private static <T> List<T> map(RowMapper<T> mapper, Rows rows) throws SQLException {
+        List<T> records = new ArrayList<>(ROWS);
+        ResultSet resultSet = rows.resultSet;
+        resultSet.beforeFirst();
+        int[] columns = mapper.columnsFor(rows.sql, resultSet);
+        while (resultSet.next()) {
+            records.add(mapper.read(resultSet, columns));
+        }
+        return records;
+    }
+}
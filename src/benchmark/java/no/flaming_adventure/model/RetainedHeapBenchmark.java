@@ -0,0 +1,143 @@
+package no.flaming_adventure.model;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the heap retained by reservations loaded into memory, in bytes per row.
+ *
+ * <p> The reservations are measured as loaded, with their properties not yet created, and again after every property
+ * has been asked for, which is about what every reservation used to take up when the properties were created up
+ * front. The difference is what is saved for rows that are never bound to a view. Unlike the allocations reported by
+ * <code>-prof gc</code> for {@link RecordMappingBenchmark}, this only counts what is still reachable once loaded.
+ *
+ * <p> The results are the secondary counters of {@link Retained}, the time per operation mostly being spent
+ * collecting garbage. An operation takes longer than an iteration, so each iteration measures a single load. JMH adds
+ * up the counters of the measured iterations, so only one is measured, the warmup iterations showing how much the
+ * results vary. The heap is measured after forcing garbage collections, so the results are only approximate and best
+ * compared with each other.
+ *
+ * <p> Run with <code>gradle jmh -PjmhArgs=RetainedHeap</code>, the counters are the <code>secondaryMetrics</code> of
+ * the results. Figures quoted for the retained heap should come from this benchmark at its default of 100k rows.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 1)
+public class RetainedHeapBenchmark extends DatabaseBenchmark {
+
+    /************************************************************************
+     *
+     * Fields
+     *
+     ************************************************************************/
+
+    /**
+     * The number of reservations loaded, all of which are in the database.
+     */
+    @Param({"100000"})
+    public int rows;
+
+    /************************************************************************
+     *
+     * Benchmarks
+     *
+     ************************************************************************/
+
+    /**
+     * The heap retained per row, reported with the results of every iteration.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Retained {
+        /**
+         * The reservations as loaded.
+         */
+        public long loadedBytesPerRow;
+
+        /**
+         * The reservations with every property created.
+         */
+        public long boundBytesPerRow;
+
+        /**
+         * The properties alone, the difference between the two.
+         */
+        public long propertyBytesPerRow;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            loadedBytesPerRow   = 0;
+            boundBytesPerRow    = 0;
+            propertyBytesPerRow = 0;
+        }
+    }
+
+    @Benchmark
+    public List<Reservation> loadReservations(Retained retained) throws Exception {
+        long before = usedHeap();
+        List<Reservation> reservations = dataModel.reservationPage(0, rows, null, null, null, null);
+        long loaded = usedHeap();
+
+        for (Reservation reservation : reservations) {
+            reservation.idProperty();
+            reservation.hutProperty();
+            reservation.dateProperty();
+            reservation.nameProperty();
+            reservation.emailProperty();
+            reservation.countProperty();
+            reservation.commentProperty();
+        }
+        long bound = usedHeap();
+
+        retained.loadedBytesPerRow      = (loaded - before) / reservations.size();
+        retained.boundBytesPerRow       = (bound - before) / reservations.size();
+        retained.propertyBytesPerRow    = (bound - loaded) / reservations.size();
+        return reservations;
+    }
+
+    /************************************************************************
+     *
+     * Package API
+     *
+     ************************************************************************/
+
+    @Override int reservations() {
+        return rows;
+    }
+
+    @Override void prepare() throws Exception {
+        // Load the huts and warm up the driver, so that they aren't counted as part of the rows.
+        dataModel.reservationPage(0, 1000, null, null, null, null);
+    }
+
+    /************************************************************************
+     *
+     * Private implementation
+     *
+     ************************************************************************/
+
+    /**
+     * Return the heap in use after collecting garbage.
+     */
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(100);
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
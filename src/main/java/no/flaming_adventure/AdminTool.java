@@ -0,0 +1,155 @@
+package no.flaming_adventure;
+
+import no.flaming_adventure.model.ConnectionPool;
+import no.flaming_adventure.model.DataModel;
+import no.flaming_adventure.model.SchemaMigrator;
+
+import java.io.Console;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Commandline entry point for administrative tasks that shouldn't require starting the application.
+ *
+ * <p> Usage: <code>AdminTool &lt;command&gt; &lt;database URL&gt; &lt;username&gt; [arguments]</code>. The password is
+ * read from the <code>FA_DB_PASSWORD</code> environment variable if set, otherwise it is prompted for.
+ *
+ * <p> Commands:
+ * <ul>
+ *     <li><code>migrate</code>: apply any pending {@link SchemaMigrator schema migrations}.</li>
+ *     <li><code>status</code>: list the schema migrations that haven't been applied.</li>
+ *     <li><code>rebuild-occupancy</code>: recompute the daily occupancy of every hut from the reservations, see
+ *     {@link DataModel#rebuildOccupancy()}.</li>
+ * </ul>
+ */
+public class AdminTool {
+
+    /***************************************************************************
+     *                                                                         *
+     * Static variables and methods                                            *
+     *                                                                         *
+     **************************************************************************/
+
+    private static final String DB_DRIVER = "com.mysql.jdbc.Driver";
+
+    private static final String PASSWORD_VARIABLE = "FA_DB_PASSWORD";
+
+    private static final List<String> COMMANDS = Arrays.asList("migrate", "status", "rebuild-occupancy");
+
+    private static final List<String> IMPORT_COMMANDS = Arrays.asList("import-reservations", "import-equipment");
+
+    private static final String USAGE = "Usage: AdminTool <" + String.join("|", COMMANDS) + "> <database URL> " +
+                                        "<username>\n" +
+                                        "       AdminTool <" + String.join("|", IMPORT_COMMANDS) + "> " +
+                                        "<database URL> <username> <file> [chunk size > 0]";
+
+    /**
+     * Program entry point.
+     *
+     * @param args commandline arguments.
+     */
+    public static void main(String[] args) throws Exception {
+        boolean valid = args.length == 3 && COMMANDS.contains(args[0])
+                        || (args.length == 4 || args.length == 5) && IMPORT_COMMANDS.contains(args[0]);
+        int chunkSize = CsvImporter.DEFAULT_CHUNK_SIZE;
+        if (valid && args.length == 5) {
+            chunkSize = parseChunkSize(args[4]);
+            valid = chunkSize > 0;
+        }
+        if (! valid) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        String command  = args[0];
+        String URL      = args[1];
+        String username = args[2];
+
+        if (! URL.startsWith("jdbc:mysql://")) {
+            URL = "jdbc:mysql://" + URL;
+        }
+
+        Class.forName(DB_DRIVER);
+        try (ConnectionPool connectionPool = new ConnectionPool(URL, username, readPassword())) {
+            switch (command) {
+                case "migrate":
+                    migrate(connectionPool);
+                    break;
+                case "status":
+                    status(connectionPool);
+                    break;
+                case "rebuild-occupancy":
+                    rebuildOccupancy(connectionPool);
+                    break;
+                case "import-reservations":
+                case "import-equipment":
+                    importFile(connectionPool, command, Paths.get(args[3]), chunkSize);
+                    break;
+            }
+        } catch (SQLException | IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void migrate(ConnectionPool connectionPool) throws SQLException {
+        SchemaMigrator migrator = new SchemaMigrator(connectionPool);
+        List<Integer> applied = migrator.migrate();
+        if (applied.isEmpty()) {
+            System.out.println("The schema is up to date at version " + migrator.latestVersion() + ".");
+        } else {
+            System.out.println("Applied migrations " + applied + ", the schema is now at version " +
+                               migrator.latestVersion() + ".");
+        }
+    }
+
+    private static void status(ConnectionPool connectionPool) throws SQLException {
+        SchemaMigrator migrator = new SchemaMigrator(connectionPool);
+        List<Integer> pending = migrator.pendingVersions();
+        if (pending.isEmpty()) {
+            System.out.println("The schema is up to date at version " + migrator.latestVersion() + ".");
+        } else {
+            System.out.println("Pending migrations: " + pending + ".");
+        }
+    }
+
+    private static void rebuildOccupancy(ConnectionPool connectionPool) throws SQLException {
+        int rows = new DataModel(connectionPool).rebuildOccupancy();
+        System.out.println("Rebuilt the occupancy of " + rows + " hut days.");
+    }
+
+    private static void importFile(ConnectionPool connectionPool, String command, Path file, int chunkSize)
+            throws IOException, SQLException {
+        CsvImporter importer = new CsvImporter(new DataModel(connectionPool), chunkSize, System.out);
+        long rejected = command.equals("import-reservations") ? importer.importReservations(file)
+                                                               : importer.importEquipment(file);
+        if (rejected > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Parse the given chunk size, returning 0 if it isn't a number.
+     */
+    private static int parseChunkSize(String chunkSize) {
+        try {
+            return Integer.parseInt(chunkSize);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static String readPassword() {
+        String password = System.getenv(PASSWORD_VARIABLE);
+        if (password != null) { return password; }
+
+        Console console = System.console();
+        if (console == null) { return ""; }
+        char[] chars = console.readPassword("Password: ");
+        return chars == null ? "" : new String(chars);
+    }
+}
@@ -1,21 +1,25 @@
 package no.flaming_adventure;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 import no.flaming_adventure.controller.LoginController;
 import no.flaming_adventure.controller.MainController;
+import no.flaming_adventure.model.AsyncDataModel;
+import no.flaming_adventure.model.ConnectionPool;
 import no.flaming_adventure.model.DataModel;
+import no.flaming_adventure.util.ErrorAlert;
 import no.flaming_adventure.util.UnhandledExceptionDialog;
 
 import java.net.URL;
-import java.sql.Connection;
 import java.text.NumberFormat;
 import java.time.format.DateTimeFormatter;
 import java.time.format.FormatStyle;
 import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -65,6 +69,17 @@ public class App extends Application {
      */
     private static final String DB_DRIVER = "com.mysql.jdbc.Driver";
 
+    /**
+     * How often the database is polled for modifications made by other clients.
+     */
+    private static final long CHANGE_POLL_SECONDS = 5;
+
+    /**
+     * Generated queries taking longer than this are logged and explained, see the diagnostics tab. Can be set with the
+     * <code>flaming_adventure.slowQueryMillis</code> system property, a negative value disabling the log.
+     */
+    private static final long SLOW_QUERY_MILLIS = Long.getLong("flaming_adventure.slowQueryMillis", 250);
+
     /**
      * Program entry point.
      *
@@ -83,6 +98,10 @@ public class App extends Application {
 
     private Stage stage;
 
+    private ConnectionPool connectionPool = null;
+
+    private AsyncDataModel dataModel = null;
+
     /***************************************************************************
      *                                                                         *
      * Public API                                                              *
@@ -118,6 +137,21 @@ public class App extends Application {
         stage.show();
     }
 
+    /**
+     * Called by JavaFX when the application exits.
+     *
+     * <p> Stops the data model's worker threads and closes the database connections, if any.
+     */
+    @Override public void stop() {
+        if (dataModel != null) {
+            dataModel.shutdown();
+            dataModel.unregisterMBeans();
+        }
+        if (connectionPool != null) {
+            connectionPool.close();
+        }
+    }
+
     /***************************************************************************
      *                                                                         *
      * Implementation                                                          *
@@ -125,21 +159,24 @@ public class App extends Application {
      **************************************************************************/
 
     /**
-     * Function to be called when a database connection is established.
+     * Function to be called when a connection to the database is established.
      *
-     * @param connection A connection to the database (server).
+     * @param connectionPool A pool of connections to the database (server).
      */
-    private void connectionHook(Connection connection)  {
-        DataModel dataModel;
-        try {
-            dataModel = new DataModel(connection);
-        } catch (Exception e) {
-            UnhandledExceptionDialog.create(e);
-            throw new IllegalStateException(e);
-        }
+    private void connectionHook(ConnectionPool connectionPool)  {
+        this.connectionPool = connectionPool;
+        // Run database operations in the background, delivering their results on the JavaFX application thread.
+        dataModel = new AsyncDataModel(new DataModel(connectionPool, Platform::runLater), Platform::runLater);
+        dataModel.setSlowQueryThreshold(SLOW_QUERY_MILLIS, TimeUnit.MILLISECONDS);
+        // Publish the latency, round trip and cache metrics of the data layer over JMX.
+        dataModel.registerMBeans("main");
+        // Load the huts shared by every tab while the main view is being set up.
+        dataModel.getHuts().exceptionally(ErrorAlert.handler("Hyttene kunne ikke hentes."));
 
         MainController mainController = new MainController(dataModel);
         Scene mainScene = loadScene("main.fxml", mainController);
+        // Keep the open tab current with the edits of the other front desks.
+        dataModel.startPolling(CHANGE_POLL_SECONDS, TimeUnit.SECONDS);
         stage.hide();
         stage.setScene(mainScene);
         stage.centerOnScreen();
@@ -0,0 +1,398 @@
+package no.flaming_adventure;
+
+import no.flaming_adventure.controller.ReservationFormController;
+import no.flaming_adventure.model.DataModel;
+import no.flaming_adventure.model.Equipment;
+import no.flaming_adventure.model.Hut;
+import no.flaming_adventure.model.Reservation;
+import no.flaming_adventure.util.CsvReader;
+import no.flaming_adventure.util.CsvWriter;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Imports reservations and equipment from CSV files.
+ *
+ * <p> The first record of a file is a header naming the columns, in any order:
+ * <ul>
+ *     <li>reservations: <code>hut, date, name, email, count</code> and optionally <code>comment</code>.</li>
+ *     <li>equipment: <code>hut, name, purchase_date, count</code>.</li>
+ * </ul>
+ * Huts are given by name and dates as <code>yyyy-mm-dd</code>.
+ *
+ * <p> Files are streamed, and valid records are inserted in chunks through the batched insert methods of the
+ * {@link DataModel data model}, so memory use doesn't depend on the size of the file. Invalid records, and records
+ * rejected by the database, are written to <code>&lt;file&gt;.rejected.csv</code> along with their line number and
+ * the reason they were rejected.
+ */
+public class CsvImporter {
+
+    /***************************************************************************
+     *                                                                         *
+     * Static variables and methods                                            *
+     *                                                                         *
+     **************************************************************************/
+
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+
+    /**
+     * The length of <code>equipment.name</code> in the schema.
+     */
+    private static final int EQUIPMENT_NAME_MAX_LENGTH = 24;
+
+    /**
+     * Function creating a record from the fields of a CSV record.
+     *
+     * @param <T> the type of the record.
+     */
+    @FunctionalInterface
+    private interface RecordParser<T> {
+        T parse(Fields fields) throws InvalidRecordException;
+    }
+
+    /**
+     * Function inserting records into the database.
+     *
+     * @param <T> the type of the records.
+     */
+    @FunctionalInterface
+    private interface Inserter<T> {
+        void insert(List<T> items) throws SQLException;
+    }
+
+    private static class InvalidRecordException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        InvalidRecordException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * The fields of a CSV record, by column name.
+     */
+    private static class Fields {
+        private final Map<String, Integer>  columns;
+        private final List<String>          record;
+
+        Fields(Map<String, Integer> columns, List<String> record) {
+            this.columns    = columns;
+            this.record     = record;
+        }
+
+        /**
+         * @return the trimmed field, or null if it's missing or empty.
+         */
+        String get(String column) {
+            Integer index = columns.get(column);
+            if (index == null || index >= record.size()) { return null; }
+            String field = record.get(index).trim();
+            return field.isEmpty() ? null : field;
+        }
+
+        String getRequired(String column, int maxLength) throws InvalidRecordException {
+            String field = get(column);
+            if (field == null) {
+                throw new InvalidRecordException("Missing " + column + ".");
+            }
+            if (field.length() > maxLength) {
+                throw new InvalidRecordException("The " + column + " is longer than " + maxLength + " characters.");
+            }
+            return field;
+        }
+
+        LocalDate getDate(String column) throws InvalidRecordException {
+            String field = getRequired(column, Integer.MAX_VALUE);
+            try {
+                return LocalDate.parse(field);
+            } catch (DateTimeParseException e) {
+                throw new InvalidRecordException("Invalid " + column + ": " + field + ".");
+            }
+        }
+
+        int getPositiveInt(String column) throws InvalidRecordException {
+            String field = getRequired(column, Integer.MAX_VALUE);
+            try {
+                int value = Integer.parseInt(field);
+                if (value > 0) { return value; }
+            } catch (NumberFormatException ignored) {
+                // Reported below.
+            }
+            throw new InvalidRecordException("Invalid " + column + ": " + field + ".");
+        }
+    }
+
+    /***************************************************************************
+     *                                                                         *
+     * Instance Variables                                                      *
+     *                                                                         *
+     **************************************************************************/
+
+    private final DataModel     dataModel;
+    private final int           chunkSize;
+    private final PrintStream   progress;
+
+    /**
+     * Huts by lower case name.
+     */
+    private final Map<String, Hut> huts = new HashMap<>();
+
+    /***************************************************************************
+     *                                                                         *
+     * Constructors                                                            *
+     *                                                                         *
+     **************************************************************************/
+
+    /**
+     * @param dataModel the data model to insert the records through.
+     * @param chunkSize the number of records inserted at a time.
+     * @param progress  stream progress is reported to.
+     */
+    public CsvImporter(DataModel dataModel, int chunkSize, PrintStream progress) {
+        if (chunkSize < 1) { throw new IllegalArgumentException("Invalid chunk size: " + chunkSize); }
+        this.dataModel  = dataModel;
+        this.chunkSize  = chunkSize;
+        this.progress   = progress;
+    }
+
+    /***************************************************************************
+     *                                                                         *
+     * Public API                                                              *
+     *                                                                         *
+     **************************************************************************/
+
+    /**
+     * Import reservations from the given CSV file.
+     *
+     * @return the number of rejected records.
+     * @throws IOException if the file couldn't be read or the rejected records couldn't be written.
+     * @throws SQLException if the huts couldn't be retrieved, or the import failed for another reason than the data of
+     *                      the records. The records inserted until then are kept.
+     */
+    public long importReservations(Path file) throws IOException, SQLException {
+        return importFile(file, Arrays.asList("hut", "date", "name", "email", "count"), fields -> new Reservation(
+                -1,
+                getHut(fields),
+                fields.getDate("date"),
+                fields.getRequired("name", ReservationFormController.NAME_MAX_LENGTH),
+                fields.getRequired("email", ReservationFormController.EMAIL_MAX_LENGTH),
+                fields.getPositiveInt("count"),
+                fields.get("comment")
+        ), dataModel::insertReservations);
+    }
+
+    /**
+     * Import equipment from the given CSV file.
+     *
+     * @return the number of rejected records.
+     * @throws IOException if the file couldn't be read or the rejected records couldn't be written.
+     * @throws SQLException if the huts couldn't be retrieved, or the import failed for another reason than the data of
+     *                      the records. The records inserted until then are kept.
+     */
+    public long importEquipment(Path file) throws IOException, SQLException {
+        return importFile(file, Arrays.asList("hut", "name", "purchase_date", "count"), fields -> new Equipment(
+                -1,
+                getHut(fields),
+                fields.getRequired("name", EQUIPMENT_NAME_MAX_LENGTH),
+                fields.getDate("purchase_date"),
+                fields.getPositiveInt("count")
+        ), dataModel::insertEquipment);
+    }
+
+    /***************************************************************************
+     *                                                                         *
+     * Implementation                                                          *
+     *                                                                         *
+     **************************************************************************/
+
+    private <T> long importFile(Path file, List<String> requiredColumns, RecordParser<T> parser,
+                                Inserter<T> inserter) throws IOException, SQLException {
+        huts.clear();
+        for (Hut hut : dataModel.getHuts()) {
+            huts.put(hut.getName().toLowerCase(Locale.ROOT), hut);
+        }
+
+        Path rejectedFile = file.resolveSibling(file.getFileName() + ".rejected.csv");
+        Files.deleteIfExists(rejectedFile);
+
+        try (CsvReader reader = new CsvReader(Files.newBufferedReader(file, StandardCharsets.UTF_8));
+             Rejects rejects = new Rejects(rejectedFile)) {
+            List<String> header = reader.next();
+            if (header == null) { throw new IOException("The file is empty."); }
+            // Ignore any byte order mark.
+            header.set(0, header.get(0).replace("\uFEFF", ""));
+            Map<String, Integer> columns = new HashMap<>();
+            for (int i = 0; i < header.size(); i++) {
+                columns.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+            }
+            for (String column : requiredColumns) {
+                if (! columns.containsKey(column)) {
+                    throw new IOException("Missing column in header: " + column + ".");
+                }
+            }
+            rejects.header = header;
+
+            Chunk<T> chunk = new Chunk<>();
+            long read = 0, imported = 0;
+            long start = System.nanoTime();
+
+            List<String> record;
+            while ((record = reader.next()) != null) {
+                if (record.size() == 1 && record.get(0).trim().isEmpty()) { continue; }
+                read++;
+                try {
+                    chunk.add(parser.parse(new Fields(columns, record)), record, reader.getLine());
+                } catch (InvalidRecordException e) {
+                    rejects.write(record, reader.getLine(), e.getMessage());
+                }
+
+                if (chunk.size() >= chunkSize) {
+                    imported += insert(chunk, inserter, rejects);
+                    reportProgress(read, imported, rejects.count, start);
+                }
+            }
+            imported += insert(chunk, inserter, rejects);
+            reportProgress(read, imported, rejects.count, start);
+
+            if (rejects.count > 0) {
+                progress.println("Rejected records were written to " + rejectedFile + ".");
+            }
+            return rejects.count;
+        }
+    }
+
+    /**
+     * Insert the records of the given chunk and clear it.
+     *
+     * <p> If the chunk as a whole is rejected by the database because of its data, its records are inserted one at a
+     * time so that only the offending records are rejected. Any other failure, e.g. a lost connection, stops the
+     * import.
+     *
+     * @return the number of records inserted.
+     * @throws SQLException if the database failed for another reason than the data of the records.
+     */
+    private <T> long insert(Chunk<T> chunk, Inserter<T> inserter, Rejects rejects) throws IOException, SQLException {
+        if (chunk.size() == 0) { return 0; }
+
+        long inserted = 0;
+        try {
+            inserter.insert(chunk.items);
+            inserted = chunk.size();
+        } catch (SQLException e) {
+            if (! isDataError(e)) { throw e; }
+            for (int i = 0; i < chunk.size(); i++) {
+                try {
+                    inserter.insert(Collections.singletonList(chunk.items.get(i)));
+                    inserted++;
+                } catch (SQLException rowException) {
+                    if (! isDataError(rowException)) { throw rowException; }
+                    rejects.write(chunk.records.get(i), chunk.lines.get(i), rowException.getMessage());
+                }
+            }
+        }
+        chunk.clear();
+        return inserted;
+    }
+
+    /**
+     * Return whether the given exception was caused by the data sent, i.e. invalid values (SQLState class 22) or a
+     * violated constraint (class 23), rather than by the connection or the server.
+     */
+    private static boolean isDataError(SQLException e) {
+        if (e instanceof SQLDataException || e instanceof SQLIntegrityConstraintViolationException) { return true; }
+        String state = e.getSQLState();
+        if (state != null) { return state.startsWith("22") || state.startsWith("23"); }
+        // Batch failures may only carry the state on the exception they wrap.
+        return e.getCause() instanceof SQLException && isDataError((SQLException) e.getCause());
+    }
+
+    private Hut getHut(Fields fields) throws InvalidRecordException {
+        String name = fields.getRequired("hut", Integer.MAX_VALUE);
+        Hut hut = huts.get(name.toLowerCase(Locale.ROOT));
+        if (hut == null) {
+            throw new InvalidRecordException("Unknown hut: " + name + ".");
+        }
+        return hut;
+    }
+
+    private void reportProgress(long read, long imported, long rejected, long startNanos) {
+        double seconds = Math.max(1e-3, (System.nanoTime() - startNanos) / 1e9);
+        progress.printf("%d records read, %d imported, %d rejected (%.0f records/s).%n",
+                        read, imported, rejected, imported / seconds);
+    }
+
+    /**
+     * Valid records waiting to be inserted, with the CSV records and line numbers they were read from.
+     */
+    private static class Chunk<T> {
+        final List<T>               items   = new ArrayList<>();
+        final List<List<String>>    records = new ArrayList<>();
+        final List<Long>            lines   = new ArrayList<>();
+
+        void add(T item, List<String> record, long line) {
+            items.add(item);
+            records.add(record);
+            lines.add(line);
+        }
+
+        int size() {
+            return items.size();
+        }
+
+        void clear() {
+            items.clear();
+            records.clear();
+            lines.clear();
+        }
+    }
+
+    /**
+     * The file rejected records are written to, created when the first record is rejected.
+     */
+    private static class Rejects implements AutoCloseable {
+        private final Path  file;
+        private CsvWriter   writer = null;
+
+        List<String>    header;
+        long            count = 0;
+
+        Rejects(Path file) {
+            this.file = file;
+        }
+
+        void write(List<String> record, long line, String reason) throws IOException {
+            if (writer == null) {
+                writer = new CsvWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8));
+                List<String> rejectHeader = new ArrayList<>(header);
+                rejectHeader.add("line");
+                rejectHeader.add("error");
+                writer.write(rejectHeader);
+            }
+            List<Object> reject = new ArrayList<>(record);
+            reject.add(line);
+            reject.add(reason);
+            writer.write(reject);
+            count++;
+        }
+
+        @Override public void close() throws IOException {
+            if (writer != null) { writer.close(); }
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package no.flaming_adventure.controller;
 
 import javafx.beans.Observable;
-import javafx.collections.ObservableList;
 import javafx.event.EventHandler;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
@@ -9,15 +8,19 @@ import javafx.scene.control.cell.CheckBoxTableCell;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
 import no.flaming_adventure.App;
+import no.flaming_adventure.model.AsyncDataModel;
 import no.flaming_adventure.model.BrokenItem;
-import no.flaming_adventure.model.DataModel;
 import no.flaming_adventure.model.Hut;
+import no.flaming_adventure.model.Page;
+import no.flaming_adventure.model.QueryFuture;
+import no.flaming_adventure.model.RowWriter;
 import no.flaming_adventure.util.DateCellFactory;
+import no.flaming_adventure.util.ErrorAlert;
 import no.flaming_adventure.util.StringMaxLengthListener;
 import no.flaming_adventure.util.UnhandledExceptionDialog;
 
-import java.sql.SQLException;
 import java.time.LocalDate;
+import java.util.Arrays;
 
 public class BrokenItemTableController extends TableControllerBase<BrokenItem> {
 
@@ -41,6 +44,7 @@ public class BrokenItemTableController extends TableControllerBase<BrokenItem> {
     @FXML private DatePicker    fromDateFilter;
     @FXML private DatePicker    toDateFilter;
     @FXML private CheckBox      fixedFilter;
+    @FXML private TextField     searchField;
 
     @FXML private TableColumn<BrokenItem, String>    hutColumn;
     @FXML private TableColumn<BrokenItem, LocalDate> dateColumn;
@@ -70,39 +74,38 @@ public class BrokenItemTableController extends TableControllerBase<BrokenItem> {
      *                                                                         *
      **************************************************************************/
 
-    @Override public void inject(DataModel dataModel) {
+    @Override public void inject(AsyncDataModel dataModel) {
         super.inject(dataModel);
 
         hutFilter.setOnAction(e -> loadPage(0));
         fromDateFilter.setOnAction(e -> loadPage(0));
         toDateFilter.setOnAction(e -> loadPage(0));
         fixedFilter.setOnAction(e -> loadPage(0));
+        searchField.setOnAction(e -> loadPage(0));
         commitButton.setOnAction(ignored -> commitButtonHook());
     }
 
     @Override public void load() {
-        ObservableList<Hut>         huts;
-        try {
-            huts = dataModel.getHuts();
-        } catch (SQLException e) {
-            UnhandledExceptionDialog.create(e);
-            throw new IllegalStateException(e);
-        }
+        dataModel.getHuts().thenAccept(huts -> {
+            hutFilter.getItems().clear();
+            hutFilter.getItems().add(HUT_FILTER_NO_SELECTION);
+            hutFilter.getItems().addAll(huts);
 
-        hutFilter.getItems().clear();
-        hutFilter.getItems().add(HUT_FILTER_NO_SELECTION);
-        hutFilter.getItems().addAll(huts);
+            dataLock = true;
+            hutFilter.setValue(HUT_FILTER_NO_SELECTION);
+            dataLock = false;
 
-        dataLock = true;
-        hutFilter.setValue(HUT_FILTER_NO_SELECTION);
-        dataLock = false;
+            super.load();
 
-        super.load();
+            hutComboBox.setItems(huts);
+            hutComboBox.getSelectionModel().selectFirst();
 
-        hutComboBox.setItems(huts);
-        hutComboBox.getSelectionModel().selectFirst();
+            datePicker.setValue(TODAY);
+        }).exceptionally(ErrorAlert.handler("Hyttene kunne ikke hentes."));
+    }
 
-        datePicker.setValue(TODAY);
+    @Override public String getTableName() {
+        return "broken_items";
     }
 
     /***************************************************************************
@@ -112,13 +115,7 @@ public class BrokenItemTableController extends TableControllerBase<BrokenItem> {
      **************************************************************************/
 
     protected void updateItem(BrokenItem item) {
-        try {
-            dataModel.updateBrokenItemFixed(item);
-        } catch (Throwable e) {
-            UnhandledExceptionDialog.create(e);
-            throw new IllegalStateException(e);
-        }
-        loadPage(pagination.getCurrentPageIndex());
+        applyEdit(item, dataModel.updateBrokenItemFixed(item), item.getFixed() && ! fixedFilter.isSelected());
     }
 
     @Override @FXML protected void initialize() {
@@ -152,32 +149,41 @@ public class BrokenItemTableController extends TableControllerBase<BrokenItem> {
         commentTextField.setOnKeyReleased(enterHandler);
     }
 
-    @Override protected void loadPageImpl(Integer pageIndex) {
-        Hut hut = hutFilter.getValue();
-        if (hut == HUT_FILTER_NO_SELECTION) { hut = null; }
+    @Override protected Object getFilter() {
+        return Arrays.asList(hutFilter.getValue(), fromDateFilter.getValue(), toDateFilter.getValue(),
+                             fixedFilter.isSelected(), getSearch());
+    }
+
+    @Override protected QueryFuture<Page<BrokenItem>> fetchPage(Page<BrokenItem> anchor, Integer pageIndex,
+                                                                Integer pageSize) {
         LocalDate fromDate  = fromDateFilter.getValue();
         LocalDate toDate    = toDateFilter.getValue();
-        Boolean showFixed   = fixedFilter.isSelected();
 
-        String filterBy = null;
-        if (! showFixed) { filterBy = "broken_items.fixed = FALSE"; }
+        return dataModel.brokenItemPage(anchor, pageIndex, pageSize, getHut(), fromDate, toDate, ordering,
+                                        getFilterBy(), getSearch());
+    }
 
-        Integer brokenItemCount;
-        ObservableList<BrokenItem> brokenItems;
-        try {
-            brokenItemCount = dataModel.brokenItemCount(hut, fromDate, toDate, filterBy);
-            brokenItems = dataModel.brokenItemPage(pageIndex * ITEMS_PER_PAGE, ITEMS_PER_PAGE,
-                                                   hut, fromDate, toDate, ordering, filterBy);
-        } catch (SQLException e) {
-            UnhandledExceptionDialog.create(e);
-            throw new IllegalStateException(e);
-        }
+    @Override protected QueryFuture<Long> exportRows(RowWriter writer) {
+        return dataModel.exportBrokenItems(getHut(), fromDateFilter.getValue(), toDateFilter.getValue(), ordering,
+                                           getFilterBy(), getSearch(), writer);
+    }
 
-        items.setAll(brokenItems);
+    /**
+     * Return the text to search for, or null if the search field is blank.
+     */
+    private String getSearch() {
+        String search = searchField.getText();
+        return search == null || search.trim().isEmpty() ? null : search.trim();
+    }
 
-        setPageCount(brokenItemCount);
+    private Hut getHut() {
+        Hut hut = hutFilter.getValue();
+        return hut == HUT_FILTER_NO_SELECTION ? null : hut;
+    }
 
-        pagination.setCurrentPageIndex(pageIndex);
+    private String getFilterBy() {
+        Boolean showFixed = fixedFilter.isSelected();
+        return showFixed ? null : "broken_items.fixed = FALSE";
     }
 
     private void commitButtonHook() {
@@ -186,17 +192,22 @@ public class BrokenItemTableController extends TableControllerBase<BrokenItem> {
         String item     = itemTextField.getText();
         String comment  = commentTextField.getText();
 
+        BrokenItem brokenItem;
         try {
-            BrokenItem brokenItem = new BrokenItem(-1, hut, item, date, false, comment);
-            dataModel.insertBrokenItem(brokenItem);
-        } catch (NullPointerException|SQLException e) {
+            brokenItem = new BrokenItem(-1, hut, item, date, false, comment);
+        } catch (NullPointerException e) {
             UnhandledExceptionDialog.create(e);
             throw new IllegalStateException(e);
         }
 
-        itemTextField.clear();
-        commentTextField.clear();
+        // Disable the button until the item is stored, so that it isn't inserted twice.
+        commitButton.setDisable(true);
+        dataModel.insertBrokenItem(brokenItem).thenRun(() -> {
+            itemTextField.clear();
+            commentTextField.clear();
 
-        loadPage(pagination.getCurrentPageIndex());
+            reloadPage();
+        }).whenComplete((ignored, error) -> commitButton.setDisable(false))
+          .exceptionally(ErrorAlert.handler("Den \u00f8delagte gjenstanden kunne ikke lagres."));
     }
 }
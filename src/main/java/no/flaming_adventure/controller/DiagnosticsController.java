@@ -0,0 +1,131 @@
+package no.flaming_adventure.controller;
+
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.fxml.FXML;
+import javafx.scene.control.Button;
+import javafx.scene.control.TableCell;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.control.TextArea;
+import javafx.scene.control.TextField;
+import no.flaming_adventure.model.AsyncDataModel;
+import no.flaming_adventure.model.SlowQuery;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controller for the diagnostics tab, showing the slow query report of the data model.
+ *
+ * <p> The report is read when the tab is selected and whenever it's refreshed. Selecting a query shows its SQL, the
+ * values it was last slow with and the plan the server chose for it.
+ *
+ * @see AsyncDataModel#slowQueries()
+ */
+public class DiagnosticsController {
+
+    /************************************************************************
+     *
+     * Static fields
+     *
+     ************************************************************************/
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    /************************************************************************
+     *
+     * Fields
+     *
+     ************************************************************************/
+
+    private AsyncDataModel dataModel;
+
+    @FXML private TextField thresholdTextField;
+    @FXML private Button    refreshButton;
+    @FXML private Button    clearButton;
+
+    @FXML private TableView<SlowQuery>                  tableView;
+    @FXML private TableColumn<SlowQuery, String>        sqlColumn;
+    @FXML private TableColumn<SlowQuery, Number>        countColumn;
+    @FXML private TableColumn<SlowQuery, Number>        totalColumn;
+    @FXML private TableColumn<SlowQuery, Number>        maxColumn;
+    @FXML private TableColumn<SlowQuery, String>        flagsColumn;
+    @FXML private TableColumn<SlowQuery, LocalDateTime> lastSeenColumn;
+
+    @FXML private TextArea detailsTextArea;
+
+    /************************************************************************
+     *
+     * Public API
+     *
+     ************************************************************************/
+
+    public void inject(AsyncDataModel dataModel) {
+        this.dataModel = dataModel;
+
+        thresholdTextField.setText(Long.toString(dataModel.getSlowQueryThreshold(TimeUnit.MILLISECONDS)));
+        thresholdTextField.setOnAction(ignored -> setThreshold());
+        refreshButton.setOnAction(ignored -> load());
+        clearButton.setOnAction(ignored -> {
+            dataModel.clearSlowQueries();
+            load();
+        });
+    }
+
+    public void load() {
+        tableView.getItems().setAll(dataModel.slowQueries());
+    }
+
+    /************************************************************************
+     *
+     * Private implementation
+     *
+     ************************************************************************/
+
+    @FXML private void initialize() {
+        sqlColumn.setCellValueFactory(p -> new ReadOnlyObjectWrapper<>(p.getValue().getSQL()));
+        countColumn.setCellValueFactory(p -> new ReadOnlyObjectWrapper<>(p.getValue().getCount()));
+        totalColumn.setCellValueFactory(p -> new ReadOnlyObjectWrapper<>(p.getValue().getTotalMillis()));
+        maxColumn.setCellValueFactory(p -> new ReadOnlyObjectWrapper<>(p.getValue().getMaxMillis()));
+        flagsColumn.setCellValueFactory(p -> new ReadOnlyObjectWrapper<>(p.getValue().getFlags()));
+        lastSeenColumn.setCellValueFactory(p -> new ReadOnlyObjectWrapper<>(p.getValue().getLastSeen()));
+        lastSeenColumn.setCellFactory(column -> new TableCell<SlowQuery, LocalDateTime>() {
+            @Override protected void updateItem(LocalDateTime item, boolean empty) {
+                super.updateItem(item, empty);
+                setText(item == null ? null : item.format(TIME_FORMATTER));
+            }
+        });
+
+        tableView.getSelectionModel().selectedItemProperty()
+                 .addListener((observable, oldValue, query) -> showDetails(query));
+    }
+
+    /**
+     * Apply the threshold entered, a negative or invalid value disabling the log.
+     */
+    private void setThreshold() {
+        long threshold;
+        try {
+            threshold = Long.parseLong(thresholdTextField.getText().trim());
+        } catch (NumberFormatException e) {
+            threshold = -1;
+        }
+        dataModel.setSlowQueryThreshold(threshold, TimeUnit.MILLISECONDS);
+        thresholdTextField.setText(Long.toString(dataModel.getSlowQueryThreshold(TimeUnit.MILLISECONDS)));
+    }
+
+    private void showDetails(SlowQuery query) {
+        if (query == null) {
+            detailsTextArea.clear();
+            return;
+        }
+
+        StringBuilder builder = new StringBuilder();
+        builder.append(query.getSQL()).append("\n\n")
+               .append("Parametere: ").append(query.getParameters()).append("\n\n")
+               .append("Plan:\n");
+        query.getPlan().forEach(row -> builder.append("  ").append(row).append('\n'));
+        detailsTextArea.setText(builder.toString());
+    }
+}
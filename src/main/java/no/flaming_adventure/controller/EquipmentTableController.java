@@ -1,21 +1,24 @@
 package no.flaming_adventure.controller;
 
-import javafx.collections.ObservableList;
 import javafx.event.EventHandler;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
 import no.flaming_adventure.App;
-import no.flaming_adventure.model.DataModel;
+import no.flaming_adventure.model.AsyncDataModel;
 import no.flaming_adventure.model.Equipment;
 import no.flaming_adventure.model.Hut;
+import no.flaming_adventure.model.Page;
+import no.flaming_adventure.model.QueryFuture;
+import no.flaming_adventure.model.RowWriter;
 import no.flaming_adventure.util.DateCellFactory;
+import no.flaming_adventure.util.ErrorAlert;
 import no.flaming_adventure.util.StringMaxLengthListener;
 import no.flaming_adventure.util.UnhandledExceptionDialog;
 
-import java.sql.SQLException;
 import java.time.LocalDate;
+import java.util.Arrays;
 
 public class EquipmentTableController extends TableControllerBase<Equipment> {
 
@@ -56,7 +59,7 @@ public class EquipmentTableController extends TableControllerBase<Equipment> {
      *                                                                         *
      **************************************************************************/
 
-    @Override public void inject(DataModel dataModel) {
+    @Override public void inject(AsyncDataModel dataModel) {
         super.inject(dataModel);
 
         hutFilter.setOnAction(event -> loadPage(0));
@@ -66,32 +69,30 @@ public class EquipmentTableController extends TableControllerBase<Equipment> {
     }
 
     @Override public void load() {
-        ObservableList<Hut> huts;
-        try {
-            huts = dataModel.getHuts();
-        } catch (SQLException e) {
-            UnhandledExceptionDialog.create(e);
-            throw new IllegalStateException(e);
-        }
-
-        hutFilter.getItems().clear();
-        hutFilter.getItems().add(HUT_FILTER_NO_SELECTION);
-        hutFilter.getItems().addAll(huts);
+        dataModel.getHuts().thenAccept(huts -> {
+            hutFilter.getItems().clear();
+            hutFilter.getItems().add(HUT_FILTER_NO_SELECTION);
+            hutFilter.getItems().addAll(huts);
 
-        // Don't load the data just because we changed the filter.
-        dataLock = true;
-        hutFilter.setValue(HUT_FILTER_NO_SELECTION);
-        dataLock = false;
+            // Don't load the data just because we changed the filter.
+            dataLock = true;
+            hutFilter.setValue(HUT_FILTER_NO_SELECTION);
+            dataLock = false;
 
-        super.load();
+            super.load();
 
-        hutComboBox.setItems(huts);
-        hutComboBox.getSelectionModel().selectFirst();
+            hutComboBox.setItems(huts);
+            hutComboBox.getSelectionModel().selectFirst();
 
-        datePicker.setValue(TODAY);
+            datePicker.setValue(TODAY);
+        }).exceptionally(ErrorAlert.handler("Hyttene kunne ikke hentes."));
     }
 
 
+    @Override public String getTableName() {
+        return "equipment";
+    }
+
     /***************************************************************************
      *                                                                         *
      * Implementation                                                          *
@@ -126,28 +127,26 @@ public class EquipmentTableController extends TableControllerBase<Equipment> {
         countTextField.setOnKeyReleased(enterHandler);
     }
 
-    @Override protected void loadPageImpl(Integer pageIndex) {
-        Hut hut = hutFilter.getValue();
-        if (hut == HUT_FILTER_NO_SELECTION) { hut = null; }
+    @Override protected Object getFilter() {
+        return Arrays.asList(hutFilter.getValue(), fromDateFilter.getValue(), toDateFilter.getValue());
+    }
+
+    @Override protected QueryFuture<Page<Equipment>> fetchPage(Page<Equipment> anchor, Integer pageIndex,
+                                                               Integer pageSize) {
         LocalDate fromDate  = fromDateFilter.getValue();
         LocalDate toDate    = toDateFilter.getValue();
 
-        Integer itemCount;
-        ObservableList<Equipment> items;
-        try {
-            itemCount = dataModel.equipmentCount(hut, fromDate, toDate);
-            items = dataModel.equipmentPage(pageIndex * ITEMS_PER_PAGE, ITEMS_PER_PAGE, hut, fromDate, toDate,
-                                            ordering);
-        } catch (SQLException e) {
-            UnhandledExceptionDialog.create(e);
-            throw new IllegalStateException(e);
-        }
-
-        this.items.setAll(items);
+        return dataModel.equipmentPage(anchor, pageIndex, pageSize, getHut(), fromDate, toDate, ordering);
+    }
 
-        setPageCount(itemCount);
+    @Override protected QueryFuture<Long> exportRows(RowWriter writer) {
+        return dataModel.exportEquipment(getHut(), fromDateFilter.getValue(), toDateFilter.getValue(), ordering,
+                                         writer);
+    }
 
-        pagination.setCurrentPageIndex(pageIndex);
+    private Hut getHut() {
+        Hut hut = hutFilter.getValue();
+        return hut == HUT_FILTER_NO_SELECTION ? null : hut;
     }
 
     private void commitButtonHook() {
@@ -156,17 +155,22 @@ public class EquipmentTableController extends TableControllerBase<Equipment> {
         String item     = itemTextField.getText();
         Integer count   = Integer.parseUnsignedInt(countTextField.getText());
 
+        Equipment equipment;
         try {
-            Equipment equipment = new Equipment(-1, hut, item, date, count);
-            dataModel.insertEquipment(equipment);
-        } catch (NullPointerException|SQLException e) {
+            equipment = new Equipment(-1, hut, item, date, count);
+        } catch (NullPointerException e) {
             UnhandledExceptionDialog.create(e);
             throw new IllegalStateException(e);
         }
 
-        itemTextField.clear();
-        countTextField.clear();
+        // Disable the button until the item is stored, so that it isn't inserted twice.
+        commitButton.setDisable(true);
+        dataModel.insertEquipment(equipment).thenRun(() -> {
+            itemTextField.clear();
+            countTextField.clear();
 
-        loadPage(pagination.getCurrentPageIndex());
+            reloadPage();
+        }).whenComplete((ignored, error) -> commitButton.setDisable(false))
+          .exceptionally(ErrorAlert.handler("Utstyret kunne ikke lagres."));
     }
 }
@@ -1,22 +1,25 @@
 package no.flaming_adventure.controller;
 
 import javafx.beans.Observable;
-import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.CheckBoxTableCell;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
 import no.flaming_adventure.App;
-import no.flaming_adventure.model.DataModel;
+import no.flaming_adventure.model.AsyncDataModel;
 import no.flaming_adventure.model.ForgottenItem;
 import no.flaming_adventure.model.Hut;
+import no.flaming_adventure.model.Page;
+import no.flaming_adventure.model.QueryFuture;
+import no.flaming_adventure.model.RowWriter;
 import no.flaming_adventure.util.DateCellFactory;
+import no.flaming_adventure.util.ErrorAlert;
 import no.flaming_adventure.util.StringMaxLengthListener;
 import no.flaming_adventure.util.UnhandledExceptionDialog;
 
-import java.sql.SQLException;
 import java.time.LocalDate;
+import java.util.Arrays;
 
 /**
  * Controller for the forgotten item tab, responsible for both table and form.
@@ -43,6 +46,7 @@ public class ForgottenTableController extends TableControllerBase<ForgottenItem>
     @FXML private DatePicker    fromDateFilter;
     @FXML private DatePicker    toDateFilter;
     @FXML private CheckBox      deliveredFilter;
+    @FXML private TextField     searchField;
 
     @FXML private TableColumn<ForgottenItem, String>    hutColumn;
     @FXML private TableColumn<ForgottenItem, String>    itemColumn;
@@ -76,39 +80,38 @@ public class ForgottenTableController extends TableControllerBase<ForgottenItem>
      *                                                                         *
      **************************************************************************/
 
-    @Override public void inject(DataModel dataModel) {
+    @Override public void inject(AsyncDataModel dataModel) {
         super.inject(dataModel);
 
         hutFilter.setOnAction(e -> loadPage(0));
         fromDateFilter.setOnAction(e -> loadPage(0));
         toDateFilter.setOnAction(e -> loadPage(0));
         deliveredFilter.setOnAction(e -> loadPage(0));
+        searchField.setOnAction(e -> loadPage(0));
         commitButton.setOnAction(ignored -> commitButtonHook());
     }
 
     @Override public void load() {
-        ObservableList<Hut> huts;
-        try {
-            huts = dataModel.getHuts();
-        } catch (SQLException e) {
-            UnhandledExceptionDialog.create(e);
-            throw new IllegalStateException(e);
-        }
+        dataModel.getHuts().thenAccept(huts -> {
+            hutFilter.getItems().clear();
+            hutFilter.getItems().add(HUT_FILTER_NO_SELECTION);
+            hutFilter.getItems().addAll(huts);
 
-        hutFilter.getItems().clear();
-        hutFilter.getItems().add(HUT_FILTER_NO_SELECTION);
-        hutFilter.getItems().addAll(huts);
+            dataLock = true;
+            hutFilter.setValue(HUT_FILTER_NO_SELECTION);
+            dataLock = false;
 
-        dataLock = true;
-        hutFilter.setValue(HUT_FILTER_NO_SELECTION);
-        dataLock = false;
+            super.load();
 
-        super.load();
+            hutComboBox.setItems(huts);
+            hutComboBox.getSelectionModel().selectFirst();
 
-        hutComboBox.setItems(huts);
-        hutComboBox.getSelectionModel().selectFirst();
+            datePicker.setValue(TODAY);
+        }).exceptionally(ErrorAlert.handler("Hyttene kunne ikke hentes."));
+    }
 
-        datePicker.setValue(TODAY);
+    @Override public String getTableName() {
+        return "forgotten_items";
     }
 
     /************************************************************************
@@ -118,13 +121,8 @@ public class ForgottenTableController extends TableControllerBase<ForgottenItem>
      ************************************************************************/
 
     @Override protected void updateItem(ForgottenItem item) {
-        try {
-            dataModel.updateForgottenItemDelivered(item);
-        } catch (Throwable e) {
-            UnhandledExceptionDialog.create(e);
-            throw new IllegalStateException(e);
-        }
-        loadPage(pagination.getCurrentPageIndex());
+        applyEdit(item, dataModel.updateForgottenItemDelivered(item),
+                  item.getDelivered() && ! deliveredFilter.isSelected());
     }
 
     /**
@@ -174,32 +172,41 @@ public class ForgottenTableController extends TableControllerBase<ForgottenItem>
         }
     }
 
-    @Override protected void loadPageImpl(Integer pageIndex) {
-        Hut hut = hutFilter.getValue();
-        if (hut == HUT_FILTER_NO_SELECTION) { hut = null; }
+    @Override protected Object getFilter() {
+        return Arrays.asList(hutFilter.getValue(), fromDateFilter.getValue(), toDateFilter.getValue(),
+                             deliveredFilter.isSelected(), getSearch());
+    }
+
+    @Override protected QueryFuture<Page<ForgottenItem>> fetchPage(Page<ForgottenItem> anchor, Integer pageIndex,
+                                                                   Integer pageSize) {
         LocalDate fromDate      = fromDateFilter.getValue();
         LocalDate toDate        = toDateFilter.getValue();
-        Boolean showDelivered   = deliveredFilter.isSelected();
 
-        String filterBy = null;
-        if (! showDelivered) { filterBy = "forgotten_items.delivered = FALSE"; }
+        return dataModel.forgottenItemPage(anchor, pageIndex, pageSize,
+                                           getHut(), fromDate, toDate, ordering, getFilterBy(), getSearch());
+    }
 
-        Integer forgottenItemCount;
-        ObservableList<ForgottenItem> forgottenItems;
-        try {
-            forgottenItemCount = dataModel.forgottenItemCount(hut, fromDate, toDate, filterBy);
-            forgottenItems = dataModel.forgottenItemPage(pageIndex * ITEMS_PER_PAGE, ITEMS_PER_PAGE,
-                                                         hut, fromDate, toDate, ordering, filterBy);
-        } catch (SQLException e) {
-            UnhandledExceptionDialog.create(e);
-            throw new IllegalStateException(e);
-        }
+    @Override protected QueryFuture<Long> exportRows(RowWriter writer) {
+        return dataModel.exportForgottenItems(getHut(), fromDateFilter.getValue(), toDateFilter.getValue(), ordering,
+                                              getFilterBy(), getSearch(), writer);
+    }
 
-        tableView.getItems().setAll(forgottenItems);
+    /**
+     * Return the text to search for, or null if the search field is blank.
+     */
+    private String getSearch() {
+        String search = searchField.getText();
+        return search == null || search.trim().isEmpty() ? null : search.trim();
+    }
 
-        setPageCount(forgottenItemCount);
+    private Hut getHut() {
+        Hut hut = hutFilter.getValue();
+        return hut == HUT_FILTER_NO_SELECTION ? null : hut;
+    }
 
-        pagination.setCurrentPageIndex(pageIndex);
+    private String getFilterBy() {
+        Boolean showDelivered = deliveredFilter.isSelected();
+        return showDelivered ? null : "forgotten_items.delivered = FALSE";
     }
 
     private void commitButtonHook() {
@@ -210,17 +217,22 @@ public class ForgottenTableController extends TableControllerBase<ForgottenItem>
         String contact  = contactTextField.getText();
         String comment  = commentTextField.getText();
 
+        ForgottenItem forgottenItem;
         try {
-            ForgottenItem forgottenItem = new ForgottenItem(-1, hut, item, name, contact, date, false, comment);
-            dataModel.insertForgottenItem(forgottenItem);
-        } catch (SQLException|NullPointerException e) {
+            forgottenItem = new ForgottenItem(-1, hut, item, name, contact, date, false, comment);
+        } catch (NullPointerException e) {
             UnhandledExceptionDialog.create(e);
             throw new IllegalStateException(e);
         }
 
-        itemTextField.clear();
-        commentTextField.clear();
+        // Disable the button until the item is stored, so that it isn't inserted twice.
+        commitButton.setDisable(true);
+        dataModel.insertForgottenItem(forgottenItem).thenRun(() -> {
+            itemTextField.clear();
+            commentTextField.clear();
 
-        loadPage(pagination.getCurrentPageIndex());
+            reloadPage();
+        }).whenComplete((ignored, error) -> commitButton.setDisable(false))
+          .exceptionally(ErrorAlert.handler("Den glemte gjenstanden kunne ikke lagres."));
     }
 }
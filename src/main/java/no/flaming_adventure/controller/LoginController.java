@@ -6,10 +6,11 @@ import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
+import no.flaming_adventure.model.ConnectionPool;
+import no.flaming_adventure.model.SchemaMigrator;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.List;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -18,8 +19,8 @@ import java.util.prefs.Preferences;
 /**
  * Controller for the login view.
  *
- * <p> Responsible for creating a connection to the database and calling the
- * application's connection hook with that connection.
+ * <p> Responsible for creating a pool of connections to the database, bringing the
+ * database schema up to date and calling the application's connection hook with that pool.
  */
 public class LoginController {
 
@@ -43,7 +44,7 @@ public class LoginController {
      *
      ************************************************************************/
 
-    private final Consumer<Connection>  connectionHook;
+    private final Consumer<ConnectionPool>  connectionHook;
 
     @FXML private TextField     URLField;
     @FXML private TextField     usernameField;
@@ -57,7 +58,7 @@ public class LoginController {
      *
      ************************************************************************/
 
-    public LoginController(Consumer<Connection> connectionHook) {
+    public LoginController(Consumer<ConnectionPool> connectionHook) {
         this.connectionHook = connectionHook;
     }
 
@@ -118,7 +119,13 @@ public class LoginController {
         LOGGER.log(Level.INFO, "Attempting to log in to {0} as {1}.",
                 new Object[]{URL, username});
         try {
-            Connection connection = DriverManager.getConnection(URL, username, password);
+            ConnectionPool connectionPool = new ConnectionPool(URL, username, password);
+            try {
+                migrate(connectionPool);
+            } catch (SQLException e) {
+                connectionPool.close();
+                throw e;
+            }
 
             if (rememberMeCheckBox.isSelected()) {
                 LOGGER.log(Level.INFO, "Storing user credentials.");
@@ -137,7 +144,7 @@ public class LoginController {
                 preferences.putBoolean(REMEMBER_ME, false);
             }
 
-            connectionHook.accept(connection);
+            connectionHook.accept(connectionPool);
         } catch (SQLException e) {
             LOGGER.log(Level.WARNING, e.getMessage(), e);
 
@@ -149,4 +156,14 @@ public class LoginController {
             alert.showAndWait();
         }
     }
+
+    /**
+     * Apply any pending schema migrations before the application starts using the database.
+     */
+    private void migrate(ConnectionPool connectionPool) throws SQLException {
+        List<Integer> applied = new SchemaMigrator(connectionPool).migrate();
+        if (! applied.isEmpty()) {
+            LOGGER.log(Level.INFO, "Applied schema migrations {0}.", applied);
+        }
+    }
 }
@@ -3,7 +3,10 @@ package no.flaming_adventure.controller;
 import javafx.fxml.FXML;
 import javafx.scene.control.Tab;
 import javafx.scene.control.TabPane;
-import no.flaming_adventure.model.DataModel;
+import no.flaming_adventure.model.AsyncDataModel;
+import no.flaming_adventure.model.DataListener;
+
+import java.util.Set;
 
 /**
  * Controller for the main view.
@@ -17,6 +20,7 @@ import no.flaming_adventure.model.DataModel;
  * @see no.flaming_adventure.controller.ForgottenTableController
  * @see no.flaming_adventure.controller.EquipmentTableController
  * @see no.flaming_adventure.controller.BrokenItemTableController
+ * @see no.flaming_adventure.controller.DiagnosticsController
  */
 public class MainController {
 
@@ -26,7 +30,7 @@ public class MainController {
      *
      ************************************************************************/
 
-    private final DataModel dataModel;
+    private final AsyncDataModel dataModel;
 
     @FXML private OverviewController            overviewTableController;
     @FXML private ReservationFormController     reservationFormController;
@@ -34,6 +38,7 @@ public class MainController {
     @FXML private ForgottenTableController      forgottenTableController;
     @FXML private EquipmentTableController      equipmentTableController;
     @FXML private BrokenItemTableController     brokenItemTableController;
+    @FXML private DiagnosticsController         diagnosticsController;
 
     @FXML private TabPane   tabPane;
     @FXML private Tab       overviewTab;
@@ -42,6 +47,7 @@ public class MainController {
     @FXML private Tab       forgottenTab;
     @FXML private Tab       equipmentTab;
     @FXML private Tab       brokenTab;
+    @FXML private Tab       diagnosticsTab;
 
     /************************************************************************
      *
@@ -54,7 +60,7 @@ public class MainController {
      *
      * @param dataModel                 active data model for the application instance.
      */
-    public MainController(DataModel dataModel) {
+    public MainController(AsyncDataModel dataModel) {
         this.dataModel  = dataModel;
     }
 
@@ -77,11 +83,22 @@ public class MainController {
         forgottenTableController.inject(dataModel);
         brokenItemTableController.inject(dataModel);
         equipmentTableController.inject(dataModel);
+        diagnosticsController.inject(dataModel);
 
         tabPane.getSelectionModel().selectedItemProperty()
-                .addListener((observable, oldValue, tab) -> loadTab(tab));
+                .addListener((observable, oldValue, tab) -> {
+                    // Edits made on the previous tab may be shown on the next one.
+                    dataModel.flushWrites();
+                    loadTab(tab);
+                });
 
         loadTab(tabPane.getSelectionModel().getSelectedItem());
+
+        dataModel.addListener(new DataListener() {
+            @Override public void tablesChanged(Set<String> tables) {
+                refreshTab(tabPane.getSelectionModel().getSelectedItem(), tables);
+            }
+        });
     }
 
     /**
@@ -93,6 +110,7 @@ public class MainController {
      * @see no.flaming_adventure.controller.ForgottenTableController#load()
      * @see no.flaming_adventure.controller.EquipmentTableController#load()
      * @see no.flaming_adventure.controller.BrokenItemTableController#load()
+     * @see no.flaming_adventure.controller.DiagnosticsController#load()
      */
     private void loadTab(Tab tab) {
         if (tab == overviewTab) {
@@ -107,6 +125,40 @@ public class MainController {
             equipmentTableController.load();
         } else if (tab == brokenTab) {
             brokenItemTableController.load();
+        } else if (tab == diagnosticsTab) {
+            diagnosticsController.load();
+        }
+    }
+
+    /**
+     * Patch the contents of the given tab after other clients have modified the given tables, if they're displayed.
+     *
+     * <p> Only the tab displayed is patched, the others are loaded anew when selected anyway. The overview is only
+     * loaded when selected if it's out of date, so it's invalidated instead.
+     *
+     * @param tab       the tab displayed.
+     * @param tables    the names of the modified tables.
+     */
+    private void refreshTab(Tab tab, Set<String> tables) {
+        TableControllerBase<?> tableController = null;
+        if (tab == overviewTab) {
+            overviewTableController.refresh(tables);
+        } else {
+            overviewTableController.invalidate(tables);
+        }
+
+        if (tab == reservationTableTab) {
+            tableController = reservationTableController;
+        } else if (tab == forgottenTab) {
+            tableController = forgottenTableController;
+        } else if (tab == equipmentTab) {
+            tableController = equipmentTableController;
+        } else if (tab == brokenTab) {
+            tableController = brokenItemTableController;
+        }
+
+        if (tableController != null && tables.contains(tableController.getTableName())) {
+            tableController.refresh();
         }
     }
 }
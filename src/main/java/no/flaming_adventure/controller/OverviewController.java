@@ -8,12 +8,14 @@ import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
 import javafx.scene.control.cell.TextFieldTableCell;
 import no.flaming_adventure.App;
-import no.flaming_adventure.model.DataModel;
-import no.flaming_adventure.model.OverviewRow;
+import no.flaming_adventure.model.*;
 import no.flaming_adventure.util.*;
 
-import java.sql.SQLException;
 import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.function.Consumer;
 
 public class OverviewController {
@@ -24,13 +26,35 @@ public class OverviewController {
      *
      ************************************************************************/
 
+    /**
+     * The tables the overview is derived from.
+     */
+    private static final Set<String> OVERVIEW_TABLES = new HashSet<>(
+            Arrays.asList("huts", "reservations", "forgotten_items", "broken_items"));
+
     /************************************************************************
      *
      * Fields
      *
      ************************************************************************/
 
-    private DataModel dataModel;
+    private AsyncDataModel dataModel;
+
+    /**
+     * The overview displayed, kept up to date as records are added until the date range changes.
+     */
+    private Overview overview = null;
+
+    /**
+     * Whether the overview displayed is known to be out of date, as it couldn't be retrieved again after other
+     * clients modified the records it's derived from.
+     */
+    private boolean stale = false;
+
+    /**
+     * The load in progress, if any.
+     */
+    private QueryFuture<Overview> pendingLoad = null;
 
     private final ObservableList<OverviewRow> items;
 
@@ -57,53 +81,158 @@ public class OverviewController {
      *
      ************************************************************************/
 
-    public void inject(DataModel dataModel) {
+    public void inject(AsyncDataModel dataModel) {
         this.dataModel = dataModel;
 
-        fromDatePicker.setOnAction(e -> loadImpl());
-        toDatePicker.setOnAction(e -> loadImpl());
+        fromDatePicker.setOnAction(e -> load());
+        toDatePicker.setOnAction(e -> load());
+        dataModel.addListener(new OverviewUpdater());
     }
 
+    /**
+     * Load the table contents, unless the overview displayed is still current.
+     */
     public void load() {
+        if (pendingLoad == null && overview != null && ! stale
+            && overview.isCurrentFor(fromDatePicker.getValue(), toDatePicker.getValue())) {
+            return;
+        }
         loadImpl();
     }
 
+    /**
+     * Discard the overview if derived from any of the given tables modified by other clients, so that it's loaded
+     * again when next displayed.
+     *
+     * @param tables the names of the modified tables.
+     */
+    public void invalidate(Set<String> tables) {
+        if (! Collections.disjoint(tables, OVERVIEW_TABLES)) { overview = null; }
+    }
+
+    /**
+     * Patch the overview displayed after other clients have modified the given tables.
+     *
+     * <p> The overview is retrieved again in the background and only the values that changed are updated, so the
+     * table doesn't lose its selection or scroll position. Nothing is done while the overview is loading.
+     *
+     * <p> If the overview can't be retrieved the user is told, and the overview displayed is kept but marked as out of
+     * date, so that it's retrieved again on the next poll or when the tab is next selected.
+     *
+     * @param tables the names of the modified tables.
+     */
+    public void refresh(Set<String> tables) {
+        if (overview == null || pendingLoad != null) { return; }
+        if (! stale && Collections.disjoint(tables, OVERVIEW_TABLES)) { return; }
+
+        Overview displayed = overview;
+        QueryFuture<Overview> load = dataModel.overview(fromDatePicker.getValue(), toDatePicker.getValue());
+        pendingLoad = load;
+        load.thenAccept(loaded -> {
+            if (pendingLoad != load || overview != displayed) { return; }
+            stale = false;
+            if (! displayed.update(loaded.getRows())) {
+                overview = loaded;
+                tableView.getItems().setAll(loaded.getRows());
+            }
+        }).whenComplete((ignored, error) -> {
+            if (pendingLoad != load) { return; }
+            pendingLoad = null;
+            if (error != null) {
+                stale = true;
+                ErrorAlert.show("Oversikten kunne ikke oppdateres.", error);
+            }
+        });
+    }
+
     /************************************************************************
      *
      * Private implementation
      *
      ************************************************************************/
 
+    /**
+     * Saves the firewood of a hut when edited, but not when reloaded from the database, e.g. after another client
+     * saved it.
+     *
+     * <p> If the firewood can't be saved the user is told, and the huts are retrieved again to show what is actually
+     * stored.
+     */
     private class RowUpdater implements Consumer<OverviewRow> {
         @Override public void accept(OverviewRow overviewRow) {
-            try {
-                dataModel.updateHutFirewood(overviewRow.getHut());
-            } catch (SQLException e) {
-                UnhandledExceptionDialog.create(e);
-                throw new IllegalStateException(e);
-            }
+            if (overviewRow.getHut().isReloading()) { return; }
+            dataModel.updateHutFirewood(overviewRow.getHut()).exceptionally(error -> {
+                ErrorAlert.show("Vedbeholdningen kunne ikke lagres.", error);
+                dataModel.getHuts().exceptionally(reloadError -> {
+                    ErrorAlert.show("Vedbeholdningen kunne ikke lagres eller hentes p\u00e5 nytt.", reloadError);
+                    return null;
+                });
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Patches the displayed overview as records are added elsewhere in the application.
+     *
+     * <p> A load in progress may or may not include the added record, so it is discarded instead and the overview is
+     * loaded again when next displayed.
+     */
+    private class OverviewUpdater implements DataListener {
+        @Override public void reservationAdded(Reservation reservation) {
+            if (discardPendingLoad()) { return; }
+            if (overview != null) { overview.reservationAdded(reservation); }
+        }
+
+        @Override public void forgottenItemAdded(ForgottenItem forgottenItem) {
+            if (discardPendingLoad()) { return; }
+            if (overview != null) { overview.forgottenItemAdded(forgottenItem); }
+        }
+
+        @Override public void brokenItemAdded(BrokenItem brokenItem) {
+            if (discardPendingLoad()) { return; }
+            if (overview != null) { overview.brokenItemAdded(brokenItem); }
+        }
+
+        /**
+         * Discard the load in progress, if any.
+         *
+         * @return true if a load was discarded.
+         */
+        private boolean discardPendingLoad() {
+            if (pendingLoad == null) { return false; }
+            pendingLoad.cancel(true);
+            pendingLoad = null;
+            overview = null;
+            return true;
         }
     }
 
     /**
      * Load the table contents based on the given filters.
      *
-     * <p> Note that this function calls {@link DataModel#overviewRows(LocalDate, LocalDate) DataModel#overviewRows()}
-     * which executes a potentially expensive database query.
+     * <p> Note that this function calls {@link DataModel#overview(LocalDate, LocalDate) DataModel#overview()}
+     * which executes a potentially expensive database query. The query runs in the background, and a load still in
+     * progress is cancelled as it is superseded by a new one. If the overview can't be retrieved the user is told,
+     * and the overview displayed is kept until the next load.
      */
     private void loadImpl() {
         LocalDate fromDate = fromDatePicker.getValue();
         LocalDate toDate = toDatePicker.getValue();
 
-        ObservableList<OverviewRow> overviewRows;
-        try {
-            overviewRows = dataModel.overviewRows(fromDate, toDate);
-        } catch (SQLException e) {
-            UnhandledExceptionDialog.create(e);
-            throw new IllegalStateException(e);
-        }
+        if (pendingLoad != null) { pendingLoad.cancel(true); }
 
-        tableView.getItems().setAll(overviewRows);
+        QueryFuture<Overview> load = dataModel.overview(fromDate, toDate);
+        pendingLoad = load;
+        load.thenAccept(loaded -> {
+            overview = loaded;
+            stale = false;
+            tableView.getItems().setAll(loaded.getRows());
+        }).whenComplete((ignored, error) -> {
+            if (pendingLoad != load) { return; }
+            pendingLoad = null;
+            if (error != null) { ErrorAlert.show("Oversikten kunne ikke hentes.", error); }
+        });
     }
 
     /**
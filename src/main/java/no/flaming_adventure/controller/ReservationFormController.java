@@ -4,13 +4,14 @@ import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.text.Text;
-import no.flaming_adventure.model.DataModel;
+import no.flaming_adventure.model.AsyncDataModel;
 import no.flaming_adventure.model.Hut;
+import no.flaming_adventure.model.QueryFuture;
 import no.flaming_adventure.model.Reservation;
+import no.flaming_adventure.util.ErrorAlert;
 import no.flaming_adventure.util.StringMaxLengthListener;
 import no.flaming_adventure.util.UnhandledExceptionDialog;
 
-import java.sql.SQLException;
 import java.time.LocalDate;
 
 /**
@@ -61,7 +62,10 @@ public class ReservationFormController {
      ************************************************************************/
 
     /* Injected dependencies (see #inject()). */
-    private DataModel           dataModel;
+    private AsyncDataModel      dataModel;
+
+    /* The occupancy lookup in progress, if any (see #updateAction()). */
+    private QueryFuture<Integer> pendingUpdate = null;
 
     /* JavaFX injected dependencies. */
     @FXML private ComboBox<Hut>      hutComboBox;
@@ -79,7 +83,7 @@ public class ReservationFormController {
      *
      ************************************************************************/
 
-    public void inject(DataModel dataModel) {
+    public void inject(AsyncDataModel dataModel) {
         this.dataModel = dataModel;
     }
 
@@ -89,19 +93,13 @@ public class ReservationFormController {
      * <p> Note: this method should be called after {@link #initialize() initialize()} has been called by JavaFX.
      */
     public void load() {
-        ObservableList<Hut> huts;
-        try {
-            huts = dataModel.getHuts();
-        } catch (SQLException e) {
-            UnhandledExceptionDialog.create(e);
-            throw new IllegalStateException(e);
-        }
-
-        hutComboBox.setItems(huts);
-        hutComboBox.getSelectionModel().selectFirst();
-        datePicker.setValue(TODAY);
+        dataModel.getHuts().thenAccept(huts -> {
+            hutComboBox.setItems(huts);
+            hutComboBox.getSelectionModel().selectFirst();
+            datePicker.setValue(TODAY);
 
-        updateAction();
+            updateAction();
+        }).exceptionally(ErrorAlert.handler("Hyttene kunne ikke hentes."));
     }
 
     /************************************************************************
@@ -136,21 +134,25 @@ public class ReservationFormController {
 
     /**
      * Update the form based on the currently selected hut and date.
+     *
+     * <p> The occupancy is looked up in the background, cancelling any lookup made obsolete by the new selection.
      */
     private void updateAction() {
         Hut hut = hutComboBox.getValue();
         LocalDate date = datePicker.getValue();
 
+        if (pendingUpdate != null) { pendingUpdate.cancel(true); }
+
         if (hut == null || date == null) { return; }
 
-        Integer occupancy;
-        try {
-            occupancy = dataModel.occupancy(hut, date);
-        } catch (SQLException e) {
-            UnhandledExceptionDialog.create(e);
-            throw new IllegalStateException(e);
-        }
+        QueryFuture<Integer> update = dataModel.occupancy(hut, date);
+        pendingUpdate = update;
+        update.thenAccept(occupancy -> updateCapacity(hut, occupancy))
+              .whenComplete((ignored, error) -> { if (pendingUpdate == update) { pendingUpdate = null; } })
+              .exceptionally(ErrorAlert.handler("Kapasiteten kunne ikke hentes."));
+    }
 
+    private void updateCapacity(Hut hut, int occupancy) {
         Integer totalCapacity = hut.getCapacity();
         Integer actualCapacity = totalCapacity - occupancy;
 
@@ -210,6 +212,9 @@ public class ReservationFormController {
 
     /**
      * Validate the current form data and commit it to the database as a reservation if it is valid.
+     *
+     * <p> If the reservation can't be stored the user is told, and the form is enabled again with its contents kept
+     * so that the reservation can be committed again.
      */
     private void commitAction() {
         disableInput(true);
@@ -221,16 +226,21 @@ public class ReservationFormController {
         Integer count   = countChoiceBox.getValue();
         String comment  = commentTextArea.getText();
 
+        Reservation reservation;
         try {
-            Reservation reservation = new Reservation(-1, hut, date, name, email, count, comment);
-            dataModel.insertReservation(reservation);
+            reservation = new Reservation(-1, hut, date, name, email, count, comment);
         } catch (Exception e) {
             UnhandledExceptionDialog.create(e);
             throw new IllegalStateException(e);
         }
 
-        updateAction();
+        dataModel.insertReservation(reservation).thenRun(() -> {
+            // Re-enable hut and date selection before the occupancy update, which may disable the rest of the form.
+            hutComboBox.setDisable(false);
+            datePicker.setDisable(false);
 
-        enableInput(true);
+            updateAction();
+        }).whenComplete((ignored, error) -> { if (error != null) { enableInput(true); } })
+          .exceptionally(ErrorAlert.handler("Reservasjonen kunne ikke lagres."));
     }
 }
@@ -1,20 +1,22 @@
 package no.flaming_adventure.controller;
 
-import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.DatePicker;
 import javafx.scene.control.TableColumn;
 import no.flaming_adventure.App;
-import no.flaming_adventure.model.DataModel;
+import no.flaming_adventure.model.AsyncDataModel;
 import no.flaming_adventure.model.Hut;
+import no.flaming_adventure.model.Page;
+import no.flaming_adventure.model.QueryFuture;
+import no.flaming_adventure.model.RowWriter;
 import no.flaming_adventure.model.Reservation;
 import no.flaming_adventure.util.DateCellFactory;
-import no.flaming_adventure.util.UnhandledExceptionDialog;
+import no.flaming_adventure.util.ErrorAlert;
 
-import java.sql.SQLException;
 import java.time.LocalDate;
+import java.util.Arrays;
 
 /**
  * Controller for the reservation table view.
@@ -52,7 +54,7 @@ public class ReservationTableController extends TableControllerBase<Reservation>
      *                                                                         *
      **************************************************************************/
 
-    @Override public void inject(DataModel dataModel) {
+    @Override public void inject(AsyncDataModel dataModel) {
         super.inject(dataModel);
 
         hutFilter.setOnAction(this::setDataEventHandler);
@@ -61,24 +63,22 @@ public class ReservationTableController extends TableControllerBase<Reservation>
     }
 
     @Override public void load() {
-        ObservableList<Hut> huts;
-        try {
-            huts = dataModel.getHuts();
-        } catch (SQLException e) {
-            UnhandledExceptionDialog.create(e);
-            throw new IllegalStateException(e);
-        }
-
-        hutFilter.getItems().clear();
-        hutFilter.getItems().add(HUT_FILTER_NO_SELECTION);
-        hutFilter.getItems().addAll(huts);
-
-        // Don't load the data just because we changed the filter.
-        dataLock = true;
-        hutFilter.getSelectionModel().selectFirst();
-        dataLock = false;
-
-        super.load();
+        dataModel.getHuts().thenAccept(huts -> {
+            hutFilter.getItems().clear();
+            hutFilter.getItems().add(HUT_FILTER_NO_SELECTION);
+            hutFilter.getItems().addAll(huts);
+
+            // Don't load the data just because we changed the filter.
+            dataLock = true;
+            hutFilter.getSelectionModel().selectFirst();
+            dataLock = false;
+
+            super.load();
+        }).exceptionally(ErrorAlert.handler("Hyttene kunne ikke hentes."));
+    }
+
+    @Override public String getTableName() {
+        return "reservations";
     }
 
     /***************************************************************************
@@ -116,28 +116,23 @@ public class ReservationTableController extends TableControllerBase<Reservation>
         loadPage(0);
     }
 
-    @Override protected void loadPageImpl(Integer pageIndex) {
-        Hut hut = hutFilter.getValue();
-        if (hut == HUT_FILTER_NO_SELECTION) { hut = null; }
-        setData(pageIndex, hut, fromDateFilter.getValue(), toDateFilter.getValue());
+    @Override protected Object getFilter() {
+        return Arrays.asList(hutFilter.getValue(), fromDateFilter.getValue(), toDateFilter.getValue());
     }
 
-    private void setData(Integer pageIndex, Hut hutFilter, LocalDate fromDateFilter, LocalDate toDateFilter) {
-        Integer reservationCount;
-        ObservableList<Reservation> reservations;
-        try {
-            reservationCount = dataModel.reservationCount(hutFilter, fromDateFilter, toDateFilter);
-            reservations = dataModel.reservationPage(pageIndex * ITEMS_PER_PAGE, ITEMS_PER_PAGE,
-                                                     hutFilter, fromDateFilter, toDateFilter, ordering);
-        } catch (SQLException e) {
-            UnhandledExceptionDialog.create(e);
-            throw new IllegalStateException(e);
-        }
-
-        this.items.setAll(reservations);
+    @Override protected QueryFuture<Page<Reservation>> fetchPage(Page<Reservation> anchor, Integer pageIndex,
+                                                                 Integer pageSize) {
+        return dataModel.reservationPage(anchor, pageIndex, pageSize,
+                                         getHut(), fromDateFilter.getValue(), toDateFilter.getValue(), ordering);
+    }
 
-        setPageCount(reservationCount);
+    @Override protected QueryFuture<Long> exportRows(RowWriter writer) {
+        return dataModel.exportReservations(getHut(), fromDateFilter.getValue(), toDateFilter.getValue(), ordering,
+                                            writer);
+    }
 
-        pagination.setCurrentPageIndex(pageIndex);
+    private Hut getHut() {
+        Hut hut = hutFilter.getValue();
+        return hut == HUT_FILTER_NO_SELECTION ? null : hut;
     }
-}
+}
\ No newline at end of file
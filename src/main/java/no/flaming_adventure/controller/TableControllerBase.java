@@ -1,18 +1,46 @@
 package no.flaming_adventure.controller;
 
+import javafx.application.Platform;
 import javafx.beans.Observable;
 import javafx.beans.value.ObservableValue;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
+import javafx.scene.control.Alert;
+import javafx.scene.control.Button;
 import javafx.scene.control.Pagination;
+import javafx.scene.control.ProgressIndicator;
 import javafx.scene.control.SortEvent;
+import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
+import javafx.scene.control.ToggleButton;
+import javafx.stage.FileChooser;
 import javafx.util.Callback;
-import no.flaming_adventure.model.DataModel;
+import no.flaming_adventure.model.AsyncDataModel;
+import no.flaming_adventure.model.Page;
+import no.flaming_adventure.model.QueryFuture;
+import no.flaming_adventure.model.RowWriter;
+import no.flaming_adventure.util.CsvWriter;
+import no.flaming_adventure.util.ErrorAlert;
+import no.flaming_adventure.util.JsonWriter;
 import no.flaming_adventure.util.ListUpdateListener;
 import no.flaming_adventure.util.SQLSortPolicy;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
 public abstract class TableControllerBase<T> {
 
     /***************************************************************************
@@ -43,6 +71,27 @@ public abstract class TableControllerBase<T> {
      */
     protected static final Integer ITEMS_PER_PAGE = 50;
 
+    /**
+     * The maximum number of pages kept in the {@link #pageCache page cache}.
+     */
+    protected static final int PAGE_CACHE_SIZE = 16;
+
+    /**
+     * The number of rows in a block of the {@link #rows scrolling list}.
+     */
+    protected static final int ROWS_PER_BLOCK = 200;
+
+    /**
+     * The maximum number of blocks kept by the {@link #rows scrolling list}.
+     */
+    protected static final int MAX_BLOCKS = 16;
+
+    private static final FileChooser.ExtensionFilter CSV_FILES
+            = new FileChooser.ExtensionFilter("CSV (*.csv)", "*.csv");
+
+    private static final FileChooser.ExtensionFilter JSON_FILES
+            = new FileChooser.ExtensionFilter("JSON (*.json)", "*.json");
+
 
     /***************************************************************************
      *                                                                         *
@@ -53,18 +102,41 @@ public abstract class TableControllerBase<T> {
     /**
      * The table's data model, should be injected in {@link #inject}.
      */
-    protected DataModel dataModel;
+    protected AsyncDataModel dataModel;
 
     /**
      * The table's list of items.
      */
     protected final ObservableList<T> items;
 
+    /**
+     * Element to Observable[] converter of the items, if they are editable.
+     */
+    private final Callback<T, Observable[]> extractor;
+
+    /**
+     * The list of every row displayed instead of the {@link #items item list} in scroll mode, if enabled.
+     *
+     * @see #setScrollMode(boolean)
+     */
+    private VirtualRowList<T> rows = null;
+
     /**
      * A string used as parameter to an SQL <code>ORDER BY</code> clause.
      */
     protected String ordering = null;
 
+    /**
+     * The page currently displayed, if any.
+     *
+     * <p> This is passed back to the data model as an anchor when loading a new page, allowing the data model to
+     * seek to the next or previous page instead of skipping past every preceding record, and to reuse the total
+     * number of records while the filter stays the same.
+     *
+     * @see #setPage(Page)
+     */
+    protected Page<T> page = null;
+
     /**
      * The {@link #items item list} should only be updated by user code if this is false.
      *
@@ -73,6 +145,57 @@ public abstract class TableControllerBase<T> {
      */
     protected Boolean dataLock = false;
 
+    /**
+     * The page load in progress, if any.
+     *
+     * @see #showPage(QueryFuture)
+     */
+    private QueryFuture<Page<T>> pendingLoad = null;
+
+    /**
+     * Recently displayed and prefetched pages, keyed by filter, ordering and page index.
+     *
+     * <p> The least recently used page is evicted once the cache holds {@link #PAGE_CACHE_SIZE} pages. The cache is
+     * cleared whenever the filter or ordering changes, or the table is modified.
+     *
+     * @see #loadPage(Integer)
+     */
+    private final Map<Object, Page<T>> pageCache = new LinkedHashMap<Object, Page<T>>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<Object, Page<T>> eldest) {
+            return size() > PAGE_CACHE_SIZE;
+        }
+    };
+
+    /**
+     * Prefetches in progress, keyed like the {@link #pageCache page cache}.
+     */
+    private final Map<Object, QueryFuture<Page<T>>> prefetches = new HashMap<>();
+
+    /**
+     * The filter of the cached pages.
+     */
+    private Object cacheFilter = null;
+
+    /**
+     * Incremented whenever the page cache is cleared, so that loads started before are not cached.
+     */
+    private long cacheGeneration = 0;
+
+    /**
+     * The most recent queued edit, watched for failure.
+     *
+     * @see #applyEdit
+     */
+    private QueryFuture<Void> pendingWrite = null;
+
+    /**
+     * The number of rows removed from the current page since it was displayed, as edits made them fall outside the
+     * filter.
+     *
+     * @see #applyEdit
+     */
+    private int removedRows = 0;
+
     /**
      * The JavaFX table view displaying the {@link #items item list}.
      */
@@ -85,6 +208,25 @@ public abstract class TableControllerBase<T> {
      */
     @FXML protected Pagination pagination;
 
+    /**
+     * An indicator shown on top of the table view while a page is loading.
+     */
+    @FXML protected ProgressIndicator loadingIndicator;
+
+    /**
+     * A button exporting every record matching the current filter.
+     *
+     * @see #export()
+     */
+    @FXML protected Button exportButton;
+
+    /**
+     * A toggle switching between pages and a single scrolling list of every row.
+     *
+     * @see #setScrollMode(boolean)
+     */
+    @FXML protected ToggleButton scrollModeToggle;
+
     /***************************************************************************
      *                                                                         *
      * Constructors                                                            *
@@ -108,6 +250,7 @@ public abstract class TableControllerBase<T> {
      *                  listen for list updates.
      */
     protected TableControllerBase(Callback<T, Observable[]> extractor) {
+        this.extractor = extractor;
         if (extractor == null) {
             items = FXCollections.observableArrayList();
         } else {
@@ -122,21 +265,62 @@ public abstract class TableControllerBase<T> {
      *                                                                         *
      **************************************************************************/
 
-    public void inject(DataModel dataModel) {
+    public void inject(AsyncDataModel dataModel) {
         this.dataModel = dataModel;
 
         tableView.setOnSort(TableControllerBase::onSortEventHandler);
         tableView.setSortPolicy(new SQLSortPolicy<>(this::setOrdering));
 
         pagination.currentPageIndexProperty().addListener(this::currentPageIndexPropertyListener);
+        exportButton.setOnAction(ignored -> export());
+        scrollModeToggle.selectedProperty().addListener((observable, oldValue, selected) -> setScrollMode(selected));
     }
 
     public void load() {
         ordering = null;
+        page = null;
+        clearPageCache();
         tableView.getSortOrder().clear();
         loadPage(0);
     }
 
+    /**
+     * Reload the current page in place, e.g. after the table has been modified by another client.
+     *
+     * <p> Unlike {@link #load()} the filter, ordering and page are kept, and the loading indicator isn't shown. The
+     * selected row is kept by position. Nothing is done while a page is loading, as it's superseded anyway. If the
+     * page can't be retrieved the user is told, and the page displayed is kept.
+     */
+    public void refresh() {
+        if (rows != null) {
+            rows.reload();
+            return;
+        }
+        if (dataLock || page == null || pendingLoad != null) { return; }
+
+        clearPageCache();
+        int pageIndex = pagination.getCurrentPageIndex();
+        QueryFuture<Page<T>> refresh = fetchPage(page, pageIndex, ITEMS_PER_PAGE);
+        cachePage(refresh, pageKey(pageIndex));
+        pendingLoad = refresh;
+
+        refresh.thenAccept(loaded -> {
+            if (pendingLoad != refresh) { return; }
+            int selected = tableView.getSelectionModel().getSelectedIndex();
+            setPage(loaded);
+            if (selected >= 0 && selected < items.size()) { tableView.getSelectionModel().select(selected); }
+        }).whenComplete((ignored, error) -> {
+            if (pendingLoad != refresh) { return; }
+            pendingLoad = null;
+            if (error != null) { ErrorAlert.show("Siden kunne ikke hentes.", error); }
+        });
+    }
+
+    /**
+     * Return the name of the database table displayed.
+     */
+    public abstract String getTableName();
+
     /***************************************************************************
      *                                                                         *
      * Implementation                                                          *
@@ -147,10 +331,38 @@ public abstract class TableControllerBase<T> {
 
     @FXML protected void initialize() {
         tableView.setItems(items);
+        tableView.getColumns().forEach(TableControllerBase::skipMissingRows);
+    }
+
+    /**
+     * Switch between displaying a page at a time and displaying every row in a single scrolling list.
+     *
+     * <p> In scroll mode the table view is backed by a {@link VirtualRowList sparse list} of every row matching the
+     * filter, which loads blocks of {@link #ROWS_PER_BLOCK} rows as they are scrolled to and keeps at most
+     * {@link #MAX_BLOCKS} of them. The pagination control is hidden, and any change of the filter or ordering starts
+     * a new list from the top.
+     *
+     * @param scroll whether to enable scroll mode.
+     */
+    protected final void setScrollMode(boolean scroll) {
+        pagination.setVisible(! scroll);
+        pagination.setManaged(! scroll);
+
+        if (scroll) {
+            cancelPendingLoad();
+            clearPageCache();
+            showRows();
+        } else {
+            rows.dispose();
+            rows = null;
+            tableView.setItems(items);
+            reloadPage();
+        }
     }
 
     protected final void setOrdering(String ordering) {
         this.ordering = ordering;
+        clearPageCache();
         loadPage(0);
     }
 
@@ -168,9 +380,295 @@ public abstract class TableControllerBase<T> {
         }
     }
 
+    /**
+     * Display the given future page once it completes.
+     *
+     * <p> Any page load still in progress is superseded, and cancelled along with the statements it is executing.
+     * The {@link #loadingIndicator loading indicator} is shown until the most recent load has completed. If the page
+     * can't be retrieved the user is told, and the page displayed is kept so that it can be loaded again.
+     *
+     * @param page future page.
+     */
+    protected final void showPage(QueryFuture<Page<T>> page) {
+        cancelPendingLoad();
+
+        pendingLoad = page;
+        loadingIndicator.setVisible(true);
+
+        page.thenAccept(this::setPage)
+            .whenComplete((ignored, error) -> {
+                if (pendingLoad != page) { return; }
+                pendingLoad = null;
+                loadingIndicator.setVisible(false);
+                if (error != null) { ErrorAlert.show("Siden kunne ikke hentes.", error); }
+            });
+    }
+
+    /**
+     * Cancel the page load in progress, if any.
+     */
+    protected final void cancelPendingLoad() {
+        QueryFuture<Page<T>> load = pendingLoad;
+        pendingLoad = null;
+        if (load != null) {
+            load.cancel(true);
+            loadingIndicator.setVisible(false);
+        }
+    }
+
+    /**
+     * Display the given page.
+     *
+     * @param page a page retrieved from the data model, which becomes the anchor for subsequent loads.
+     */
+    protected final void setPage(Page<T> page) {
+        this.page = page;
+        removedRows = 0;
+
+        items.setAll(page.getItems());
+
+        setPageCount(page.getTotal());
+
+        pagination.setCurrentPageIndex(page.getIndex());
+
+        prefetchAround(page);
+    }
+
+    /**
+     * Load and display the page with the given index.
+     *
+     * <p> Pages in the {@link #pageCache page cache} are displayed immediately, and pages being prefetched are
+     * displayed as soon as the prefetch completes. Otherwise the page is {@link #fetchPage fetched} from the data
+     * model.
+     *
+     * @param pageIndex the index of the page, counting from zero.
+     */
     protected final void loadPage(Integer pageIndex) {
-        if (!dataLock) { loadPageImpl(pageIndex); }
+        if (dataLock) { return; }
+        if (rows != null) {
+            showRows();
+            return;
+        }
+
+        Object filter = getFilter();
+        if (!Objects.equals(filter, cacheFilter)) {
+            clearPageCache();
+            cacheFilter = filter;
+        }
+
+        Object key = pageKey(pageIndex);
+        Page<T> cached = pageCache.get(key);
+        if (cached != null) {
+            cancelPendingLoad();
+            setPage(cached);
+            return;
+        }
+
+        QueryFuture<Page<T>> future = prefetches.remove(key);
+        if (future == null) {
+            future = fetchPage(page, pageIndex, ITEMS_PER_PAGE);
+            cachePage(future, key);
+        }
+        showPage(future);
+    }
+
+    /**
+     * Reload the current page, e.g. after the table has been modified.
+     */
+    protected final void reloadPage() {
+        if (rows != null) {
+            rows.reload();
+            return;
+        }
+        clearPageCache();
+        loadPage(pagination.getCurrentPageIndex());
+    }
+
+    /**
+     * Keep an edit of a row displayed while it's written in the background, without reloading the page.
+     *
+     * <p> The row has already been modified in place, so the table keeps its selection and scroll position. If the
+     * row no longer matches the filter it's removed from the page and the page count is adjusted, rather than both
+     * being queried again. Only if the write fails is the user told and the page reloaded, to show what is actually
+     * stored.
+     *
+     * <p> In scroll mode the rows are reloaded instead, as rows can't be removed from the scrolling list.
+     *
+     * <p> Edits of the same record that are coalesced by the data model share a future, and only cause a single
+     * reload on failure.
+     *
+     * @param item      the edited row.
+     * @param write     the future of the edit queued with the data model.
+     * @param excluded  whether the row no longer matches the filter.
+     */
+    protected final void applyEdit(T item, QueryFuture<Void> write, boolean excluded) {
+        if (excluded && rows != null) {
+            // The edit is reported while the rows notify their listeners, and the write is flushed before the reload.
+            Platform.runLater(rows::reload);
+        } else if (excluded) {
+            // The edit is reported while the item list notifies its listeners, so remove the row once it's done.
+            Platform.runLater(() -> {
+                if (! items.remove(item)) { return; }
+                removedRows++;
+                // The cached pages still count the row, and the current one still contains it.
+                clearPageCache();
+                setPageCount(page.getTotal() - removedRows);
+            });
+        }
+
+        if (write == pendingWrite) { return; }
+        pendingWrite = write;
+        write.whenComplete((ignored, error) -> {
+            if (pendingWrite == write) { pendingWrite = null; }
+            if (error == null) { return; }
+            ErrorAlert.show("Endringen kunne ikke lagres.", error);
+            reloadPage();
+        });
+    }
+
+    /**
+     * Return an object identifying the current filter, which must be equal for equal filter settings.
+     */
+    protected abstract Object getFilter();
+
+    /**
+     * Fetch the page with the given index using the current filter and ordering.
+     *
+     * @param anchor    a page of the same size retrieved before, if any, for use as an anchor.
+     * @param pageIndex the index of the page, counting from zero.
+     * @param pageSize  the number of items on a page.
+     * @return the future page.
+     */
+    protected abstract QueryFuture<Page<T>> fetchPage(Page<T> anchor, Integer pageIndex, Integer pageSize);
+
+    /**
+     * Stream every record matching the current filter to the given writer, in the current ordering.
+     *
+     * @param writer the writer to write the records to, which the data model closes once the export has finished.
+     * @return the future number of records written.
+     */
+    protected abstract QueryFuture<Long> exportRows(RowWriter writer);
+
+    /**
+     * Ask the user for a file and export the table to it in the background, as CSV or JSON depending on the chosen
+     * file type.
+     *
+     * <p> The file is removed again if the export fails.
+     *
+     * @see #exportRows(RowWriter)
+     */
+    private void export() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Eksporter");
+        fileChooser.getExtensionFilters().addAll(CSV_FILES, JSON_FILES);
+        File file = fileChooser.showSaveDialog(tableView.getScene().getWindow());
+        if (file == null) { return; }
+
+        boolean json = fileChooser.getSelectedExtensionFilter() == JSON_FILES
+                       || file.getName().toLowerCase(Locale.ROOT).endsWith(".json");
+        Path path = file.toPath();
+        RowWriter writer;
+        try {
+            Writer fileWriter = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+            writer = json ? new JsonWriter(fileWriter) : new CsvWriter(fileWriter);
+        } catch (IOException e) {
+            showExportError(path, e);
+            return;
+        }
+
+        // Only one export at a time, an export holds on to a database connection until it's done.
+        exportButton.setDisable(true);
+        exportRows(writer).thenAccept(rows -> {
+            Alert alert = new Alert(Alert.AlertType.INFORMATION);
+            alert.setTitle("Eksport fullf\u00f8rt");
+            alert.setHeaderText(null);
+            alert.setContentText("Eksporterte " + rows + " oppf\u00f8ringer til " + path + ".");
+            alert.show();
+        }).whenComplete((ignored, error) -> {
+            exportButton.setDisable(false);
+            if (error != null) {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    error.addSuppressed(e);
+                }
+                showExportError(path, error);
+            }
+        });
     }
 
-    protected abstract void loadPageImpl(Integer pageIndex);
+    /**
+     * Tell the user that exporting to the given file failed, e.g. because it's read-only or the disk is full.
+     */
+    private static void showExportError(Path path, Throwable error) {
+        ErrorAlert.show("Eksport feilet", "Kunne ikke eksportere til " + path + ".", error);
+    }
+
+    /**
+     * Display a new scrolling list of the rows matching the current filter, in the current ordering.
+     */
+    private void showRows() {
+        if (rows != null) { rows.dispose(); }
+        rows = new VirtualRowList<>(ROWS_PER_BLOCK, MAX_BLOCKS, this::fetchPage, extractor);
+        if (extractor != null) {
+            rows.addListener(new ListUpdateListener<T>(this::updateItem));
+        }
+        tableView.setItems(rows);
+    }
+
+    /**
+     * Make the cell value factories of the given column and its nested columns skip the rows of the
+     * {@link #rows scrolling list} that aren't loaded yet, which are <code>null</code>.
+     */
+    private static <S, V> void skipMissingRows(TableColumn<S, V> column) {
+        Callback<TableColumn.CellDataFeatures<S, V>, ObservableValue<V>> factory = column.getCellValueFactory();
+        if (factory != null) {
+            column.setCellValueFactory(param -> param.getValue() == null ? null : factory.call(param));
+        }
+        column.getColumns().forEach(TableControllerBase::skipMissingRows);
+    }
+
+    private Object pageKey(int pageIndex) {
+        return Arrays.asList(cacheFilter, ordering, pageIndex);
+    }
+
+    /**
+     * Add the given future page to the cache once it completes, unless the cache has been cleared in the meantime.
+     */
+    private void cachePage(QueryFuture<Page<T>> future, Object key) {
+        long generation = cacheGeneration;
+        future.thenAccept(result -> {
+            if (generation == cacheGeneration) { pageCache.put(key, result); }
+        });
+    }
+
+    /**
+     * Prefetch the pages adjacent to the given page in the background, unless they are cached already.
+     *
+     * <p> Prefetches don't wait for queued edits to be written. The rows edited are on the page displayed, whose
+     * cached copy holds the edited rows themselves.
+     */
+    private void prefetchAround(Page<T> page) {
+        for (int pageIndex : new int[]{page.getIndex() - 1, page.getIndex() + 1}) {
+            if (pageIndex < 0 || pageIndex * ITEMS_PER_PAGE >= page.getTotal()) { continue; }
+
+            Object key = pageKey(pageIndex);
+            if (pageCache.containsKey(key) || prefetches.containsKey(key)) { continue; }
+
+            QueryFuture<Page<T>> future = dataModel.prefetch(() -> fetchPage(page, pageIndex, ITEMS_PER_PAGE));
+            prefetches.put(key, future);
+            cachePage(future, key);
+            // Failed prefetches are ignored, the error will surface if the page is actually loaded.
+            future.whenComplete((result, error) -> prefetches.remove(key, future));
+        }
+    }
+
+    private void clearPageCache() {
+        cacheGeneration++;
+        pageCache.clear();
+        // Cancelling a prefetch removes it from the map, so cancel a copy.
+        List<QueryFuture<Page<T>>> cancelled = new ArrayList<>(prefetches.values());
+        prefetches.clear();
+        cancelled.forEach(future -> future.cancel(true));
+    }
 }
@@ -0,0 +1,371 @@
+package no.flaming_adventure.controller;
+
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+import javafx.collections.ObservableListBase;
+import javafx.util.Callback;
+import no.flaming_adventure.model.Page;
+import no.flaming_adventure.model.QueryFuture;
+import no.flaming_adventure.util.ErrorAlert;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A sparse list of the rows of a table, loaded in blocks as they are asked for.
+ *
+ * <p> The list has the size of the whole filtered table, but only holds the rows of the blocks recently asked for. A
+ * {@link javafx.scene.control.TableView table view} only asks for the rows within its viewport, so blocks are loaded
+ * as the view is scrolled to them. A row that isn't loaded yet is returned as <code>null</code>, and replaced once its
+ * block has been loaded. The neighbouring block is requested as well once a row within {@link #PREFETCH_MARGIN} rows
+ * of it is asked for, so that steady scrolling rarely shows missing rows.
+ *
+ * <p> At most <code>maxBlocks</code> blocks are kept, the block least recently asked for being evicted first, so
+ * memory use doesn't depend on the size of the table. Each block is loaded with the nearest loaded block as anchor,
+ * so that the data model can seek to it rather than skip every preceding row.
+ *
+ * <p> A block that fails to load is reported to the user and marked as failed. It isn't prefetched again, but loaded
+ * again the next time one of its rows is asked for, i.e. once it's shown again.
+ *
+ * <p> The list must only be used on the JavaFX application thread, and the loaded blocks must be delivered on it.
+ *
+ * @param <T> the type of the rows.
+ */
+final class VirtualRowList<T> extends ObservableListBase<T> {
+
+    /***************************************************************************
+     *                                                                         *
+     * Static variables and methods                                            *
+     *                                                                         *
+     **************************************************************************/
+
+    /**
+     * Loads a block of rows.
+     */
+    @FunctionalInterface
+    interface BlockLoader<T> {
+        /**
+         * @param anchor        a previously loaded block, can optionally be <code>null</code>.
+         * @param blockIndex    the index of the block, counting from zero.
+         * @param blockSize     the number of rows in a block.
+         * @return the future block, as a page of the given size.
+         */
+        QueryFuture<Page<T>> load(Page<T> anchor, int blockIndex, int blockSize);
+    }
+
+    /**
+     * The distance in rows from the edge of a block within which the neighbouring block is prefetched.
+     */
+    static final int PREFETCH_MARGIN = 50;
+
+    /**
+     * The maximum number of blocks loading at a time. Dragging the scroll bar asks for the blocks passed over, which
+     * are superseded by the time they would be loaded, so the oldest load is cancelled beyond this.
+     */
+    static final int MAX_PENDING = 3;
+
+    /**
+     * A loaded block, with the listeners watching its rows.
+     */
+    private static final class Block<T> {
+        private final Page<T>                    page;
+        private final List<InvalidationListener> listeners = new ArrayList<>();
+        private final List<Observable>           observables = new ArrayList<>();
+
+        private Block(Page<T> page) {
+            this.page = page;
+        }
+    }
+
+    /***************************************************************************
+     *                                                                         *
+     * Instance Variables                                                      *
+     *                                                                         *
+     **************************************************************************/
+
+    private final int                       blockSize;
+    private final int                       maxBlocks;
+    private final BlockLoader<T>            loader;
+    private final Callback<T, Observable[]> extractor;
+
+    /**
+     * The loaded blocks by index, least recently asked for first.
+     */
+    private final Map<Integer, Block<T>> blocks = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The loaded blocks that are out of date, still shown until they have been loaded again.
+     */
+    private final Set<Integer> stale = new HashSet<>();
+
+    /**
+     * The blocks whose most recent load failed, which are only loaded again once one of their rows is asked for.
+     */
+    private final Set<Integer> failed = new HashSet<>();
+
+    /**
+     * The blocks loading, in the order they were requested.
+     */
+    private final Map<Integer, QueryFuture<Page<T>>> pending = new LinkedHashMap<>();
+
+    /**
+     * The number of rows in the table, as of the most recently loaded block.
+     */
+    private int size = 0;
+
+    /***************************************************************************
+     *                                                                         *
+     * Constructors                                                            *
+     *                                                                         *
+     **************************************************************************/
+
+    /**
+     * Construct an empty list and start loading its first block, which determines its size.
+     *
+     * @param blockSize the number of rows in a block.
+     * @param maxBlocks the maximum number of blocks kept.
+     * @param loader    the loader of the blocks.
+     * @param extractor element to Observable[] converter, used to report updates of the loaded rows. Can optionally
+     *                  be <code>null</code>.
+     */
+    VirtualRowList(int blockSize, int maxBlocks, BlockLoader<T> loader, Callback<T, Observable[]> extractor) {
+        this.blockSize = blockSize;
+        this.maxBlocks = maxBlocks;
+        this.loader = loader;
+        this.extractor = extractor;
+        request(0, false);
+    }
+
+    /***************************************************************************
+     *                                                                         *
+     * Public API                                                              *
+     *                                                                         *
+     **************************************************************************/
+
+    /**
+     * Return the row with the given index, or <code>null</code> if its block isn't loaded yet.
+     *
+     * <p> Requests the row's block if it isn't loaded or is out of date, and the neighbouring block if the row is
+     * close to it.
+     */
+    @Override public T get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        int blockIndex = index / blockSize;
+        int offset = index % blockSize;
+
+        Block<T> block = blocks.get(blockIndex);
+        if (block == null || stale.contains(blockIndex)) {
+            request(blockIndex, false);
+        }
+        if (offset < PREFETCH_MARGIN) {
+            request(blockIndex - 1, true);
+        } else if (offset >= blockSize - PREFETCH_MARGIN) {
+            request(blockIndex + 1, true);
+        }
+
+        if (block == null) { return null; }
+        List<T> rows = block.page.getItems();
+        return offset < rows.size() ? rows.get(offset) : null;
+    }
+
+    @Override public int size() {
+        return size;
+    }
+
+    /***************************************************************************
+     *                                                                         *
+     * Implementation                                                          *
+     *                                                                         *
+     **************************************************************************/
+
+    /**
+     * Mark every loaded block as out of date, e.g. after the table has been modified.
+     *
+     * <p> The rows are kept, and each block is loaded again as soon as it's asked for. The view is told that the
+     * loaded rows have been replaced, so that it asks for the ones it shows right away.
+     */
+    void reload() {
+        cancelPending();
+        failed.clear();
+        if (blocks.isEmpty()) {
+            request(0, false);
+            return;
+        }
+
+        stale.addAll(blocks.keySet());
+        beginChange();
+        for (int blockIndex : new ArrayList<>(blocks.keySet())) {
+            replaced(blockIndex, blocks.get(blockIndex).page.getItems().size());
+        }
+        endChange();
+    }
+
+    /**
+     * Stop loading blocks and watching the loaded rows, once the list is no longer displayed.
+     */
+    void dispose() {
+        cancelPending();
+        blocks.values().forEach(this::unwatch);
+        blocks.clear();
+        stale.clear();
+        failed.clear();
+    }
+
+    /**
+     * Start loading the block with the given index, unless it's outside the table or already loading.
+     *
+     * @param prefetch whether none of the block's rows have been asked for, in which case a block that failed to
+     *                 load isn't loaded again.
+     */
+    private void request(int blockIndex, boolean prefetch) {
+        if (blockIndex < 0 || (blockIndex > 0 && blockIndex * blockSize >= size)) { return; }
+        if (pending.containsKey(blockIndex)) { return; }
+        if (prefetch && failed.contains(blockIndex)) { return; }
+        if (blocks.containsKey(blockIndex) && ! stale.contains(blockIndex)) { return; }
+
+        if (pending.size() >= MAX_PENDING) {
+            Iterator<QueryFuture<Page<T>>> oldest = pending.values().iterator();
+            QueryFuture<Page<T>> superseded = oldest.next();
+            oldest.remove();
+            superseded.cancel(true);
+        }
+
+        QueryFuture<Page<T>> future = loader.load(nearestBlock(blockIndex), blockIndex, blockSize);
+        pending.put(blockIndex, future);
+        future.whenComplete((page, error) -> {
+            if (pending.get(blockIndex) != future) { return; }
+            pending.remove(blockIndex);
+            if (error != null) {
+                // Stale rows are still shown, missing ones stay empty until the block is asked for again.
+                failed.add(blockIndex);
+                ErrorAlert.show("Radene kunne ikke hentes.", error);
+            } else {
+                setBlock(blockIndex, page);
+            }
+        });
+    }
+
+    /**
+     * Store a loaded block, adjusting the size of the list to the total it was loaded with.
+     */
+    private void setBlock(int blockIndex, Page<T> page) {
+        Block<T> previous = blocks.remove(blockIndex);
+        if (previous != null) { unwatch(previous); }
+        stale.remove(blockIndex);
+        failed.remove(blockIndex);
+
+        Block<T> block = new Block<>(page);
+        watch(blockIndex, block);
+        blocks.put(blockIndex, block);
+
+        Iterator<Map.Entry<Integer, Block<T>>> eldest = blocks.entrySet().iterator();
+        while (blocks.size() > maxBlocks) {
+            Map.Entry<Integer, Block<T>> entry = eldest.next();
+            unwatch(entry.getValue());
+            stale.remove(entry.getKey());
+            eldest.remove();
+        }
+
+        beginChange();
+        resize(page.getTotal());
+        replaced(blockIndex, page.getItems().size());
+        endChange();
+    }
+
+    /**
+     * Change the size of the list, dropping the blocks that no longer fit.
+     */
+    private void resize(int total) {
+        if (total > size) {
+            nextAdd(size, total);
+        } else if (total < size) {
+            nextRemove(total, Collections.nCopies(size - total, null));
+            Iterator<Map.Entry<Integer, Block<T>>> iterator = blocks.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Integer, Block<T>> entry = iterator.next();
+                if (entry.getKey() > 0 && entry.getKey() * blockSize >= total) {
+                    unwatch(entry.getValue());
+                    stale.remove(entry.getKey());
+                    iterator.remove();
+                }
+            }
+        }
+        size = total;
+    }
+
+    /**
+     * Report the rows of the given block as replaced, as far as they are within the list.
+     */
+    private void replaced(int blockIndex, int rows) {
+        int from = blockIndex * blockSize;
+        int to = Math.min(from + rows, size);
+        if (from < to) {
+            // The rows replaced aren't known, and nothing should hold on to them anyway.
+            nextReplace(from, to, Collections.nCopies(to - from, null));
+        }
+    }
+
+    /**
+     * Return the loaded block closest to the given block, if any.
+     */
+    private Page<T> nearestBlock(int blockIndex) {
+        Page<T> nearest = null;
+        int distance = Integer.MAX_VALUE;
+        // Iterating the key set doesn't count as asking for the blocks, unlike get().
+        for (Map.Entry<Integer, Block<T>> entry : blocks.entrySet()) {
+            int d = Math.abs(entry.getKey() - blockIndex);
+            if (d < distance) {
+                distance = d;
+                nearest = entry.getValue().page;
+            }
+        }
+        return nearest;
+    }
+
+    private void cancelPending() {
+        // Cancelling completes the futures, whose handlers find that they are no longer pending.
+        List<QueryFuture<Page<T>>> cancelled = new ArrayList<>(pending.values());
+        pending.clear();
+        cancelled.forEach(future -> future.cancel(true));
+    }
+
+    /**
+     * Report updates of the rows of the given block, as an observable list created with the extractor would.
+     */
+    private void watch(int blockIndex, Block<T> block) {
+        if (extractor == null) { return; }
+
+        List<T> rows = block.page.getItems();
+        for (int offset = 0; offset < rows.size(); offset++) {
+            int index = blockIndex * blockSize + offset;
+            InvalidationListener listener = ignored -> {
+                if (index < size) {
+                    beginChange();
+                    nextUpdate(index);
+                    endChange();
+                }
+            };
+            for (Observable observable : extractor.call(rows.get(offset))) {
+                observable.addListener(listener);
+                block.listeners.add(listener);
+                block.observables.add(observable);
+            }
+        }
+    }
+
+    private void unwatch(Block<T> block) {
+        for (int i = 0; i < block.observables.size(); i++) {
+            block.observables.get(i).removeListener(block.listeners.get(i));
+        }
+        block.listeners.clear();
+        block.observables.clear();
+    }
+}
@@ -0,0 +1,488 @@
+package no.flaming_adventure.model;
+
+import javafx.collections.ObservableList;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Asynchronous variant of the {@link DataModel data model} API.
+ *
+ * <p> Every operation runs on a dedicated pool of worker threads and returns a {@link QueryFuture} that is completed
+ * through the callback executor given on construction. With <code>Platform::runLater</code> as callback executor
+ * all results, and any actions chained onto them, are delivered on the JavaFX application thread, so a slow database
+ * never freezes the user interface. Operations can be cancelled through their futures, which also cancels the SQL
+ * statement being executed.
+ *
+ * <p> Several calls to the data model can be combined into a single cancellable operation using
+ * {@link #submit(Query)}.
+ */
+public class AsyncDataModel {
+
+    /************************************************************************
+     *
+     * Static fields
+     *
+     ************************************************************************/
+
+    /**
+     * The default number of worker threads.
+     */
+    public static final int DEFAULT_THREADS = 4;
+
+    private static final Logger LOGGER = Logger.getLogger(AsyncDataModel.class.getName());
+
+    /**
+     * The tables with {@link #updateBrokenItemFixed queued edits} read by each kind of query.
+     */
+    private static final Set<String> BROKEN_ITEMS       = Collections.singleton("broken_items");
+    private static final Set<String> FORGOTTEN_ITEMS    = Collections.singleton("forgotten_items");
+    private static final Set<String> HUTS               = Collections.singleton("huts");
+    private static final Set<String> EDITED_TABLES      = new HashSet<>(
+            Arrays.asList("huts", "forgotten_items", "broken_items"));
+    private static final Set<String> NO_EDITED_TABLES   = Collections.emptySet();
+
+    /**
+     * An operation on the data model.
+     *
+     * @param <T> the type of the result.
+     */
+    @FunctionalInterface
+    public interface Query<T> {
+        T run(DataModel dataModel) throws SQLException;
+    }
+
+    /**
+     * An export from the data model, which may fail writing its rows.
+     */
+    @FunctionalInterface
+    private interface Export {
+        long run(DataModel dataModel) throws SQLException, IOException;
+    }
+
+    /************************************************************************
+     *
+     * Fields
+     *
+     ************************************************************************/
+
+    private final DataModel         dataModel;
+    private final Executor          callbackExecutor;
+    private final ExecutorService   executor;
+    private final WriteBehindQueue  writeBehindQueue;
+
+    /**
+     * Thread polling for modifications made by other clients, if started.
+     *
+     * @see #startPolling(long, TimeUnit)
+     */
+    private ScheduledExecutorService poller = null;
+
+    /**
+     * Whether the queries submitted on the current thread are prefetches.
+     *
+     * @see #prefetch(Supplier)
+     */
+    private final ThreadLocal<Boolean> prefetching = ThreadLocal.withInitial(() -> false);
+
+    /************************************************************************
+     *
+     * Constructors
+     *
+     ************************************************************************/
+
+    /**
+     * Create an asynchronous data model with the default number of worker threads.
+     *
+     * @see #AsyncDataModel(DataModel, Executor, int)
+     */
+    public AsyncDataModel(DataModel dataModel, Executor callbackExecutor) {
+        this(dataModel, callbackExecutor, DEFAULT_THREADS);
+    }
+
+    /**
+     * Create an asynchronous data model.
+     *
+     * @param dataModel         the data model performing the actual operations.
+     * @param callbackExecutor  executor used to complete the returned futures, e.g. <code>Platform::runLater</code>.
+     * @param threads           the number of worker threads.
+     */
+    public AsyncDataModel(DataModel dataModel, Executor callbackExecutor, int threads) {
+        this.dataModel          = dataModel;
+        this.callbackExecutor   = callbackExecutor;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "data-model-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        writeBehindQueue = new WriteBehindQueue(dataModel, callbackExecutor);
+    }
+
+    /************************************************************************
+     *
+     * Public API
+     *
+     ************************************************************************/
+
+    /**
+     * Run the given query on a worker thread.
+     *
+     * <p> Any pending {@link #updateBrokenItemFixed edits} are written before the query is run, so that the query
+     * sees them, unless the query is a {@link #prefetch(Supplier) prefetch}.
+     *
+     * @param query a function calling the data model, possibly several times.
+     * @return a future completed with the result of the query through the callback executor.
+     */
+    public <T> QueryFuture<T> submit(Query<T> query) {
+        return submit(EDITED_TABLES, query);
+    }
+
+    /**
+     * Submit the queries made by the given function as prefetches, which don't wait for the pending
+     * {@link #updateBrokenItemFixed edits} to be written and may not see them.
+     *
+     * <p> Prefetched results are speculative, and shouldn't hold up the queued edits or the queries the user is
+     * waiting for. Must be called on the thread the queries are submitted from.
+     *
+     * @param queries a function submitting queries to this data model, e.g. loading the next page.
+     * @return the result of the function.
+     */
+    public <T> T prefetch(Supplier<T> queries) {
+        prefetching.set(true);
+        try {
+            return queries.get();
+        } finally {
+            prefetching.set(false);
+        }
+    }
+
+    /**
+     * Run the given query on a worker thread, after writing any pending edits of the given tables read by the query
+     * unless it's a prefetch.
+     *
+     * @param reads the tables with queued edits the query reads.
+     */
+    private <T> QueryFuture<T> submit(Set<String> reads, Query<T> query) {
+        Set<String> flushed = prefetching.get() ? NO_EDITED_TABLES : reads;
+        Operation operation = new Operation();
+        QueryFuture<T> future = new QueryFuture<>(operation);
+        executor.execute(() -> {
+            if (future.isDone()) { return; }
+            writeBehindQueue.flush(flushed);
+            try {
+                T result = operation.run(query, dataModel);
+                callbackExecutor.execute(() -> future.complete(result));
+            } catch (Throwable e) {
+                callbackExecutor.execute(() -> future.completeExceptionally(e));
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Write any pending edits now instead of waiting for them to be flushed, without blocking.
+     */
+    public void flushWrites() {
+        writeBehindQueue.flushLater();
+    }
+
+    /**
+     * Start polling the database for tables modified by other clients on a background thread, notifying the listeners
+     * of any modified tables through the callback executor.
+     *
+     * <p> A poll only reads a single small table, so the interval can be short. Failed polls are logged and otherwise
+     * ignored, the next poll picks up any modifications missed.
+     *
+     * @param interval  the time between the end of a poll and the start of the next.
+     * @param unit      the unit of the interval.
+     * @see DataModel#pollChanges()
+     */
+    public synchronized void startPolling(long interval, TimeUnit unit) {
+        if (poller != null) { return; }
+        poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "change-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(() -> {
+            try {
+                dataModel.pollChanges();
+            } catch (SQLException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Failed to poll for changes.", e);
+            }
+        }, 0, interval, unit);
+    }
+
+    /**
+     * Stop the worker threads, cancelling any operations not yet started, after writing any pending edits.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            if (poller != null) { poller.shutdownNow(); }
+        }
+        executor.shutdownNow();
+        writeBehindQueue.shutdown();
+    }
+
+    /**
+     * Register a listener to be notified of every record modified through the data model, through the callback
+     * executor.
+     */
+    public void addListener(DataListener listener) {
+        dataModel.addListener(listener, callbackExecutor);
+    }
+
+    public void removeListener(DataListener listener) {
+        dataModel.removeListener(listener);
+    }
+
+    /**
+     * @see DataModel#setSlowQueryThreshold(long, TimeUnit)
+     */
+    public void setSlowQueryThreshold(long threshold, TimeUnit unit) {
+        dataModel.setSlowQueryThreshold(threshold, unit);
+    }
+
+    public long getSlowQueryThreshold(TimeUnit unit) {
+        return dataModel.getSlowQueryThreshold(unit);
+    }
+
+    /**
+     * Return the slow query report right away, it's kept in memory.
+     *
+     * @see DataModel#slowQueries()
+     */
+    public List<SlowQuery> slowQueries() {
+        return dataModel.slowQueries();
+    }
+
+    public void clearSlowQueries() {
+        dataModel.clearSlowQueries();
+    }
+
+    /**
+     * @see DataModel#registerMBeans(String)
+     */
+    public void registerMBeans(String name) {
+        dataModel.registerMBeans(name);
+    }
+
+    public void unregisterMBeans() {
+        dataModel.unregisterMBeans();
+    }
+
+    public QueryFuture<ObservableList<Hut>> getHuts() {
+        return submit(HUTS, DataModel::getHuts);
+    }
+
+    public QueryFuture<Integer> occupancy(Hut hut, LocalDate date) {
+        return submit(NO_EDITED_TABLES, model -> model.occupancy(hut, date));
+    }
+
+    public QueryFuture<Integer> reservationCount(Hut hut, LocalDate fromDate, LocalDate toDate) {
+        return submit(NO_EDITED_TABLES, model -> model.reservationCount(hut, fromDate, toDate));
+    }
+
+    public QueryFuture<Page<Reservation>> reservationPage(Page<Reservation> anchor, Integer pageIndex,
+                                                          Integer pageSize, Hut hut, LocalDate fromDate,
+                                                          LocalDate toDate, String orderBy) {
+        return submit(NO_EDITED_TABLES,
+                      model -> model.reservationPage(anchor, pageIndex, pageSize, hut, fromDate, toDate, orderBy));
+    }
+
+    public QueryFuture<Integer> equipmentCount(Hut hut, LocalDate fromDate, LocalDate toDate) {
+        return submit(NO_EDITED_TABLES, model -> model.equipmentCount(hut, fromDate, toDate));
+    }
+
+    public QueryFuture<Page<Equipment>> equipmentPage(Page<Equipment> anchor, Integer pageIndex, Integer pageSize,
+                                                      Hut hut, LocalDate fromDate, LocalDate toDate, String orderBy) {
+        return submit(NO_EDITED_TABLES,
+                      model -> model.equipmentPage(anchor, pageIndex, pageSize, hut, fromDate, toDate, orderBy));
+    }
+
+    public QueryFuture<Integer> brokenItemCount(Hut hut, LocalDate fromDate, LocalDate toDate, String filterBy) {
+        return submit(BROKEN_ITEMS, model -> model.brokenItemCount(hut, fromDate, toDate, filterBy));
+    }
+
+    public QueryFuture<Page<BrokenItem>> brokenItemPage(Page<BrokenItem> anchor, Integer pageIndex, Integer pageSize,
+                                                        Hut hut, LocalDate fromDate, LocalDate toDate,
+                                                        String orderBy, String filterBy, String search) {
+        return submit(BROKEN_ITEMS, model -> model.brokenItemPage(anchor, pageIndex, pageSize, hut, fromDate, toDate,
+                                                                  orderBy, filterBy, search));
+    }
+
+    public QueryFuture<Integer> forgottenItemCount(Hut hut, LocalDate fromDate, LocalDate toDate, String filterBy) {
+        return submit(FORGOTTEN_ITEMS, model -> model.forgottenItemCount(hut, fromDate, toDate, filterBy));
+    }
+
+    public QueryFuture<Page<ForgottenItem>> forgottenItemPage(Page<ForgottenItem> anchor, Integer pageIndex,
+                                                              Integer pageSize, Hut hut, LocalDate fromDate,
+                                                              LocalDate toDate, String orderBy, String filterBy,
+                                                              String search) {
+        return submit(FORGOTTEN_ITEMS, model -> model.forgottenItemPage(anchor, pageIndex, pageSize, hut, fromDate,
+                                                                        toDate, orderBy, filterBy, search));
+    }
+
+    /**
+     * Stream the reservations matching the given filter to the given writer, which is closed once the export has
+     * finished.
+     *
+     * @see DataModel#exportReservations
+     */
+    public QueryFuture<Long> exportReservations(Hut hut, LocalDate fromDate, LocalDate toDate, String orderBy,
+                                                RowWriter writer) {
+        return submitExport(NO_EDITED_TABLES, writer,
+                            model -> model.exportReservations(hut, fromDate, toDate, orderBy, writer));
+    }
+
+    public QueryFuture<Long> exportEquipment(Hut hut, LocalDate fromDate, LocalDate toDate, String orderBy,
+                                             RowWriter writer) {
+        return submitExport(NO_EDITED_TABLES, writer,
+                            model -> model.exportEquipment(hut, fromDate, toDate, orderBy, writer));
+    }
+
+    public QueryFuture<Long> exportBrokenItems(Hut hut, LocalDate fromDate, LocalDate toDate, String orderBy,
+                                               String filterBy, String search, RowWriter writer) {
+        return submitExport(BROKEN_ITEMS, writer, model -> model.exportBrokenItems(hut, fromDate, toDate, orderBy,
+                                                                                   filterBy, search, writer));
+    }
+
+    public QueryFuture<Long> exportForgottenItems(Hut hut, LocalDate fromDate, LocalDate toDate, String orderBy,
+                                                  String filterBy, String search, RowWriter writer) {
+        return submitExport(FORGOTTEN_ITEMS, writer, model -> model.exportForgottenItems(hut, fromDate, toDate,
+                                                                                         orderBy, filterBy, search,
+                                                                                         writer));
+    }
+
+    public QueryFuture<ObservableList<OverviewRow>> overviewRows(LocalDate fromDate, LocalDate toDate) {
+        return submit(EDITED_TABLES, model -> model.overviewRows(fromDate, toDate));
+    }
+
+    public QueryFuture<Overview> overview(LocalDate fromDate, LocalDate toDate) {
+        return submit(EDITED_TABLES, model -> model.overview(fromDate, toDate));
+    }
+
+    public QueryFuture<Void> insertReservation(Reservation reservation) {
+        return submit(NO_EDITED_TABLES, model -> { model.insertReservation(reservation); return null; });
+    }
+
+    public QueryFuture<Void> insertForgottenItem(ForgottenItem forgottenItem) {
+        return submit(NO_EDITED_TABLES, model -> { model.insertForgottenItem(forgottenItem); return null; });
+    }
+
+    public QueryFuture<Void> insertBrokenItem(BrokenItem brokenItem) {
+        return submit(NO_EDITED_TABLES, model -> { model.insertBrokenItem(brokenItem); return null; });
+    }
+
+    public QueryFuture<Void> insertEquipment(Equipment item) {
+        return submit(NO_EDITED_TABLES, model -> { model.insertEquipment(item); return null; });
+    }
+
+    public QueryFuture<Void> insertReservations(List<Reservation> reservations) {
+        return submit(NO_EDITED_TABLES, model -> { model.insertReservations(reservations); return null; });
+    }
+
+    public QueryFuture<Void> insertForgottenItems(List<ForgottenItem> forgottenItems) {
+        return submit(NO_EDITED_TABLES, model -> { model.insertForgottenItems(forgottenItems); return null; });
+    }
+
+    public QueryFuture<Void> insertBrokenItems(List<BrokenItem> brokenItems) {
+        return submit(NO_EDITED_TABLES, model -> { model.insertBrokenItems(brokenItems); return null; });
+    }
+
+    public QueryFuture<Void> insertEquipment(List<Equipment> items) {
+        return submit(NO_EDITED_TABLES, model -> { model.insertEquipment(items); return null; });
+    }
+
+    /**
+     * Queue the current <code>fixed</code> value of the given item to be written shortly, along with any other edits
+     * made in the meantime.
+     *
+     * <p> Repeated edits of the same item are coalesced, only the latest value being written. The edits are written
+     * in a single transaction, after a short delay or once {@link #flushWrites()} is called or a query reading the
+     * edited tables is submitted. Prefetches and queries of other tables don't wait for them.
+     *
+     * @return a future completed once the value has been written. Cancelling it doesn't prevent the value from being
+     * written.
+     * @see DataModel#updateRecords
+     */
+    public QueryFuture<Void> updateBrokenItemFixed(BrokenItem item) {
+        return writeBehindQueue.updateBrokenItemFixed(item);
+    }
+
+    /**
+     * Queue the current <code>delivered</code> value of the given item to be written shortly.
+     *
+     * @see #updateBrokenItemFixed(BrokenItem)
+     */
+    public QueryFuture<Void> updateForgottenItemDelivered(ForgottenItem item) {
+        return writeBehindQueue.updateForgottenItemDelivered(item);
+    }
+
+    /**
+     * Queue the current <code>firewood</code> value of the given hut to be written shortly.
+     *
+     * @see #updateBrokenItemFixed(BrokenItem)
+     */
+    public QueryFuture<Void> updateHutFirewood(Hut hut) {
+        return writeBehindQueue.updateHutFirewood(hut);
+    }
+
+    /************************************************************************
+     *
+     * Private implementation
+     *
+     ************************************************************************/
+
+    /**
+     * Run the given export on a worker thread, failing the returned future with an {@link UncheckedIOException} if
+     * its rows couldn't be written.
+     *
+     * <p> The export closes the writer once done. If the export is cancelled before it has started, the writer is
+     * closed on cancellation instead, before the future is completed.
+     *
+     * @param reads     the tables with queued edits the export reads.
+     * @param writer    the writer the export writes its rows to.
+     */
+    private QueryFuture<Long> submitExport(Set<String> reads, RowWriter writer, Export export) {
+        // Claimed by whichever comes first, the export or its cancellation, which closes the writer.
+        AtomicBoolean claimed = new AtomicBoolean();
+        QueryFuture<Long> future = submit(reads, model -> {
+            if (! claimed.compareAndSet(false, true)) { throw new CancellationException(); }
+            try {
+                return export.run(model);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        future.beforeCancel(() -> {
+            if (! claimed.compareAndSet(false, true)) { return; }
+            try {
+                writer.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to close the writer of a cancelled export.", e);
+            }
+        });
+        return future;
+    }
+}
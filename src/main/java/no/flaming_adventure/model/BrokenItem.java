@@ -9,56 +9,64 @@ import java.time.LocalDate;
  *
  * <p> Each broken item keeps track of its individual hut, what it is, whether it's repaired. In addition it can
  * maintain a comment and the date at which the item was broken/reported broken.
+ *
+ * <p> The properties of a broken item are only created when first asked for, see {@link Reservation}.
  */
 public class BrokenItem {
     /**
-     * The database ID (primary key) of the object.
-     *
-     * <p> This can contain null if the object has not been added to the database. */
-    private final IntegerProperty           id;
+     * The database ID (primary key) of the object, -1 if the object has not been added to the database.
+     */
+    private int       id;
 
     /**
      * The hut containing the broken item.
      */
-    private final ObjectProperty<Hut>       hut;
+    private Hut       hut;
 
     /**
      * What the item is.
      */
-    private final StringProperty            item;
+    private String    item;
 
     /**
      * The date at which the item was broken/reported broken. Can contain null.
      */
-    private final ObjectProperty<LocalDate> date;
+    private LocalDate date;
 
     /**
      * Whether the item has been fixed.
      */
-    private final BooleanProperty           fixed;
+    private boolean   fixed;
 
     /**
      * A comment. Can contain null.
      */
-    private final StringProperty            comment;
+    private String    comment;
+
+    private IntegerProperty           idProperty;
+    private ObjectProperty<Hut>       hutProperty;
+    private StringProperty            itemProperty;
+    private ObjectProperty<LocalDate> dateProperty;
+    private BooleanProperty           fixedProperty;
+    private StringProperty            commentProperty;
 
     /**
      * Construct a broken item with the given fields.
      *
-     * @param id        the primary key of the database record. This may be null if the object isn't in the database.
+     * @param id        the primary key of the database record, -1 if the object isn't in the database.
      * @param hut       the hut containing the broken item.
      * @param item      a short name for the item (e.g. dishwasher).
      * @param date      the date at which the item was broken/reported broken. Can be null.
      * @param fixed     Whether the item has been fixed.
      * @param comment   A comment. Can be null.
      */
-    public BrokenItem(Integer id, Hut hut, String item, LocalDate date, Boolean fixed, String comment) {
-        this.id = new SimpleIntegerProperty(id);
-        this.hut = new SimpleObjectProperty<>(hut);
-        this.item = new SimpleStringProperty(item);
-        this.date = new SimpleObjectProperty<>(date);
-        this.fixed = new SimpleBooleanProperty(fixed);
-        this.comment = new SimpleStringProperty(comment);
+    public BrokenItem(int id, Hut hut, String item, LocalDate date, boolean fixed, String comment) {
+        this.id = id;
+        this.hut = hut;
+        this.item = item;
+        this.date = date;
+        this.fixed = fixed;
+        this.comment = comment;
     }
 
     /**
@@ -66,55 +74,77 @@ public class BrokenItem {
      *
      * @param id the database ID of the matching record.
      */
-    public void setId(Integer id) {
-        this.id.set(id);
+    public void setId(int id) {
+        if (idProperty == null) {
+            this.id = id;
+        } else {
+            idProperty.set(id);
+        }
     }
 
     public int getId() {
-        return id.get();
+        return idProperty == null ? id : idProperty.get();
     }
 
     public IntegerProperty idProperty() {
-        return id;
+        if (idProperty == null) {
+            idProperty = new SimpleIntegerProperty(this, "id", id);
+        }
+        return idProperty;
     }
 
     public Hut getHut() {
-        return hut.get();
+        return hutProperty == null ? hut : hutProperty.get();
     }
 
     public ObjectProperty<Hut> hutProperty() {
-        return hut;
+        if (hutProperty == null) {
+            hutProperty = new SimpleObjectProperty<>(this, "hut", hut);
+        }
+        return hutProperty;
     }
 
     public String getItem() {
-        return item.get();
+        return itemProperty == null ? item : itemProperty.get();
     }
 
     public StringProperty itemProperty() {
-        return item;
+        if (itemProperty == null) {
+            itemProperty = new SimpleStringProperty(this, "item", item);
+        }
+        return itemProperty;
     }
 
     public LocalDate getDate() {
-        return date.get();
+        return dateProperty == null ? date : dateProperty.get();
     }
 
     public ObjectProperty<LocalDate> dateProperty() {
-        return date;
+        if (dateProperty == null) {
+            dateProperty = new SimpleObjectProperty<>(this, "date", date);
+        }
+        return dateProperty;
     }
 
     public boolean getFixed() {
-        return fixed.get();
+        return fixedProperty == null ? fixed : fixedProperty.get();
     }
 
     public BooleanProperty fixedProperty() {
-        return fixed;
+        if (fixedProperty == null) {
+            fixedProperty = new SimpleBooleanProperty(this, "fixed", fixed);
+        }
+        return fixedProperty;
     }
 
     public String getComment() {
-        return comment.get();
+        return commentProperty == null ? comment : commentProperty.get();
     }
 
     public StringProperty commentProperty() {
-        return comment;
+        if (commentProperty == null) {
+            commentProperty = new SimpleStringProperty(this, "comment", comment);
+        }
+        return commentProperty;
     }
 }
@@ -0,0 +1,57 @@
+package no.flaming_adventure.model;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hit and miss counts of a cache, which can be recorded to from several threads at the same time.
+ */
+final class CacheMetrics implements CacheMetricsMBean {
+
+    /************************************************************************
+     *
+     * Fields
+     *
+     ************************************************************************/
+
+    private final LongAdder hits    = new LongAdder();
+    private final LongAdder misses  = new LongAdder();
+
+    /************************************************************************
+     *
+     * Public API
+     *
+     ************************************************************************/
+
+    @Override public long getHits() {
+        return hits.sum();
+    }
+
+    @Override public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override public double getHitRate() {
+        long hits = this.hits.sum();
+        long lookups = hits + misses.sum();
+        return lookups == 0 ? Double.NaN : (double) hits / lookups;
+    }
+
+    @Override public void reset() {
+        hits.reset();
+        misses.reset();
+    }
+
+    /************************************************************************
+     *
+     * Package API
+     *
+     ************************************************************************/
+
+    void hit() {
+        hits.increment();
+    }
+
+    void miss() {
+        misses.increment();
+    }
+}
@@ -0,0 +1,20 @@
+package no.flaming_adventure.model;
+
+/**
+ * Management interface of the hit and miss counts of one of the caches of the data layer.
+ *
+ * @see DataModel#registerMBeans(String)
+ */
+public interface CacheMetricsMBean {
+
+    long getHits();
+
+    long getMisses();
+
+    /**
+     * @return the fraction of the lookups that were hits, or <code>NaN</code> if there were none.
+     */
+    double getHitRate();
+
+    void reset();
+}
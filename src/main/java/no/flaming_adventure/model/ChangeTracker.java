@@ -0,0 +1,156 @@
+package no.flaming_adventure.model;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tracks the change counters of the tables, telling modifications made by other clients from those made through the
+ * {@link DataModel data model} itself.
+ *
+ * <p> Every transaction modifying a table {@link #bump bumps} its counter in the <code>change_counters</code> table.
+ * The tracker knows the version of each table the client is up to date with, which is moved along by its own
+ * modifications as long as no other client modified the table in between, and by {@link #poll polling} the
+ * counters. A poll reports the tables whose counters have moved on since, i.e. the tables modified by other clients.
+ *
+ * <p> The versions the client's own transactions bump the tables to are remembered until they have been seen, so that
+ * a poll reading a counter right after an own transaction is committed, but before the tracker is told, doesn't
+ * report the client's own modification. The counter of a table is locked by a transaction bumping it until the
+ * transaction ends, so a version only becomes visible once the transaction that bumped it has been committed.
+ */
+final class ChangeTracker {
+
+    /************************************************************************
+     *
+     * Static fields
+     *
+     ************************************************************************/
+
+    /*language=MySQL*/ private static final String SQL_BUMP =
+            "UPDATE change_counters SET version = LAST_INSERT_ID(version + 1) WHERE table_name = ?;";
+    /*language=MySQL*/ private static final String SQL_BUMPED_VERSION = "SELECT LAST_INSERT_ID();";
+    /*language=MySQL*/ private static final String SQL_VERSIONS = "SELECT table_name, version FROM change_counters;";
+
+    /************************************************************************
+     *
+     * Fields
+     *
+     ************************************************************************/
+
+    /**
+     * The version of each table the client is up to date with, empty until first polled.
+     */
+    private final Map<String, Long> known = new HashMap<>();
+
+    /**
+     * The versions of each table bumped by the client's own transactions, which the known version hasn't caught up
+     * with yet.
+     */
+    private final Map<String, Set<Long>> own = new HashMap<>();
+
+    /************************************************************************
+     *
+     * Package API
+     *
+     ************************************************************************/
+
+    /**
+     * Increment the counter of the given table, as part of the transaction modifying it.
+     *
+     * @param connection    the connection the transaction runs on.
+     * @param table         the name of the modified table.
+     * @return the new version of the table, to be passed to {@link #committed} once the transaction is committed.
+     * @throws SQLException if an SQLException occurred.
+     */
+    long bump(PooledConnection connection, String table) throws SQLException {
+        PreparedStatement stmt = connection.prepareStatement(SQL_BUMP);
+        stmt.setString(1, table);
+        stmt.executeUpdate();
+        ResultSet resultSet = connection.prepareStatement(SQL_BUMPED_VERSION).executeQuery();
+        resultSet.next();
+        long version = resultSet.getLong(1);
+        synchronized (this) {
+            own.computeIfAbsent(table, ignored -> new HashSet<>()).add(version);
+        }
+        return version;
+    }
+
+    /**
+     * Record that a modification of the given table, bumping it to the given version, has been committed.
+     *
+     * <p> The client stays up to date with the table only if its previous version was the one known, otherwise
+     * another client modified the table in the meantime and the next poll reports it.
+     */
+    synchronized void committed(String table, long version) {
+        Long current = known.get(table);
+        if (current != null && current == version - 1) {
+            known.put(table, version);
+            forget(table, version);
+        }
+    }
+
+    /**
+     * Record that a transaction bumping the given table to the given version is being rolled back, after which
+     * another client may bump the table to the same version. Must be called before rolling back.
+     */
+    synchronized void rolledBack(String table, long version) {
+        Set<Long> versions = own.get(table);
+        if (versions != null) { versions.remove(version); }
+    }
+
+    /**
+     * Read the counters of every table.
+     *
+     * @param connection the connection to read the counters on.
+     * @return the tables modified by other clients since the last poll, or an empty set on the first poll.
+     * @throws SQLException if an SQLException occurred.
+     */
+    synchronized Set<String> poll(PooledConnection connection) throws SQLException {
+        boolean first = known.isEmpty();
+        Set<String> changed = new LinkedHashSet<>();
+        ResultSet resultSet = connection.prepareStatement(SQL_VERSIONS).executeQuery();
+        while (resultSet.next()) {
+            String table = resultSet.getString(1);
+            long version = resultSet.getLong(2);
+            Long previous = known.put(table, version);
+            if (! first && modifiedByOthers(table, previous, version)) {
+                changed.add(table);
+            }
+            forget(table, version);
+        }
+        return Collections.unmodifiableSet(changed);
+    }
+
+    /************************************************************************
+     *
+     * Private implementation
+     *
+     ************************************************************************/
+
+    /**
+     * Return whether any of the versions of the given table after the previous one known, up to the given one, was
+     * bumped by another client.
+     */
+    private boolean modifiedByOthers(String table, Long previous, long version) {
+        if (previous == null || previous > version) { return true; }
+        Set<Long> versions = own.getOrDefault(table, Collections.emptySet());
+        for (long v = previous + 1; v <= version; v++) {
+            if (! versions.contains(v)) { return true; }
+        }
+        return false;
+    }
+
+    /**
+     * Stop remembering the own versions of the given table up to the given one, which have been seen.
+     */
+    private void forget(String table, long version) {
+        Set<Long> versions = own.get(table);
+        if (versions != null) { versions.removeIf(v -> v <= version); }
+    }
+}
@@ -0,0 +1,318 @@
+package no.flaming_adventure.model;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A pool of connections to the SQL server.
+ *
+ * <p> The {@link DataModel data model} borrows a connection for the duration of each operation and returns it to the
+ * pool afterwards, so several operations can run at the same time on separate connections. Every connection keeps
+ * its own cache of server-side prepared statements (see {@link PooledConnection}).
+ *
+ * <p> Connections that have been idle for a while are validated before they are handed out, and a background task
+ * pings connections that stay idle so that they aren't dropped by the server or the network in the meantime.
+ * Broken connections are discarded and replaced as needed, which lets the application survive a dropped connection
+ * without being restarted.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    /************************************************************************
+     *
+     * Static fields
+     *
+     ************************************************************************/
+
+    public static final int  DEFAULT_MIN_SIZE           = 1;
+    public static final int  DEFAULT_MAX_SIZE           = 8;
+    public static final long DEFAULT_KEEPALIVE_SECONDS  = 120;
+
+    /**
+     * How long to wait for a connection to become available before giving up.
+     */
+    private static final long BORROW_TIMEOUT_MILLIS = 30000;
+
+    private static final Logger LOGGER = Logger.getLogger(ConnectionPool.class.getName());
+
+    /************************************************************************
+     *
+     * Fields
+     *
+     ************************************************************************/
+
+    private final String        url;
+    private final Properties    info;
+    private final int           minSize;
+    private final int           maxSize;
+    private final long          keepaliveMillis;
+
+    /**
+     * Idle connections, the most recently used first.
+     */
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+
+    /**
+     * The number of open connections, whether idle, borrowed or in the process of being opened.
+     */
+    private int size = 0;
+
+    private boolean closed = false;
+
+    /**
+     * Hits and misses of the prepared statement caches of every connection.
+     */
+    private final CacheMetrics statementCacheMetrics = new CacheMetrics();
+
+    private final ScheduledExecutorService keepaliveExecutor;
+
+    /************************************************************************
+     *
+     * Constructors
+     *
+     ************************************************************************/
+
+    /**
+     * Create a connection pool with the default settings.
+     *
+     * @see #ConnectionPool(String, String, String, int, int, long)
+     */
+    public ConnectionPool(String url, String username, String password) throws SQLException {
+        this(url, username, password, DEFAULT_MIN_SIZE, DEFAULT_MAX_SIZE, DEFAULT_KEEPALIVE_SECONDS);
+    }
+
+    /**
+     * Create a connection pool, opening the minimum number of connections immediately.
+     *
+     * @param url               a JDBC database URL.
+     * @param username          the database user.
+     * @param password          the user's password.
+     * @param minSize           the number of connections kept open even when the pool is idle.
+     * @param maxSize           the maximum number of connections open at the same time.
+     * @param keepaliveSeconds  how long a connection may sit idle before it is pinged.
+     * @throws SQLException if a connection could not be opened, e.g. because of invalid credentials.
+     */
+    public ConnectionPool(String url, String username, String password, int minSize, int maxSize,
+                          long keepaliveSeconds) throws SQLException {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize || keepaliveSeconds < 1) {
+            throw new IllegalArgumentException("Invalid connection pool settings.");
+        }
+
+        this.url                = url;
+        this.minSize            = minSize;
+        this.maxSize            = maxSize;
+        this.keepaliveMillis    = TimeUnit.SECONDS.toMillis(keepaliveSeconds);
+
+        info = new Properties();
+        info.setProperty("user", username);
+        info.setProperty("password", password);
+        // Prepare statements on the server, they are cached by each pooled connection.
+        info.setProperty("useServerPrepStmts", "true");
+        // Send batched inserts as multi-row statements instead of one statement per row.
+        info.setProperty("rewriteBatchedStatements", "true");
+
+        // Open a first connection even if the minimum size is zero, to verify the URL and credentials.
+        do {
+            idle.addLast(open());
+            size++;
+        } while (size < minSize);
+
+        keepaliveExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-keepalive");
+            thread.setDaemon(true);
+            return thread;
+        });
+        keepaliveExecutor.scheduleWithFixedDelay(this::keepalive, keepaliveSeconds, keepaliveSeconds,
+                                                 TimeUnit.SECONDS);
+
+        LOGGER.log(Level.FINE, "Connection pool opened with {0} connection(s).", size);
+    }
+
+    /************************************************************************
+     *
+     * Public API
+     *
+     ************************************************************************/
+
+    /**
+     * Close the pool along with all idle connections.
+     *
+     * <p> Borrowed connections are closed as they are returned.
+     */
+    @Override public void close() {
+        List<PooledConnection> connections;
+        synchronized (this) {
+            if (closed) { return; }
+            closed = true;
+            connections = new ArrayList<>(idle);
+            idle.clear();
+            size -= connections.size();
+            notifyAll();
+        }
+        keepaliveExecutor.shutdownNow();
+        connections.forEach(PooledConnection::closeQuietly);
+
+        LOGGER.fine("Connection pool closed.");
+    }
+
+    /************************************************************************
+     *
+     * Package API
+     *
+     ************************************************************************/
+
+    /**
+     * Borrow a connection from the pool.
+     *
+     * <p> The connection must be returned by {@link PooledConnection#close() closing} it, preferably using a
+     * try-with-resources statement. If all connections are in use and the pool is at its maximum size this blocks
+     * until a connection is returned.
+     *
+     * @return a valid connection.
+     * @throws SQLException if a new connection couldn't be opened or none became available in time.
+     */
+    PooledConnection borrow() throws SQLException {
+        long deadline = System.currentTimeMillis() + BORROW_TIMEOUT_MILLIS;
+        while (true) {
+            PooledConnection connection;
+            synchronized (this) {
+                if (closed) { throw new SQLException("The connection pool is closed."); }
+
+                connection = idle.pollFirst();
+                if (connection == null) {
+                    if (size < maxSize) {
+                        size++;
+                    } else {
+                        long remaining = deadline - System.currentTimeMillis();
+                        if (remaining <= 0) {
+                            throw new SQLTimeoutException("Timed out waiting for a database connection.");
+                        }
+                        try {
+                            wait(remaining);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new SQLException("Interrupted while waiting for a database connection.", e);
+                        }
+                        continue;
+                    }
+                }
+            }
+
+            if (connection == null) {
+                try {
+                    return open();
+                } catch (SQLException e) {
+                    discarded();
+                    throw e;
+                }
+            }
+
+            if (connection.validate()) { return connection; }
+
+            LOGGER.info("Discarding broken database connection.");
+            connection.closeQuietly();
+            discarded();
+        }
+    }
+
+    /**
+     * Return a borrowed connection to the pool.
+     *
+     * @param connection a connection previously returned by {@link #borrow()}.
+     */
+    void release(PooledConnection connection) {
+        synchronized (this) {
+            if (!closed && !connection.isClosed()) {
+                idle.addFirst(connection);
+                notifyAll();
+                return;
+            }
+        }
+        connection.closeQuietly();
+        discarded();
+    }
+
+    CacheMetrics statementCacheMetrics() {
+        return statementCacheMetrics;
+    }
+
+    /************************************************************************
+     *
+     * Private implementation
+     *
+     ************************************************************************/
+
+    private PooledConnection open() throws SQLException {
+        LOGGER.fine("Opening database connection.");
+        Connection connection = DriverManager.getConnection(url, info);
+        return new PooledConnection(this, connection);
+    }
+
+    private synchronized void discarded() {
+        size--;
+        notifyAll();
+    }
+
+    /**
+     * Ping connections that have been idle for longer than the keepalive interval, shrink the pool back towards its
+     * minimum size and replace broken connections.
+     *
+     * <p> Runs periodically on the keepalive thread.
+     */
+    private void keepalive() {
+        List<PooledConnection> stale = new ArrayList<>();
+        List<PooledConnection> surplus = new ArrayList<>();
+        synchronized (this) {
+            if (closed) { return; }
+            Iterator<PooledConnection> iterator = idle.descendingIterator();
+            while (iterator.hasNext()) {
+                PooledConnection connection = iterator.next();
+                if (connection.idleMillis() < keepaliveMillis) { break; }
+                iterator.remove();
+                if (size - surplus.size() > minSize) {
+                    surplus.add(connection);
+                } else {
+                    stale.add(connection);
+                }
+            }
+            size -= surplus.size();
+        }
+        surplus.forEach(PooledConnection::closeQuietly);
+
+        for (PooledConnection connection : stale) {
+            if (connection.ping()) {
+                release(connection);
+            } else {
+                LOGGER.info("Discarding broken database connection.");
+                connection.closeQuietly();
+                discarded();
+            }
+        }
+
+        while (true) {
+            synchronized (this) {
+                if (closed || size >= minSize) { return; }
+                size++;
+            }
+            try {
+                release(open());
+            } catch (SQLException e) {
+                LOGGER.log(Level.WARNING, "Unable to replenish the connection pool.", e);
+                discarded();
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package no.flaming_adventure.model;
+
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Cache of filtered record counts.
+ *
+ * <p> Counts are keyed on the table and filter they were counted with, and invalidated by the
+ * {@link DataModel data model} whenever it modifies a record that may be counted by them. Only the entries whose hut
+ * and date range cover the modified record are invalidated, so adding e.g. a reservation for one hut doesn't throw
+ * away the counts of the others.
+ *
+ * <p> A count is only stored if no record was modified while it was being counted, see {@link #generation()}.
+ * Modifications made by other clients are only known per table, and invalidate every count of the table.
+ */
+final class CountCache {
+
+    /************************************************************************
+     *
+     * Static fields
+     *
+     ************************************************************************/
+
+    /**
+     * The maximum number of counts kept, the least recently used count being evicted first.
+     */
+    static final int CAPACITY = 256;
+
+    /**
+     * The table and filter of a count.
+     */
+    static final class Key {
+        private final String    table;
+        private final Integer   hutId;
+        private final LocalDate fromDate;
+        private final LocalDate toDate;
+        private final String    filterBy;
+        private final String    search;
+
+        Key(String table, Hut hut, LocalDate fromDate, LocalDate toDate, String filterBy) {
+            this(table, hut, fromDate, toDate, filterBy, null);
+        }
+
+        /**
+         * @param table     the name of the database table.
+         * @param hut       the hut filtered on, can optionally be <code>null</code>.
+         * @param fromDate  the start of the date range filtered on, can optionally be <code>null</code>.
+         * @param toDate    the end of the date range filtered on, can optionally be <code>null</code>.
+         * @param filterBy  additional predicate, can optionally be <code>null</code>.
+         * @param search    the text searched for, can optionally be <code>null</code>.
+         */
+        Key(String table, Hut hut, LocalDate fromDate, LocalDate toDate, String filterBy, String search) {
+            this.table      = table;
+            this.hutId      = hut == null ? null : hut.getId();
+            this.fromDate   = fromDate;
+            this.toDate     = toDate;
+            this.filterBy   = filterBy;
+            this.search     = search;
+        }
+
+        /**
+         * Return whether a record with the given properties may be counted with this key.
+         */
+        private boolean covers(String table, int hutId, LocalDate date) {
+            return this.table.equals(table)
+                   && (this.hutId == null || this.hutId == hutId)
+                   && (date == null || ((fromDate == null || !date.isBefore(fromDate))
+                                        && (toDate == null || !date.isAfter(toDate))));
+        }
+
+        @Override public boolean equals(Object o) {
+            if (this == o) { return true; }
+            if (!(o instanceof Key)) { return false; }
+            Key key = (Key) o;
+            return table.equals(key.table) && Objects.equals(hutId, key.hutId)
+                   && Objects.equals(fromDate, key.fromDate) && Objects.equals(toDate, key.toDate)
+                   && Objects.equals(filterBy, key.filterBy) && Objects.equals(search, key.search);
+        }
+
+        @Override public int hashCode() {
+            return Objects.hash(table, hutId, fromDate, toDate, filterBy, search);
+        }
+    }
+
+    /************************************************************************
+     *
+     * Fields
+     *
+     ************************************************************************/
+
+    private final Map<Key, Integer> counts = new LinkedHashMap<Key, Integer>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<Key, Integer> eldest) {
+            return size() > CAPACITY;
+        }
+    };
+
+    /**
+     * Incremented by every invalidation.
+     */
+    private long generation = 0;
+
+    private final CacheMetrics metrics = new CacheMetrics();
+
+    /************************************************************************
+     *
+     * Package API
+     *
+     ************************************************************************/
+
+    synchronized Integer get(Key key) {
+        Integer count = counts.get(key);
+        if (count != null) {
+            metrics.hit();
+        } else {
+            metrics.miss();
+        }
+        return count;
+    }
+
+    /**
+     * Return the current generation of the cache, which should be retrieved before counting.
+     *
+     * @see #put(Key, int, long)
+     */
+    synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Store the given count unless the cache has been invalidated since the given generation.
+     *
+     * @param key           the table and filter the records were counted with.
+     * @param count         the number of records.
+     * @param generation    the {@link #generation() generation} of the cache before the records were counted.
+     */
+    synchronized void put(Key key, int count, long generation) {
+        if (generation == this.generation) {
+            counts.put(key, count);
+        }
+    }
+
+    /**
+     * Invalidate the counts that may include the given inserted or deleted record.
+     *
+     * @param table the name of the modified table.
+     * @param hutId the hut of the record.
+     * @param date  the date of the record, or <code>null</code> if unknown.
+     */
+    synchronized void recordAdded(String table, int hutId, LocalDate date) {
+        invalidate(table, hutId, date, false);
+    }
+
+    /**
+     * Invalidate the counts that may be affected by the given updated record.
+     *
+     * <p> An update doesn't change the number of records in the table, so only counts with an additional predicate
+     * are affected.
+     *
+     * @param table the name of the modified table.
+     * @param hutId the hut of the record.
+     * @param date  the date of the record, or <code>null</code> if unknown.
+     */
+    synchronized void recordUpdated(String table, int hutId, LocalDate date) {
+        invalidate(table, hutId, date, true);
+    }
+
+    /**
+     * Invalidate every count of the given table, e.g. after it has been modified by another client.
+     *
+     * @param table the name of the modified table.
+     */
+    synchronized void tableChanged(String table) {
+        generation++;
+        counts.keySet().removeIf(key -> key.table.equals(table));
+    }
+
+    CacheMetrics metrics() {
+        return metrics;
+    }
+
+    /************************************************************************
+     *
+     * Private implementation
+     *
+     ************************************************************************/
+
+    private void invalidate(String table, int hutId, LocalDate date, boolean filteredOnly) {
+        generation++;
+        Iterator<Key> iterator = counts.keySet().iterator();
+        while (iterator.hasNext()) {
+            Key key = iterator.next();
+            if (key.covers(table, hutId, date) && (!filteredOnly || key.filterBy != null)) {
+                iterator.remove();
+            }
+        }
+    }
+}
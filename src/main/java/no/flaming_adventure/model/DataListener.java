@@ -0,0 +1,37 @@
+package no.flaming_adventure.model;
+
+import java.util.Set;
+
+/**
+ * Listener notified of the records modified through a {@link DataModel data model}.
+ *
+ * <p> Listeners are notified after the modification has been committed, so they can keep derived state, e.g. cached
+ * aggregates, up to date without querying the database again. All methods do nothing by default.
+ *
+ * @see DataModel#addListener(DataListener, java.util.concurrent.Executor)
+ */
+public interface DataListener {
+
+    default void reservationAdded(Reservation reservation) {}
+
+    default void forgottenItemAdded(ForgottenItem forgottenItem) {}
+
+    default void brokenItemAdded(BrokenItem brokenItem) {}
+
+    default void equipmentAdded(Equipment item) {}
+
+    default void brokenItemUpdated(BrokenItem item) {}
+
+    default void forgottenItemUpdated(ForgottenItem item) {}
+
+    default void hutUpdated(Hut hut) {}
+
+    /**
+     * Called when other clients have modified the given tables, as found by {@link DataModel#pollChanges()}.
+     *
+     * <p> Which records were modified isn't known, anything derived from the tables should be retrieved again.
+     *
+     * @param tables the names of the modified tables, e.g. <code>reservations</code>.
+     */
+    default void tablesChanged(Set<String> tables) {}
+}
@@ -3,20 +3,35 @@ package no.flaming_adventure.model;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 
-import java.math.BigDecimal;
-import java.math.MathContext;
+import java.io.IOException;
 import java.sql.*;
 import java.time.LocalDate;
 import java.time.temporal.ChronoField;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Manager for the application's data layer. Responsible for communication with the SQL server.
  *
- * <p> See <pre>src/dist/schema.ddl</pre> for the database layout.
+ * <p> See <pre>src/dist/schema.ddl</pre> and the {@link SchemaMigrator schema migrations} for the database layout.
+ *
+ * <p> The <code>hut_daily_occupancy</code> table holds the number of guests reserved for each hut and date. It is
+ * derived from the reservations and updated in the same transaction as every reservation inserted, see
+ * {@link #rebuildOccupancy()}.
  */
 public class DataModel {
 
@@ -26,43 +41,99 @@ public class DataModel {
      *
      ************************************************************************/
 
-    // The following strings are turned into prepared SQL statements on construction.
+    // The following strings are turned into prepared SQL statements by each pooled connection on first use, as are
+    // the queries built at runtime (see SQLQuery).
 
-    /*language=MySQL*/ private static final String SQL_OVERVIEW_BETWEEN_DATES;
-    /*language=MySQL*/ private static final String SQL_OVERVIEW_FROM_DATE;
-    /*language=MySQL*/ private static final String SQL_OVERVIEW_TO_DATE;
-    /*language=MySQL*/ private static final String SQL_OVERVIEW_ALL;
-    /*language=MySQL*/ private static final String SQL_ALL_HUTS;
-    /*language=MySQL*/ private static final String SQL_HUT_FOR_ID;
     /*language=MySQL*/ private static final String SQL_OCCUPANCY_AT_DATE;
     /*language=MySQL*/ private static final String SQL_INSERT_RESERVATION;
+    /*language=MySQL*/ private static final String SQL_ADD_OCCUPANCY;
+    /*language=MySQL*/ private static final String SQL_CLEAR_OCCUPANCY;
+    /*language=MySQL*/ private static final String SQL_REBUILD_OCCUPANCY;
     /*language=MySQL*/ private static final String SQL_INSERT_FORGOTTEN_ITEM;
     /*language=MySQL*/ private static final String SQL_INSERT_BROKEN_ITEM;
     /*language=MySQL*/ private static final String SQL_INSERT_EQUIPMENT;
+    /*language=MySQL*/ private static final String SQL_UPDATE_BROKEN_ITEM_FIXED;
+    /*language=MySQL*/ private static final String SQL_UPDATE_FORGOTTEN_ITEM_DELIVERED;
+    /*language=MySQL*/ private static final String SQL_UPDATE_HUT_FIREWOOD;
+
+    /**
+     * The full-text indexed columns of each searchable table, listed as in the index.
+     */
+    private static final Map<String, String> SEARCH_COLUMNS = new HashMap<>();
+
+    /*
+     * The number of records of the results of the operations, see measure().
+     */
+
+    private static final ToLongFunction<Object>  NO_RECORDS      = ignored -> 0;
+    private static final ToLongFunction<Page<?>> PAGE_RECORDS    = page -> page.getItems().size();
 
     private static final Logger LOGGER = Logger.getLogger(DataModel.class.getName());
 
+    /**
+     * The maximum number of placeholders of a statement prepared by the server.
+     */
+    private static final int MAX_PLACEHOLDERS = 65535;
+
     /************************************************************************
      *
      * Fields
      *
      ************************************************************************/
 
-    private final Statement statement;
+    private final ConnectionPool connectionPool;
+
+    /**
+     * The canonical huts, referred to by every record retrieved.
+     */
+    private final HutRegistry hutRegistry;
+
+    /**
+     * Filtered record counts of the paged tables, invalidated by the methods modifying the tables.
+     */
+    private final CountCache countCache = new CountCache();
+
+    /**
+     * The versions of the tables the client is up to date with, bumped by the methods modifying the tables.
+     */
+    private final ChangeTracker changeTracker = new ChangeTracker();
 
-    private final PreparedStatement overviewBetweenDatesStmt;
-    private final PreparedStatement overviewFromDateStmt;
-    private final PreparedStatement overviewToDateStmt;
-    private final PreparedStatement overviewAllStmt;
-    private final PreparedStatement hutsAllStmt;
-    private final PreparedStatement hutForIdStmt;
-    private final PreparedStatement occupancyAtDateStmt;
-    private final PreparedStatement reservationInsertStmt;
-    private final PreparedStatement forgottenItemInsertStmt;
-    private final PreparedStatement brokenItemInsertStmt;
-    private final PreparedStatement equipmentInsertStmt;
+    /**
+     * The generated queries that took longer than the threshold, disabled until a threshold is set.
+     */
+    private final SlowQueryLog slowQueryLog = new SlowQueryLog();
 
-    private final Map<Integer, Hut> hutMap = new HashMap<>();
+    /**
+     * The latency, records and round trips of every public method, and the hit rates of the caches.
+     */
+    private final DataModelMetrics metrics = new DataModelMetrics();
+
+    /**
+     * Listeners notified of modifications, with the executor to notify them through.
+     */
+    private final Map<DataListener, Executor> listeners = new ConcurrentHashMap<>();
+
+    /*
+     * Row mappers of the records. The methods reading the records find each column at the position it's listed in.
+     * They are package-private for the benchmarks only, like the query generators.
+     */
+
+    final RowMapper<Reservation> reservationMapper = new RowMapper<>(
+            this::reservationFromResultSet, "reservations.id", "reservations.hut_id", "reservations.date",
+            "reservations.name", "reservations.email", "reservations.count", "reservations.comment");
+
+    final RowMapper<ForgottenItem> forgottenItemMapper = new RowMapper<>(
+            this::forgottenItemFromResultSet, "forgotten_items.id", "forgotten_items.hut_id", "forgotten_items.item",
+            "forgotten_items.name", "forgotten_items.contact", "forgotten_items.date", "forgotten_items.delivered",
+            "forgotten_items.comment");
+
+    final RowMapper<BrokenItem> brokenItemMapper = new RowMapper<>(
+            this::brokenItemFromResultSet, "broken_items.id", "broken_items.hut_id", "broken_items.item",
+            "broken_items.date", "broken_items.fixed", "broken_items.comment");
+
+    final RowMapper<Equipment> equipmentMapper = new RowMapper<>(
+            this::equipmentFromResultSet, "equipment.id", "equipment.hut_id", "equipment.name",
+            "equipment.purchase_date", "equipment.count");
 
     /************************************************************************
      *
@@ -71,35 +142,33 @@ public class DataModel {
      ************************************************************************/
 
     /**
-     * Create a data model from the given SQL connection.
+     * Create a data model using connections from the given pool.
+     *
+     * <p> A connection is borrowed from the pool for the duration of each operation, so the data model can be used
+     * from several threads at the same time.
      *
-     * @param connection Connection to the SQL database.
-     * @throws java.sql.SQLException if an SQLException occurred.
+     * @param connectionPool a pool of connections to the SQL database.
      */
-    public DataModel(Connection connection) throws SQLException {
-        LOGGER.log(Level.FINE, "Initializing data model.");
-
-        statement = connection.createStatement();
-
-        overviewBetweenDatesStmt    = connection.prepareStatement(SQL_OVERVIEW_BETWEEN_DATES);
-        overviewFromDateStmt        = connection.prepareStatement(SQL_OVERVIEW_FROM_DATE);
-        overviewToDateStmt          = connection.prepareStatement(SQL_OVERVIEW_TO_DATE);
-        overviewAllStmt             = connection.prepareStatement(SQL_OVERVIEW_ALL);
-
-        hutsAllStmt                 = connection.prepareStatement(SQL_ALL_HUTS);
-        hutForIdStmt                = connection.prepareStatement(SQL_HUT_FOR_ID);
-        occupancyAtDateStmt         = connection.prepareStatement(SQL_OCCUPANCY_AT_DATE);
+    public DataModel(ConnectionPool connectionPool) {
+        this(connectionPool, Runnable::run);
+    }
 
-        reservationInsertStmt   = connection.prepareStatement(SQL_INSERT_RESERVATION,
-                                                              Statement.RETURN_GENERATED_KEYS);
-        forgottenItemInsertStmt = connection.prepareStatement(SQL_INSERT_FORGOTTEN_ITEM,
-                                                              Statement.RETURN_GENERATED_KEYS);
-        brokenItemInsertStmt    = connection.prepareStatement(SQL_INSERT_BROKEN_ITEM,
-                                                              Statement.RETURN_GENERATED_KEYS);
-        equipmentInsertStmt     = connection.prepareStatement(SQL_INSERT_EQUIPMENT,
-                                                              Statement.RETURN_GENERATED_KEYS);
+    /**
+     * Create a data model using connections from the given pool, whose huts are displayed on another thread.
+     *
+     * <p> Every record retrieved refers to the same instance of its hut. When the huts are found to have been
+     * modified in the database, the instances are updated through the given executor.
+     *
+     * @param connectionPool    a pool of connections to the SQL database.
+     * @param hutUpdateExecutor executor the huts are updated through, e.g. <code>Platform::runLater</code>.
+     */
+    public DataModel(ConnectionPool connectionPool, Executor hutUpdateExecutor) {
+        this.connectionPool = connectionPool;
+        this.hutRegistry    = new HutRegistry(hutUpdateExecutor);
 
-        LOGGER.fine("Data model successfully initialized.");
+        metrics.addCache("counts", countCache.metrics());
+        metrics.addCache("huts", hutRegistry.metrics());
+        metrics.addCache("statements", connectionPool.statementCacheMetrics());
     }
 
     /************************************************************************
@@ -108,148 +177,280 @@ public class DataModel {
      *
      ************************************************************************/
 
+    /**
+     * Register a listener to be notified of every record modified through the data model.
+     *
+     * @param listener  the listener.
+     * @param executor  executor the listener is notified through, e.g. <code>Platform::runLater</code>.
+     */
+    public void addListener(DataListener listener, Executor executor) {
+        listeners.put(listener, executor);
+    }
+
+    public void removeListener(DataListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Retrieve every hut.
+     *
+     * <p> The huts are only loaded from the database the first time, and again once they have been modified. The
+     * same instances are returned every time, and records refer to them as well.
+     *
+     * @return a new list of the huts, ordered by ID.
+     * @throws SQLException if an SQLException occurred.
+     */
     public ObservableList<Hut> getHuts() throws SQLException {
-        ObservableList<Hut> huts = FXCollections.observableArrayList();
-        ResultSet resultSet = hutsAllStmt.executeQuery();
-        while (resultSet.next()) {
-            Hut hut = hutFromResultSet(resultSet);
-            huts.add(hut);
-            hutMap.put(hut.getId(), hut);
-        }
-        return huts;
+        return measure("getHuts", List::size, () -> {
+            try (PooledConnection connection = connectionPool.borrow()) {
+                return FXCollections.observableArrayList(hutRegistry.getHuts(connection));
+            }
+        });
     }
 
     public Integer occupancy(Hut hut, LocalDate date) throws SQLException {
-        occupancyAtDateStmt.setInt(1, hut.getId());
-        occupancyAtDateStmt.setDate(2, Date.valueOf(date));
-
-        ResultSet resultSet = occupancyAtDateStmt.executeQuery();
-        resultSet.next();
-        return resultSet.getInt(1);
+        return measure("occupancy", NO_RECORDS, () -> {
+            try (PooledConnection connection = connectionPool.borrow()) {
+                PreparedStatement stmt = connection.prepareStatement(SQL_OCCUPANCY_AT_DATE);
+                stmt.setInt(1, hut.getId());
+                stmt.setDate(2, Date.valueOf(date));
+
+                // No row means no reservations.
+                ResultSet resultSet = stmt.executeQuery();
+                return resultSet.next() ? resultSet.getInt(1) : 0;
+            }
+        });
     }
 
     public Integer reservationCount(Hut hut, LocalDate fromDate, LocalDate toDate) throws SQLException {
-        String query = genSQLGenericCount("reservations", hut, "date", fromDate, toDate, null);
-        ResultSet resultSet = statement.executeQuery(query);
-        resultSet.next();
-        return resultSet.getInt(1);
+        return measure("reservationCount", NO_RECORDS,
+                       () -> countRecords("reservations", hut, "date", fromDate, toDate, null));
     }
 
 
     public ObservableList<Reservation> reservationPage(Integer pageStart, Integer pageSize, Hut hut, LocalDate fromDate,
                                                        LocalDate toDate, String orderBy) throws SQLException {
-        ObservableList<Reservation> reservations = FXCollections.observableArrayList();
-        String query = genSQLGenericPage("reservations", pageStart, pageSize, "hut_id", hut, "date", fromDate, toDate,
-                                         orderBy, null);
-        ResultSet resultSet = statement.executeQuery(query);
-        while (resultSet.next()) {
-            reservations.add(reservationFromResultSet(resultSet));
-        }
-        return reservations;
+        return measure("reservationPage", List::size, () -> {
+            SQLQuery query = genSQLGenericPage("reservations", pageStart, pageSize, "hut_id", hut, "date", fromDate,
+                                               toDate, orderBy, null);
+            return list(query, reservationMapper);
+        });
+    }
+
+    /**
+     * Retrieve a page of reservations, seeking from the given anchor page if possible.
+     *
+     * @see #seekPage
+     */
+    public Page<Reservation> reservationPage(Page<Reservation> anchor, Integer pageIndex, Integer pageSize, Hut hut,
+                                             LocalDate fromDate, LocalDate toDate, String orderBy)
+            throws SQLException {
+        return measure("reservationPage", PAGE_RECORDS,
+                       () -> seekPage("reservations", "date", anchor, pageIndex, pageSize, hut, fromDate, toDate,
+                                      orderBy, null, null, reservationMapper));
     }
 
     public Integer equipmentCount(Hut hut, LocalDate fromDate, LocalDate toDate) throws SQLException {
-        String query = genSQLGenericCount("equipment", hut, "purchase_date", fromDate, toDate, null);
-        ResultSet resultSet = statement.executeQuery(query);
-        resultSet.next();
-        return resultSet.getInt(1);
+        return measure("equipmentCount", NO_RECORDS,
+                       () -> countRecords("equipment", hut, "purchase_date", fromDate, toDate, null));
     }
 
     public ObservableList<Equipment> equipmentPage(Integer pageStart, Integer pageSize, Hut hut, LocalDate fromDate,
                                                    LocalDate toDate, String orderBy) throws SQLException {
-        ObservableList<Equipment> items = FXCollections.observableArrayList();
-        String query = genSQLGenericPage("equipment", pageStart, pageSize, "hut_id", hut, "purchase_date", fromDate,
-                                         toDate, orderBy, null);
-        ResultSet resultSet = statement.executeQuery(query);
-        while (resultSet.next()) {
-            items.add(equipmentFromResultSet(resultSet));
-        }
-        return items;
+        return measure("equipmentPage", List::size, () -> {
+            SQLQuery query = genSQLGenericPage("equipment", pageStart, pageSize, "hut_id", hut, "purchase_date",
+                                               fromDate, toDate, orderBy, null);
+            return list(query, equipmentMapper);
+        });
+    }
+
+    /**
+     * Retrieve a page of equipment, seeking from the given anchor page if possible.
+     *
+     * @see #seekPage
+     */
+    public Page<Equipment> equipmentPage(Page<Equipment> anchor, Integer pageIndex, Integer pageSize, Hut hut,
+                                         LocalDate fromDate, LocalDate toDate, String orderBy) throws SQLException {
+        return measure("equipmentPage", PAGE_RECORDS,
+                       () -> seekPage("equipment", "purchase_date", anchor, pageIndex, pageSize, hut, fromDate, toDate,
+                                      orderBy, null, null, equipmentMapper));
     }
 
     public Integer brokenItemCount(Hut hut, LocalDate fromDate, LocalDate toDate, String filterBy) throws SQLException {
-        String query = genSQLGenericCount("broken_items", hut, "date", fromDate, toDate, filterBy);
-        ResultSet resultSet = statement.executeQuery(query);
-        resultSet.next();
-        return resultSet.getInt(1);
+        return measure("brokenItemCount", NO_RECORDS,
+                       () -> countRecords("broken_items", hut, "date", fromDate, toDate, filterBy));
     }
 
     public ObservableList<BrokenItem> brokenItemPage(Integer pageStart, Integer pageSize, Hut hut,
                                                      LocalDate fromDate, LocalDate toDate, String orderBy,
                                                      String filterBy)
             throws SQLException {
-        ObservableList<BrokenItem> brokenItems = FXCollections.observableArrayList();
-        String query = genSQLGenericPage("broken_items", pageStart, pageSize, "hut_id", hut, "date", fromDate, toDate,
-                                         orderBy, filterBy);
-        ResultSet resultSet = statement.executeQuery(query);
-        while (resultSet.next()) {
-            brokenItems.add(brokenItemFromResultSet(resultSet));
-        }
-        return brokenItems;
+        return measure("brokenItemPage", List::size, () -> {
+            SQLQuery query = genSQLGenericPage("broken_items", pageStart, pageSize, "hut_id", hut, "date", fromDate,
+                                               toDate, orderBy, filterBy);
+            return list(query, brokenItemMapper);
+        });
+    }
+
+    /**
+     * Retrieve a page of broken items, seeking from the given anchor page if possible.
+     *
+     * @param search text to search the items and comments for, can optionally be <code>null</code>.
+     * @see #seekPage
+     */
+    public Page<BrokenItem> brokenItemPage(Page<BrokenItem> anchor, Integer pageIndex, Integer pageSize, Hut hut,
+                                           LocalDate fromDate, LocalDate toDate, String orderBy, String filterBy,
+                                           String search) throws SQLException {
+        return measure("brokenItemPage", PAGE_RECORDS,
+                       () -> seekPage("broken_items", "date", anchor, pageIndex, pageSize, hut, fromDate, toDate,
+                                      orderBy, filterBy, search, brokenItemMapper));
     }
 
     public Integer forgottenItemCount(Hut hut, LocalDate fromDate, LocalDate toDate, String filterBy)
             throws SQLException {
-        String query = genSQLGenericCount("forgotten_items", hut, "date", fromDate, toDate, filterBy);
-        ResultSet resultSet = statement.executeQuery(query);
-        resultSet.next();
-        return resultSet.getInt(1);
+        return measure("forgottenItemCount", NO_RECORDS,
+                       () -> countRecords("forgotten_items", hut, "date", fromDate, toDate, filterBy));
     }
 
     public ObservableList<ForgottenItem> forgottenItemPage(Integer pageStart, Integer pageSize, Hut hut,
                                                            LocalDate fromDate, LocalDate toDate, String orderBy,
                                                            String filterBy)
             throws SQLException {
-        ObservableList<ForgottenItem> forgottenItems = FXCollections.observableArrayList();
-        String query = genSQLGenericPage("forgotten_items", pageStart, pageSize, "hut_id", hut, "date", fromDate,
-                                         toDate, orderBy, filterBy);
-        ResultSet resultSet = statement.executeQuery(query);
-        while (resultSet.next()) {
-            forgottenItems.add(forgottenItemFromResultSet(resultSet));
-        }
-        return forgottenItems;
+        return measure("forgottenItemPage", List::size, () -> {
+            SQLQuery query = genSQLGenericPage("forgotten_items", pageStart, pageSize, "hut_id", hut, "date", fromDate,
+                                               toDate, orderBy, filterBy);
+            return list(query, forgottenItemMapper);
+        });
     }
 
+    /**
+     * Retrieve a page of forgotten items, seeking from the given anchor page if possible.
+     *
+     * @param search text to search the items, names, contacts and comments for, can optionally be <code>null</code>.
+     * @see #seekPage
+     */
+    public Page<ForgottenItem> forgottenItemPage(Page<ForgottenItem> anchor, Integer pageIndex, Integer pageSize,
+                                                 Hut hut, LocalDate fromDate, LocalDate toDate, String orderBy,
+                                                 String filterBy, String search)
+            throws SQLException {
+        return measure("forgottenItemPage", PAGE_RECORDS,
+                       () -> seekPage("forgotten_items", "date", anchor, pageIndex, pageSize, hut, fromDate, toDate,
+                                      orderBy, filterBy, search, forgottenItemMapper));
+    }
 
     /**
-     * Retrieve the records required for the overview table.
+     * Write every reservation matching the given filter to the given writer, in the given order.
+     *
+     * <p> The rows are streamed from the database straight to the writer, so the whole table can be exported in
+     * constant memory. The writer is closed once the export has finished.
      *
-     * <p> This is a potentially costly query.
+     * @return the number of rows written.
+     * @throws SQLException if an SQLException occurred.
+     * @throws IOException if the writer failed.
+     * @see #export
      */
-    public ObservableList<OverviewRow> overviewRows(LocalDate fromDate, LocalDate toDate) throws SQLException {
-        ObservableList<OverviewRow> overviewRows = FXCollections.observableArrayList();
+    public long exportReservations(Hut hut, LocalDate fromDate, LocalDate toDate, String orderBy, RowWriter writer)
+            throws SQLException, IOException {
+        return measure("exportReservations", Long::longValue,
+                       () -> export("reservations", "date", hut, fromDate, toDate, orderBy, null, null, writer));
+    }
 
-        PreparedStatement stmt = prepareOverviewStmt(fromDate, toDate);
+    /**
+     * Write all equipment matching the given filter to the given writer.
+     *
+     * @see #exportReservations
+     */
+    public long exportEquipment(Hut hut, LocalDate fromDate, LocalDate toDate, String orderBy, RowWriter writer)
+            throws SQLException, IOException {
+        return measure("exportEquipment", Long::longValue,
+                       () -> export("equipment", "purchase_date", hut, fromDate, toDate, orderBy, null, null, writer));
+    }
 
-        long days = daysInRange(fromDate, toDate);
+    /**
+     * Write every broken item matching the given filter and search to the given writer.
+     *
+     * @see #exportReservations
+     */
+    public long exportBrokenItems(Hut hut, LocalDate fromDate, LocalDate toDate, String orderBy, String filterBy,
+                                  String search, RowWriter writer) throws SQLException, IOException {
+        return measure("exportBrokenItems", Long::longValue,
+                       () -> export("broken_items", "date", hut, fromDate, toDate, orderBy, filterBy, search, writer));
+    }
 
-        ResultSet resultSet = stmt.executeQuery();
-        while (resultSet.next()) {
-            Hut hut = hutFromResultSet(resultSet);
+    /**
+     * Write every forgotten item matching the given filter and search to the given writer.
+     *
+     * @see #exportReservations
+     */
+    public long exportForgottenItems(Hut hut, LocalDate fromDate, LocalDate toDate, String orderBy, String filterBy,
+                                     String search, RowWriter writer) throws SQLException, IOException {
+        return measure("exportForgottenItems", Long::longValue,
+                       () -> export("forgotten_items", "date", hut, fromDate, toDate, orderBy, filterBy, search,
+                                    writer));
+    }
 
-            // Calculate occupancy.
-            BigDecimal count = resultSet.getBigDecimal("count");
-            BigDecimal occupancy = null;
-            if (days > 0 && count != null) {
-                BigDecimal totalCapacity = BigDecimal.valueOf(days * hut.getCapacity());
-                occupancy = count.divide(totalCapacity, MathContext.DECIMAL32);
-            }
+    /**
+     * Retrieve the records required for the overview table.
+     *
+     * <p> The next reservation of each hut is looked for from the current date.
+     */
+    public ObservableList<OverviewRow> overviewRows(LocalDate fromDate, LocalDate toDate) throws SQLException {
+        return measure("overviewRows", List::size, () -> overviewRows(fromDate, toDate, LocalDate.now()));
+    }
 
-            // Get possible next date.
-            Date sqlDate = resultSet.getDate("next");
-            LocalDate date = null;
-            if (sqlDate != null) {
-                date = sqlDate.toLocalDate();
-            }
+    private ObservableList<OverviewRow> overviewRows(LocalDate fromDate, LocalDate toDate, LocalDate today)
+            throws SQLException {
+        ObservableList<OverviewRow> overviewRows = FXCollections.observableArrayList();
 
-            Integer brokenCount = resultSet.getInt("broken_count");
-            Integer forgottenCount = resultSet.getInt("forgotten_count");
+        long days = daysInRange(fromDate, toDate);
 
-            overviewRows.add(new OverviewRow(hut, brokenCount, forgottenCount, occupancy, date));
+        try (PooledConnection connection = connectionPool.borrow()) {
+            SQLQuery query = genSQLOverview(fromDate, toDate, today);
+            ResultSet resultSet = query.execute(connection, slowQueryLog);
+            int hutColumn           = resultSet.findColumn("huts.id");
+            int countColumn         = resultSet.findColumn("count");
+            int nextColumn          = resultSet.findColumn("next");
+            int brokenCountColumn   = resultSet.findColumn("broken_count");
+            int forgottenCountColumn = resultSet.findColumn("forgotten_count");
+            while (resultSet.next()) {
+                Hut hut = hutFromResultSet(resultSet, hutColumn);
+
+                // Calculate occupancy.
+                double count = resultSet.getDouble(countColumn);
+                double occupancy = Double.NaN;
+                if (! resultSet.wasNull() && days * hut.getCapacity() > 0) {
+                    occupancy = count / (days * hut.getCapacity());
+                }
+
+                // Get possible next date.
+                Date sqlDate = resultSet.getDate(nextColumn);
+                LocalDate date = null;
+                if (sqlDate != null) {
+                    date = sqlDate.toLocalDate();
+                }
+
+                int brokenCount = resultSet.getInt(brokenCountColumn);
+                int forgottenCount = resultSet.getInt(forgottenCountColumn);
+
+                overviewRows.add(new OverviewRow(hut, brokenCount, forgottenCount, occupancy, date));
+            }
         }
         return overviewRows;
     }
 
+    /**
+     * Retrieve the overview for the given dates.
+     *
+     * @see #overviewRows(LocalDate, LocalDate)
+     * @see Overview
+     */
+    public Overview overview(LocalDate fromDate, LocalDate toDate) throws SQLException {
+        return measure("overview", overview -> overview.getRows().size(), () -> {
+            LocalDate today = LocalDate.now();
+            return new Overview(fromDate, toDate, today, overviewRows(fromDate, toDate, today));
+        });
+    }
+
     /**
      * Insert a reservation object into the database, setting the ID of the object to the database ID used.
      *
@@ -257,90 +458,320 @@ public class DataModel {
      * @throws SQLException any conceivable SQL exception.
      */
     public void insertReservation(Reservation reservation) throws SQLException {
-        LOGGER.log(Level.INFO, "Adding reservation to database.");
-
-        reservationInsertStmt.setInt(1, reservation.getHut().getId());
-        reservationInsertStmt.setDate(2, Date.valueOf(reservation.getDate()));
-        reservationInsertStmt.setString(3, reservation.getName());
-        reservationInsertStmt.setString(4, reservation.getEmail());
-        reservationInsertStmt.setInt(5, reservation.getCount());
-        reservationInsertStmt.setString(6, reservation.getComment());
+        insertReservations(Collections.singletonList(reservation));
+    }
 
-        reservationInsertStmt.executeUpdate();
+    /**
+     * Insert the given reservations into the database in a single transaction, setting the ID of each object to the
+     * database ID used.
+     *
+     * <p> The rows are sent as a single batch, which the driver rewrites into multi-row statements.
+     *
+     * @param reservations the reservation objects to insert into the database.
+     * @throws SQLException any conceivable SQL exception, in which case none of the reservations are inserted.
+     */
+    public void insertReservations(List<Reservation> reservations) throws SQLException {
+        measure("insertReservations", ignored -> reservations.size(), () -> {
+            if (reservations.isEmpty()) { return null; }
+            LOGGER.log(Level.INFO, "Adding {0} reservation(s) to database.", reservations.size());
+            long start = System.nanoTime();
+
+            // Guests per hut and date, so each day's occupancy is only updated once.
+            Map<List<Object>, Integer> guests = new LinkedHashMap<>();
+            for (Reservation reservation : reservations) {
+                guests.merge(Arrays.asList(reservation.getHut().getId(), Date.valueOf(reservation.getDate())),
+                             reservation.getCount(), Integer::sum);
+            }
 
-        ResultSet resultSet = reservationInsertStmt.getGeneratedKeys();
-        resultSet.next();
-        reservation.setId(resultSet.getInt(1));
+            int[] ids = new int[reservations.size()];
+            inTransaction(connection -> {
+                insertBatch(connection, SQL_INSERT_RESERVATION, reservations, this::bindReservation, ids);
+
+                PreparedStatement stmt = connection.prepareStatement(SQL_ADD_OCCUPANCY);
+                try {
+                    for (Map.Entry<List<Object>, Integer> entry : guests.entrySet()) {
+                        stmt.setInt(1, (Integer) entry.getKey().get(0));
+                        stmt.setDate(2, (Date) entry.getKey().get(1));
+                        stmt.setInt(3, entry.getValue());
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                } finally {
+                    stmt.clearBatch();
+                }
+            }, "reservations");
+            logInserted("reservation(s)", reservations.size(), start);
+
+            for (int i = 0; i < ids.length; i++) {
+                Reservation reservation = reservations.get(i);
+                reservation.setId(ids[i]);
+                countCache.recordAdded("reservations", reservation.getHut().getId(), reservation.getDate());
+                notifyListeners(listener -> listener.reservationAdded(reservation));
+            }
+            return null;
+        });
     }
 
     public void insertForgottenItem(ForgottenItem forgottenItem) throws SQLException {
-        LOGGER.log(Level.INFO, "Adding forgotten item to database.");
+        insertForgottenItems(Collections.singletonList(forgottenItem));
+    }
 
-        forgottenItemInsertStmt.setInt(1, forgottenItem.getHut().getId());
-        forgottenItemInsertStmt.setString(2, forgottenItem.getItem());
-        forgottenItemInsertStmt.setString(3, forgottenItem.getName());
-        forgottenItemInsertStmt.setString(4, forgottenItem.getContact());
-        forgottenItemInsertStmt.setDate(5, Date.valueOf(forgottenItem.getDate()));
-        forgottenItemInsertStmt.setBoolean(6, forgottenItem.getDelivered());
-        forgottenItemInsertStmt.setString(7, forgottenItem.getComment());
+    /**
+     * Insert the given forgotten items into the database in a single batch.
+     *
+     * @see #insertReservations(List)
+     */
+    public void insertForgottenItems(List<ForgottenItem> forgottenItems) throws SQLException {
+        measure("insertForgottenItems", ignored -> forgottenItems.size(), () -> {
+            if (forgottenItems.isEmpty()) { return null; }
+            LOGGER.log(Level.INFO, "Adding {0} forgotten item(s) to database.", forgottenItems.size());
+            long start = System.nanoTime();
+
+            int[] ids = new int[forgottenItems.size()];
+            inTransaction(connection -> insertBatch(connection, SQL_INSERT_FORGOTTEN_ITEM, forgottenItems,
+                                                    this::bindForgottenItem, ids), "forgotten_items");
+            logInserted("forgotten item(s)", forgottenItems.size(), start);
+
+            for (int i = 0; i < ids.length; i++) {
+                ForgottenItem forgottenItem = forgottenItems.get(i);
+                forgottenItem.setId(ids[i]);
+                countCache.recordAdded("forgotten_items", forgottenItem.getHut().getId(), forgottenItem.getDate());
+                notifyListeners(listener -> listener.forgottenItemAdded(forgottenItem));
+            }
+            return null;
+        });
+    }
 
-        forgottenItemInsertStmt.executeUpdate();
+    public void insertBrokenItem(BrokenItem brokenItem) throws SQLException {
+        insertBrokenItems(Collections.singletonList(brokenItem));
+    }
 
-        ResultSet resultSet = forgottenItemInsertStmt.getGeneratedKeys();
-        resultSet.next();
-        forgottenItem.setId(resultSet.getInt(1));
+    /**
+     * Insert the given broken items into the database in a single batch.
+     *
+     * @see #insertReservations(List)
+     */
+    public void insertBrokenItems(List<BrokenItem> brokenItems) throws SQLException {
+        measure("insertBrokenItems", ignored -> brokenItems.size(), () -> {
+            if (brokenItems.isEmpty()) { return null; }
+            LOGGER.log(Level.INFO, "Adding {0} broken item(s) to database.", brokenItems.size());
+            long start = System.nanoTime();
+
+            int[] ids = new int[brokenItems.size()];
+            inTransaction(connection -> insertBatch(connection, SQL_INSERT_BROKEN_ITEM, brokenItems,
+                                                    this::bindBrokenItem, ids), "broken_items");
+            logInserted("broken item(s)", brokenItems.size(), start);
+
+            for (int i = 0; i < ids.length; i++) {
+                BrokenItem brokenItem = brokenItems.get(i);
+                brokenItem.setId(ids[i]);
+                countCache.recordAdded("broken_items", brokenItem.getHut().getId(), brokenItem.getDate());
+                notifyListeners(listener -> listener.brokenItemAdded(brokenItem));
+            }
+            return null;
+        });
     }
 
-    public void insertBrokenItem(BrokenItem brokenItem) throws SQLException {
-        LOGGER.log(Level.INFO, "Adding broken item to database.");
+    public void insertEquipment(Equipment item) throws SQLException {
+        insertEquipment(Collections.singletonList(item));
+    }
 
-        brokenItemInsertStmt.setInt(1, brokenItem.getHut().getId());
-        brokenItemInsertStmt.setString(2, brokenItem.getItem());
-        brokenItemInsertStmt.setDate(3, Date.valueOf(brokenItem.getDate()));
-        brokenItemInsertStmt.setBoolean(4, brokenItem.getFixed());
-        brokenItemInsertStmt.setString(5, brokenItem.getComment());
+    /**
+     * Insert the given equipment into the database in a single batch.
+     *
+     * @see #insertReservations(List)
+     */
+    public void insertEquipment(List<Equipment> items) throws SQLException {
+        measure("insertEquipment", ignored -> items.size(), () -> {
+            if (items.isEmpty()) { return null; }
+            LOGGER.log(Level.INFO, "Adding {0} equipment item(s) to database.", items.size());
+            long start = System.nanoTime();
+
+            int[] ids = new int[items.size()];
+            inTransaction(connection -> insertBatch(connection, SQL_INSERT_EQUIPMENT, items, this::bindEquipment, ids),
+                          "equipment");
+            logInserted("equipment item(s)", items.size(), start);
+
+            for (int i = 0; i < ids.length; i++) {
+                Equipment item = items.get(i);
+                item.setId(ids[i]);
+                countCache.recordAdded("equipment", item.getHut().getId(), item.getPurchaseDate());
+                notifyListeners(listener -> listener.equipmentAdded(item));
+            }
+            return null;
+        });
+    }
 
-        brokenItemInsertStmt.executeUpdate();
+    public void updateBrokenItemFixed(BrokenItem item) throws SQLException {
+        updateRecords(Collections.singletonMap(item, item.getFixed()), Collections.emptyMap(),
+                      Collections.emptyMap());
+    }
 
-        ResultSet resultSet = brokenItemInsertStmt.getGeneratedKeys();
-        resultSet.next();
-        brokenItem.setId(resultSet.getInt(1));
+    public void updateForgottenItemDelivered(ForgottenItem item) throws SQLException {
+        updateRecords(Collections.emptyMap(), Collections.singletonMap(item, item.getDelivered()),
+                      Collections.emptyMap());
     }
 
-    public void insertEquipment(Equipment item) throws SQLException {
-        LOGGER.log(Level.INFO, "Adding broken item to database.");
+    public void updateHutFirewood(Hut hut) throws SQLException {
+        updateRecords(Collections.emptyMap(), Collections.emptyMap(),
+                      Collections.singletonMap(hut, hut.getFirewood()));
+    }
 
-        equipmentInsertStmt.setInt(1, item.getHut().getId());
-        equipmentInsertStmt.setString(2, item.getName());
-        equipmentInsertStmt.setDate(3, Date.valueOf(item.getPurchaseDate()));
-        equipmentInsertStmt.setInt(4, item.getCount());
+    /**
+     * Write the given field values in a single transaction, batching the updates of each table.
+     *
+     * <p> The values are given separately from the records, so that they can be taken on the thread the records are
+     * edited on. The records themselves are only used for their IDs, and passed on to the listeners once the
+     * transaction has been committed.
+     *
+     * @param fixed     new <code>fixed</code> values of broken items.
+     * @param delivered new <code>delivered</code> values of forgotten items.
+     * @param firewood  new <code>firewood</code> values of huts.
+     * @throws SQLException if an SQLException occurred, in which case none of the values have been written and the
+     *                      huts are reloaded the next time they're retrieved.
+     */
+    public void updateRecords(Map<BrokenItem, Boolean> fixed, Map<ForgottenItem, Boolean> delivered,
+                              Map<Hut, Integer> firewood) throws SQLException {
+        measure("updateRecords", ignored -> fixed.size() + delivered.size() + firewood.size(), () -> {
+            int rows = fixed.size() + delivered.size() + firewood.size();
+            if (rows == 0) { return null; }
+            long start = System.nanoTime();
+
+            List<String> tables = new ArrayList<>();
+            if (! fixed.isEmpty()) { tables.add("broken_items"); }
+            if (! delivered.isEmpty()) { tables.add("forgotten_items"); }
+            if (! firewood.isEmpty()) { tables.add("huts"); }
+
+            try {
+                inTransaction(connection -> {
+                    updateBatch(connection, SQL_UPDATE_BROKEN_ITEM_FIXED, fixed, BrokenItem::getId);
+                    updateBatch(connection, SQL_UPDATE_FORGOTTEN_ITEM_DELIVERED, delivered, ForgottenItem::getId);
+                    updateBatch(connection, SQL_UPDATE_HUT_FIREWOOD, firewood, Hut::getId);
+                }, tables.toArray(new String[tables.size()]));
+            } catch (SQLException e) {
+                // The huts hold the values that weren't written, have the next retrieval restore the stored ones.
+                if (! firewood.isEmpty()) { hutRegistry.invalidate(); }
+                throw e;
+            }
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            LOGGER.log(Level.FINE, "Updated {0} record(s) in {1} ms.", new Object[]{rows, millis});
 
-        equipmentInsertStmt.executeUpdate();
+            for (BrokenItem item : fixed.keySet()) {
+                countCache.recordUpdated("broken_items", item.getHut().getId(), item.getDate());
+                notifyListeners(listener -> listener.brokenItemUpdated(item));
+            }
+            for (ForgottenItem item : delivered.keySet()) {
+                countCache.recordUpdated("forgotten_items", item.getHut().getId(), item.getDate());
+                notifyListeners(listener -> listener.forgottenItemUpdated(item));
+            }
+            for (Hut hut : firewood.keySet()) {
+                notifyListeners(listener -> listener.hutUpdated(hut));
+            }
+            return null;
+        });
+    }
 
-        ResultSet resultSet = equipmentInsertStmt.getGeneratedKeys();
-        resultSet.next();
-        item.setId(resultSet.getInt(1));
+    /**
+     * Recompute the daily occupancy of every hut from the reservations.
+     *
+     * <p> Only needed if reservations have been modified outside of the application.
+     *
+     * @return the number of hut and date combinations with reservations.
+     * @throws SQLException if an SQLException occurred.
+     */
+    public int rebuildOccupancy() throws SQLException {
+        return measure("rebuildOccupancy", Integer::longValue, () -> {
+            LOGGER.log(Level.INFO, "Rebuilding daily occupancy.");
+
+            int[] rows = new int[1];
+            inTransaction(connection -> {
+                connection.prepareStatement(SQL_CLEAR_OCCUPANCY).executeUpdate();
+                rows[0] = connection.prepareStatement(SQL_REBUILD_OCCUPANCY).executeUpdate();
+            });
+            return rows[0];
+        });
     }
 
-    public void updateBrokenItemFixed(BrokenItem item) throws SQLException {
-        /*language=MySQL*/
-        String query = "UPDATE broken_items SET fixed=" + sqlBool(item.getFixed()) + "\n" +
-                       "WHERE id=" + item.getId() + ';';
-        statement.executeUpdate(query);
+    /**
+     * Check whether other clients have modified any tables since the last check, by polling their change counters.
+     *
+     * <p> The cached counts of the modified tables are thrown away, the huts are reloaded if they were modified, and
+     * the listeners are {@link DataListener#tablesChanged notified}. The first check only reads the counters, and
+     * never reports any modifications.
+     *
+     * @return the names of the tables modified by other clients, possibly none.
+     * @throws SQLException if an SQLException occurred.
+     */
+    public Set<String> pollChanges() throws SQLException {
+        return measure("pollChanges", NO_RECORDS, () -> {
+            Set<String> changed;
+            try (PooledConnection connection = connectionPool.borrow()) {
+                changed = changeTracker.poll(connection);
+                if (changed.contains("huts")) { hutRegistry.getHuts(connection); }
+            }
+            if (changed.isEmpty()) { return changed; }
+
+            LOGGER.log(Level.FINE, "Tables modified by other clients: {0}.", changed);
+            changed.forEach(countCache::tableChanged);
+            notifyListeners(listener -> listener.tablesChanged(changed));
+            return changed;
+        });
     }
 
-    public void updateForgottenItemDelivered(ForgottenItem item) throws SQLException {
-        /*language=MySQL*/
-        String query = "UPDATE forgotten_items SET delivered=" +sqlBool(item.getDelivered()) + '\n' +
-                       "WHERE id=" + item.getId() + ';';
-        statement.executeUpdate(query);
+    /**
+     * Log the generated queries taking longer than the given duration, and look up their plans.
+     *
+     * <p> Page, count and overview queries are timed, exports aren't as they are expected to take long. A slow query
+     * is logged with its parameters and <code>EXPLAIN</code>ed, flagging plans that scan a whole table or index, build
+     * a temporary table or sort the rows. The log is disabled by default.
+     *
+     * @param threshold the duration, or a negative value to disable the log.
+     * @param unit      the unit of the duration.
+     * @see #slowQueries()
+     */
+    public void setSlowQueryThreshold(long threshold, TimeUnit unit) {
+        slowQueryLog.setThreshold(threshold, unit);
     }
 
-    public void updateHutFirewood(Hut hut) throws SQLException {
-        /*language=MySQL*/
-        String query = "UPDATE huts SET firewood=" + hut.getFirewood() + '\n' +
-                       "WHERE id=" + hut.getId() + ';';
-        statement.executeUpdate(query);
+    /**
+     * @return the duration above which queries are logged, or a negative value if the log is disabled.
+     */
+    public long getSlowQueryThreshold(TimeUnit unit) {
+        return slowQueryLog.getThreshold(unit);
+    }
+
+    /**
+     * Return a report of the recent slow queries by shape, the one that took the longest in total first.
+     *
+     * @see #setSlowQueryThreshold(long, TimeUnit)
+     */
+    public List<SlowQuery> slowQueries() {
+        return slowQueryLog.report();
+    }
+
+    public void clearSlowQueries() {
+        slowQueryLog.clear();
+    }
+
+    /**
+     * Expose the metrics of the data model as MBeans of the platform MBean server, e.g. to be read with JConsole.
+     *
+     * <p> Every public method is measured as an operation: the latency of its calls as percentiles, the records they
+     * read or wrote and the statements they sent to the server. The hits and misses of the count cache, the hut
+     * registry and the prepared statement caches of the pool are counted as well. The metrics are always kept, this
+     * only makes them visible. Failures are logged and otherwise ignored.
+     *
+     * @param name the name distinguishing the data model from any others in the same process, which mustn't contain
+     *             any of the characters <code>,=:"*?</code>.
+     * @see OperationMetricsMBean
+     * @see CacheMetricsMBean
+     */
+    public void registerMBeans(String name) {
+        metrics.register(name);
+    }
+
+    public void unregisterMBeans() {
+        metrics.unregister();
     }
 
     /************************************************************************
@@ -349,12 +780,282 @@ public class DataModel {
      *
      ************************************************************************/
 
-    private static String sqlBool(Boolean bool) {
-        if (bool == Boolean.TRUE) {
-            return "TRUE";
-        } else {
-            return "FALSE";
+    private void notifyListeners(Consumer<DataListener> notification) {
+        listeners.forEach((listener, executor) -> executor.execute(() -> notification.accept(listener)));
+    }
+
+    /**
+     * The body of a public method.
+     *
+     * @param <E> an exception thrown besides SQLException, if any.
+     */
+    @FunctionalInterface
+    private interface Measured<T, E extends Exception> {
+        T run() throws SQLException, E;
+    }
+
+    /**
+     * Run the given method body, recording the call in the metrics of the given operation.
+     *
+     * @param operation the name of the operation, i.e. the method.
+     * @param records   function returning the number of records read or written, given the result.
+     * @param body      the method body.
+     * @return the result of the body.
+     */
+    private <T, E extends Exception> T measure(String operation, ToLongFunction<? super T> records,
+                                               Measured<T, E> body) throws SQLException, E {
+        OperationMetrics operationMetrics = metrics.operation(operation);
+        long start = System.nanoTime();
+        long roundTrips = OperationMetrics.roundTrips();
+        T result = null;
+        boolean failed = true;
+        try {
+            result = body.run();
+            failed = false;
+            return result;
+        } finally {
+            operationMetrics.record(start, roundTrips, failed ? 0 : records.applyAsLong(result), failed);
+        }
+    }
+
+    /**
+     * Function binding the fields of a record to the placeholders of an insert statement.
+     *
+     * @param <T> the type of the record.
+     */
+    @FunctionalInterface
+    private interface RowBinder<T> {
+        void bind(PreparedStatement stmt, T item) throws SQLException;
+    }
+
+    /**
+     * Insert the given records as batches.
+     *
+     * <p> The driver rewrites a batch into a single multi-row statement, which the server only prepares with up to
+     * {@link #MAX_PLACEHOLDERS} placeholders, so the records are split into as few batches as that allows.
+     *
+     * @param connection    the connection to insert the records on.
+     * @param sql           the insert statement, which must not end with a semicolon for the driver to rewrite it.
+     * @param items         the records to insert.
+     * @param binder        function binding a record to the statement.
+     * @param ids           array the generated ID of each record is stored in.
+     * @throws SQLException if an SQLException occurred.
+     */
+    private <T> void insertBatch(PooledConnection connection, String sql, List<T> items, RowBinder<T> binder,
+                                 int[] ids) throws SQLException {
+        PreparedStatement stmt = connection.prepareInsertStatement(sql);
+        int placeholders = Math.max(1, stmt.getParameterMetaData().getParameterCount());
+        int batchSize = MAX_PLACEHOLDERS / placeholders;
+
+        for (int start = 0; start < items.size(); start += batchSize) {
+            int end = Math.min(start + batchSize, items.size());
+            try {
+                for (T item : items.subList(start, end)) {
+                    binder.bind(stmt, item);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            } finally {
+                stmt.clearBatch();
+            }
+
+            ResultSet resultSet = stmt.getGeneratedKeys();
+            for (int i = start; i < end; i++) {
+                if (! resultSet.next()) { throw new SQLException("Missing generated key for inserted row " + i + "."); }
+                ids[i] = resultSet.getInt(1);
+            }
+        }
+    }
+
+    /**
+     * Update a single column of the given records using a statement batch.
+     *
+     * @param connection    the connection to update the records on.
+     * @param sql           an <code>UPDATE</code> statement taking the new value and the ID of the record.
+     * @param values        the new value for each record.
+     * @param idGetter      function returning the ID of a record.
+     * @throws SQLException if an SQLException occurred.
+     */
+    private <T> void updateBatch(PooledConnection connection, String sql, Map<T, ?> values, ToIntFunction<T> idGetter)
+            throws SQLException {
+        if (values.isEmpty()) { return; }
+
+        PreparedStatement stmt = connection.prepareStatement(sql);
+        try {
+            for (Map.Entry<T, ?> entry : values.entrySet()) {
+                stmt.setObject(1, entry.getValue());
+                stmt.setInt(2, idGetter.applyAsInt(entry.getKey()));
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        } finally {
+            stmt.clearBatch();
+        }
+    }
+
+    private void logInserted(String what, int rows, long startNanos) {
+        long millis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        LOGGER.log(Level.INFO, "Added {0} {1} in {2} ms ({3} rows/s).",
+                   new Object[]{rows, what, millis, rows * 1000L / millis});
+    }
+
+    private void bindReservation(PreparedStatement stmt, Reservation reservation) throws SQLException {
+        stmt.setInt(1, reservation.getHut().getId());
+        stmt.setDate(2, Date.valueOf(reservation.getDate()));
+        stmt.setString(3, reservation.getName());
+        stmt.setString(4, reservation.getEmail());
+        stmt.setInt(5, reservation.getCount());
+        stmt.setString(6, reservation.getComment());
+    }
+
+    private void bindForgottenItem(PreparedStatement stmt, ForgottenItem forgottenItem) throws SQLException {
+        stmt.setInt(1, forgottenItem.getHut().getId());
+        stmt.setString(2, forgottenItem.getItem());
+        stmt.setString(3, forgottenItem.getName());
+        stmt.setString(4, forgottenItem.getContact());
+        stmt.setDate(5, Date.valueOf(forgottenItem.getDate()));
+        stmt.setBoolean(6, forgottenItem.getDelivered());
+        stmt.setString(7, forgottenItem.getComment());
+    }
+
+    private void bindBrokenItem(PreparedStatement stmt, BrokenItem brokenItem) throws SQLException {
+        stmt.setInt(1, brokenItem.getHut().getId());
+        stmt.setString(2, brokenItem.getItem());
+        stmt.setDate(3, Date.valueOf(brokenItem.getDate()));
+        stmt.setBoolean(4, brokenItem.getFixed());
+        stmt.setString(5, brokenItem.getComment());
+    }
+
+    private void bindEquipment(PreparedStatement stmt, Equipment item) throws SQLException {
+        stmt.setInt(1, item.getHut().getId());
+        stmt.setString(2, item.getName());
+        stmt.setDate(3, Date.valueOf(item.getPurchaseDate()));
+        stmt.setInt(4, item.getCount());
+    }
+
+    /**
+     * Statements executed as a single transaction.
+     */
+    @FunctionalInterface
+    private interface Transaction {
+        void run(PooledConnection connection) throws SQLException;
+    }
+
+    /**
+     * Execute the given statements on a pooled connection as a single transaction, rolling back if any of them fail.
+     *
+     * @param transaction       the statements to execute.
+     * @param modifiedTables    the tables modified by the statements, whose change counters are bumped as part of the
+     *                          transaction.
+     * @throws SQLException if an SQLException occurred.
+     */
+    private void inTransaction(Transaction transaction, String... modifiedTables) throws SQLException {
+        try (PooledConnection pooledConnection = connectionPool.borrow()) {
+            Connection connection = pooledConnection.getConnection();
+            // Turning auto-commit off, committing or rolling back, and turning it back on.
+            OperationMetrics.countRoundTrips(3);
+            connection.setAutoCommit(false);
+            long[] versions = new long[modifiedTables.length];
+            int bumped = 0;
+            try {
+                transaction.run(pooledConnection);
+                for (; bumped < modifiedTables.length; bumped++) {
+                    versions[bumped] = changeTracker.bump(pooledConnection, modifiedTables[bumped]);
+                }
+                connection.commit();
+                for (int i = 0; i < modifiedTables.length; i++) {
+                    changeTracker.committed(modifiedTables[i], versions[i]);
+                }
+            } catch (SQLException | RuntimeException e) {
+                for (int i = 0; i < bumped; i++) {
+                    changeTracker.rolledBack(modifiedTables[i], versions[i]);
+                }
+                // The rollback and the reset of auto-commit usually fail along with a dropped connection, and
+                // mustn't hide why the transaction failed.
+                try {
+                    connection.rollback();
+                } catch (SQLException rollbackError) {
+                    e.addSuppressed(rollbackError);
+                }
+                resetAutoCommit(pooledConnection, e);
+                throw e;
+            }
+            resetAutoCommit(pooledConnection, null);
+        }
+    }
+
+    /**
+     * Turn auto-commit back on after a transaction, closing the connection if that fails so that it isn't returned
+     * to the pool mid-transaction.
+     *
+     * <p> A failure to do so doesn't undo a committed transaction, so it's only logged, or attached to the failure
+     * of the transaction if it failed.
+     *
+     * @param failure the failure of the transaction, if it failed.
+     */
+    private static void resetAutoCommit(PooledConnection pooledConnection, Throwable failure) {
+        try {
+            pooledConnection.getConnection().setAutoCommit(true);
+        } catch (SQLException e) {
+            pooledConnection.closeQuietly();
+            if (failure != null) {
+                failure.addSuppressed(e);
+            } else {
+                LOGGER.log(Level.WARNING, "Discarding database connection after failing to turn auto-commit on.", e);
+            }
+        }
+    }
+
+    /**
+     * Execute the given counting query on a pooled connection.
+     *
+     * @param query an SQL query returning a single integer.
+     * @return the result of the query.
+     * @throws SQLException if an SQLException occurred.
+     */
+    private Integer count(SQLQuery query) throws SQLException {
+        try (PooledConnection connection = connectionPool.borrow()) {
+            ResultSet resultSet = query.execute(connection, slowQueryLog);
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    /**
+     * Execute the given query on a pooled connection, reading a record from every row of the result.
+     *
+     * @param query     an SQL query.
+     * @param rowMapper mapper reading a record from a result set row.
+     * @return a list of the records.
+     * @throws SQLException if an SQLException occurred.
+     */
+    private <T> ObservableList<T> list(SQLQuery query, RowMapper<T> rowMapper) throws SQLException {
+        ObservableList<T> items = FXCollections.observableArrayList();
+        try (PooledConnection connection = connectionPool.borrow()) {
+            ResultSet resultSet = query.execute(connection, slowQueryLog);
+            int[] columns = rowMapper.columnsFor(query.getSQL(), resultSet);
+            while (resultSet.next()) {
+                items.add(rowMapper.read(resultSet, columns));
+            }
         }
+        return items;
+    }
+
+    /**
+     * Return the filtered number of records in the given table, counting them only if the count isn't cached.
+     *
+     * @see #genSQLGenericCount(String, Hut, String, LocalDate, LocalDate, String)
+     */
+    private Integer countRecords(String table, Hut hut, String dateField, LocalDate fromDate, LocalDate toDate,
+                                 String filterBy) throws SQLException {
+        CountCache.Key key = new CountCache.Key(table, hut, fromDate, toDate, filterBy);
+        long generation = countCache.generation();
+        Integer count = countCache.get(key);
+        if (count == null) {
+            count = count(genSQLGenericCount(table, hut, dateField, fromDate, toDate, filterBy));
+            countCache.put(key, count, generation);
+        }
+        return count;
     }
 
     /**
@@ -367,25 +1068,15 @@ public class DataModel {
      *                  table. Can optionally be <code>null</code>.
      * @param toDate    exclude all records after this date. Assumes that <code>date</code> is a column in the given
      *                  table. Can optionally be <code>null</code>.
-     * @param filterBy  parameter to the WHERE clause.
-     * @return a string with the requested SQL query.
-     */
-    private static String genSQLGenericCount(String table, Hut hut, String dateField,
-                                             LocalDate fromDate, LocalDate toDate, String filterBy) {
-        StringBuilder builder = new StringBuilder("SELECT COUNT(*) FROM ").append(table);
-        String hutDatePredicate = genHutDatePredicate("hut_id", hut, dateField, fromDate, toDate);
-        if (hutDatePredicate != null) {
-            builder.append(" WHERE ")
-                   .append(hutDatePredicate); }
-        if (filterBy != null) {
-            if (hutDatePredicate != null) {
-                builder.append(" AND ");
-            } else {
-                builder.append(" WHERE ");
-            }
-            builder.append(filterBy);
-        }
-        return builder.append(';').toString();
+     * @param filterBy  parameter to the WHERE clause. This is part of the query's shape, so it must not contain any
+     *                  varying values.
+     * @return the requested SQL query.
+     */
+    static SQLQuery genSQLGenericCount(String table, Hut hut, String dateField,
+                                       LocalDate fromDate, LocalDate toDate, String filterBy) {
+        SQLQuery query = new SQLQuery("SELECT COUNT(*) AS total FROM " + table);
+        genHutDatePredicate(query, "hut_id", hut, dateField, fromDate, toDate);
+        return query.where(filterBy);
     }
 
     /**
@@ -401,187 +1092,358 @@ public class DataModel {
      * @param toDate    exclude all records after this date. Assumes that <code>date</code> is a column in the given
      *                  table. Can optionally be <code>null</code>.
      * @param orderBy   ordering, can optionally be <code>null</code>.
-     * @param filterBy  parameter to the WHERE clause, can optionally be <code>null</code>.
-     * @return a string with the requested SQL query.
-     */
-    private static String genSQLGenericPage(String table, Integer pageStart, Integer pageSize, String hutField,
-                                            Hut hut, String dateField, LocalDate fromDate, LocalDate toDate,
-                                            String orderBy, String filterBy) {
-        StringBuilder builder = new StringBuilder("SELECT huts.name, ").append(table).append(".* FROM ").append(table)
-                .append(" LEFT JOIN huts ON huts.id = ").append(table).append('.').append(hutField);
-        String hutDatePredicate = genHutDatePredicate(hutField, hut, table + '.' + dateField, fromDate, toDate);
-        if (hutDatePredicate != null) {
-            builder.append(" WHERE ")
-                   .append(hutDatePredicate);
-        }
-        if (filterBy != null) {
-            if (hutDatePredicate != null) {
-                builder.append(" AND ");
-            } else {
-                builder.append(" WHERE ");
-            }
-            builder.append(filterBy);
+     * @param filterBy  parameter to the WHERE clause, can optionally be <code>null</code>. This is part of the
+     *                  query's shape, so it must not contain any varying values.
+     * @return the requested SQL query.
+     */
+    static SQLQuery genSQLGenericPage(String table, Integer pageStart, Integer pageSize, String hutField, Hut hut,
+                                      String dateField, LocalDate fromDate, LocalDate toDate, String orderBy,
+                                      String filterBy) {
+        return genSQLGenericPage(table, pageStart, pageSize, hutField, hut, dateField, fromDate, toDate, orderBy,
+                                 filterBy, null, null, Collections.emptyList(), null);
+    }
+
+    /**
+     * Return an SQL query for a filtered set of records from the given table, positioned by the given seek predicate.
+     *
+     * <p> If a count query is given, its result is added to every row as the <code>total</code> column, so that the
+     * total number of records is retrieved along with the page in a single round trip.
+     *
+     * <p> If search text is given, only the records matching it are selected. Unless another ordering is given they
+     * are then ranked by relevance, most relevant first.
+     *
+     * @param search          text to search the table's full-text index for, can optionally be <code>null</code>.
+     * @param seekPredicate   an additional predicate locating the page, can optionally be <code>null</code>.
+     * @param seekParameters  values of the seek predicate's parameters, in order.
+     * @param countQuery      a query counting the filtered and searched records, can optionally be <code>null</code>.
+     * @see #genSQLGenericPage(String, Integer, Integer, String, Hut, String, LocalDate, LocalDate, String, String)
+     * @see #genSQLGenericCount(String, Hut, String, LocalDate, LocalDate, String)
+     */
+    static SQLQuery genSQLGenericPage(String table, Integer pageStart, Integer pageSize, String hutField, Hut hut,
+                                      String dateField, LocalDate fromDate, LocalDate toDate, String orderBy,
+                                      String filterBy, String search, String seekPredicate,
+                                      List<Object> seekParameters, SQLQuery countQuery) {
+        String columns = "huts.name, " + table + ".*" + (countQuery != null ? ", totals.total" : "");
+        SQLQuery query = new SQLQuery("SELECT " + columns + " FROM " + table +
+                                      " LEFT JOIN huts ON huts.id = " + table + '.' + hutField);
+        if (countQuery != null) {
+            query.join("CROSS JOIN", countQuery, "totals");
         }
-        if (orderBy != null) {
-            builder.append(" ORDER BY ")
-                   .append(orderBy);
+        genHutDatePredicate(query, hutField, hut, table + '.' + dateField, fromDate, toDate);
+        query.where(filterBy);
+        genSearchPredicate(query, table, search);
+        query.where(seekPredicate, seekParameters.toArray());
+        if (orderBy == null && search != null) {
+            query.orderBy(genSQLMatch(table) + " DESC, " + table + ".id ASC", search);
+        } else {
+            query.orderBy(orderBy);
         }
-        builder.append(" LIMIT ")
-               .append(pageStart)
-               .append(", ")
-               .append(pageSize)
-               .append(';');
-        return builder.toString();
+        return query.limit(pageStart, pageSize);
     }
 
     /**
-     * Generate an SQL predicate for the given date range.
+     * Stream the filtered records of the given table to the given writer.
+     *
+     * <p> The records are selected like {@link #seekPage pages} are, but without a limit, and read from a
+     * forward-only result set that the driver streams row by row. Each row is handed to the writer as column values
+     * before the next one is read, so no records are built and memory use doesn't depend on the size of the table.
+     * The connection is held until the last row has been written.
+     *
+     * <p> Every column of the table is written, preceded by the name of the hut as the <code>hut</code> column.
      *
-     * @param field     the name of the field to filter on.
+     * @param table     the name of the database table.
+     * @param dateField the name of the date column to filter on.
+     * @param hut       a hut to filter on, can optionally be <code>null</code>.
      * @param fromDate  exclude all records before this date. Can optionally be <code>null</code>.
      * @param toDate    exclude all records after this date. Can optionally be <code>null</code>.
-     * @return a string containing an SQL predicate (the part following a <code>WHERE</code> clause).
-     */
-    private static String genDatePredicate(String field, LocalDate fromDate, LocalDate toDate) {
-        if (fromDate != null && toDate != null) {
-            return String.format("%s BETWEEN '%s' AND '%s'", field, Date.valueOf(fromDate), Date.valueOf(toDate));
-        } else if (fromDate != null) {
-            return String.format("%s >= '%s'", field, Date.valueOf(fromDate));
-        } else if (toDate != null) {
-            return String.format("%s <= '%s'", field, Date.valueOf(toDate));
-        } else {
-            return null;
+     * @param orderBy   ordering, can optionally be <code>null</code>.
+     * @param filterBy  parameter to the WHERE clause, can optionally be <code>null</code>.
+     * @param search    text to search the table's full-text index for, can optionally be <code>null</code>.
+     * @param writer    the writer to write the rows to, closed once the export has finished.
+     * @return the number of rows written.
+     * @throws SQLException if an SQLException occurred.
+     * @throws IOException if the writer failed.
+     */
+    private long export(String table, String dateField, Hut hut, LocalDate fromDate, LocalDate toDate,
+                        String orderBy, String filterBy, String search, RowWriter writer)
+            throws SQLException, IOException {
+        SQLQuery query = new SQLQuery("SELECT huts.name AS hut, " + table + ".* FROM " + table +
+                                      " LEFT JOIN huts ON huts.id = " + table + ".hut_id");
+        genHutDatePredicate(query, "hut_id", hut, table + '.' + dateField, fromDate, toDate);
+        query.where(filterBy);
+        genSearchPredicate(query, table, search);
+        query.orderBy(new Keyset(table + ".id", orderBy).ordering(false));
+
+        long start = System.nanoTime();
+        long rows = 0;
+        try (RowWriter rowWriter = writer;
+             PooledConnection connection = connectionPool.borrow();
+             PreparedStatement stmt = query.prepareStreaming(connection);
+             ResultSet resultSet = stmt.executeQuery()) {
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            List<String> columns = new ArrayList<>();
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                columns.add(metaData.getColumnLabel(i));
+            }
+            rowWriter.writeHeader(columns);
+
+            Object[] values = new Object[columns.size()];
+            List<Object> row = Arrays.asList(values);
+            while (resultSet.next()) {
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = resultSet.getObject(i + 1);
+                }
+                rowWriter.writeRow(row);
+                rows++;
+            }
         }
+        logExported(table, rows, start);
+        return rows;
+    }
+
+    private void logExported(String table, long rows, long startNanos) {
+        long millis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        LOGGER.log(Level.INFO, "Exported {0} rows from {1} in {2} ms ({3} rows/s).",
+                   new Object[]{rows, table, millis, rows * 1000L / millis});
     }
 
     /**
-     * Generate an SQL predicate for the given hut and date range.
+     * Add an SQL predicate for the given hut and date range to the given query.
      *
+     * @param query     the query to filter.
      * @param hutField  the name of the hut column.
      * @param hut       the hut to filter on. Can optionally be <code>null</code>.
      * @param dateField the name of the date column.
      * @param fromDate  exclude all records before this date. Can optionally be <code>null</code>.
      * @param toDate    exclude all records after this date. Can optionally be <code>null</code>.
-     * @return a string containing an SQL predicate (the part following a <code>WHERE</code> clause).
-     */
-    private static String genHutDatePredicate(String hutField, Hut hut,
-                                              String dateField, LocalDate fromDate, LocalDate toDate) {
-        String datePredicate = genDatePredicate(dateField, fromDate, toDate);
-        if (hut != null && datePredicate != null) {
-            return String.format("%s = %d AND %s", hutField, hut.getId(), datePredicate);
-        } else if (hut != null) {
-            return String.format("%s = %d", hutField, hut.getId());
-        } else if (datePredicate != null) {
-            return datePredicate;
-        } else {
-            return null;
+     */
+    private static void genHutDatePredicate(SQLQuery query, String hutField, Hut hut,
+                                            String dateField, LocalDate fromDate, LocalDate toDate) {
+        if (hut != null) {
+            query.where(hutField + " = ?", hut.getId());
         }
+        query.whereDateBetween(dateField, fromDate, toDate);
     }
 
     /**
-     * Return the correct, fully prepared, overview statement for the given dates.
+     * Add an SQL predicate matching the given search text to the given query.
      *
+     * <p> The text is searched for in natural language mode, so it's matched word by word rather than as a phrase,
+     * and words shorter than the server's minimum token size or too common to be indexed are ignored.
+     *
+     * @param query     the query to filter.
+     * @param table     the name of the searched table, which must have a full-text index (see
+     *                  {@link #SEARCH_COLUMNS}).
+     * @param search    the text to search for. Can optionally be <code>null</code>.
+     */
+    private static void genSearchPredicate(SQLQuery query, String table, String search) {
+        if (search != null) {
+            query.where(genSQLMatch(table), search);
+        }
+    }
+
+    /**
+     * Return an SQL expression for the relevance of a record of the given table to the search text bound to its
+     * placeholder, which is positive for the matching records.
+     */
+    private static String genSQLMatch(String table) {
+        return "MATCH (" + SEARCH_COLUMNS.get(table) + ") AGAINST (? IN NATURAL LANGUAGE MODE)";
+    }
+
+    /**
+     * Retrieve the page with the given index from the given table using keyset pagination.
+     *
+     * <p> If the anchor is a page produced by the same table, filter and ordering, the requested page is located
+     * relative to it: the rows following the anchor's last key (or preceding its first key) are selected directly
+     * through the ordering, so that only the pages in between the two, if any, need to be skipped. Navigating to the
+     * next or previous page therefore costs the same regardless of how deep into the table the anchor is. When no
+     * usable anchor is given, or skipping from the start of the table is cheaper, the page is retrieved by offset.
+     *
+     * <p> The table's <code>id</code> column is always appended to the ordering as a tiebreaker.
+     *
+     * <p> Pages of search results without an explicit ordering are ranked by relevance instead, which isn't a key that
+     * can be sought, so they are always retrieved by offset. A search rarely matches more than a few pages.
+     *
+     * <p> The total number of records is taken from the count cache if possible. Otherwise it is counted by the page
+     * query itself, only requiring a separate query if the page turns out to be empty.
+     *
+     * @param table     the name of the database table.
+     * @param dateField the name of the date column to filter on.
+     * @param anchor    a previously retrieved page, can optionally be <code>null</code>.
+     * @param pageIndex the index of the page to retrieve. Counts from zero.
+     * @param pageSize  the number of records on a page.
+     * @param hut       a hut to filter on, can optionally be <code>null</code>.
      * @param fromDate  exclude all records before this date. Can optionally be <code>null</code>.
      * @param toDate    exclude all records after this date. Can optionally be <code>null</code>.
-     * @return a prepared statement filtered on the given dates.
+     * @param orderBy   ordering, can optionally be <code>null</code>.
+     * @param filterBy  parameter to the WHERE clause, can optionally be <code>null</code>.
+     * @param search    text to search the table's full-text index for, can optionally be <code>null</code>.
+     * @param rowMapper mapper reading a record from a result set row.
+     * @return the requested page.
      * @throws SQLException if an SQLException occurred.
      */
-    private PreparedStatement prepareOverviewStmt(LocalDate fromDate, LocalDate toDate) throws SQLException {
-        PreparedStatement stmt;
-        if (fromDate != null && toDate != null) {
-            stmt = overviewBetweenDatesStmt;
-            for (int i = 1; i <= 6; ) {
-                stmt.setDate(i++, Date.valueOf(fromDate));
-                stmt.setDate(i++, Date.valueOf(toDate));
+    private <T> Page<T> seekPage(String table, String dateField, Page<T> anchor, int pageIndex, int pageSize, Hut hut,
+                                 LocalDate fromDate, LocalDate toDate, String orderBy, String filterBy,
+                                 String search, RowMapper<T> rowMapper) throws SQLException {
+        CountCache.Key filterKey = new CountCache.Key(table, hut, fromDate, toDate, filterBy, search);
+        Object queryId = Arrays.asList(filterKey, orderBy);
+        Keyset keyset = new Keyset(table + ".id", orderBy);
+        boolean ranked = search != null && orderBy == null;
+
+        long generation = countCache.generation();
+        Integer cachedTotal = countCache.get(filterKey);
+        SQLQuery countQuery = null;
+        if (cachedTotal == null) {
+            countQuery = genSQLGenericCount(table, hut, dateField, fromDate, toDate, filterBy);
+            genSearchPredicate(countQuery, table, search);
+        }
+
+        List<Object> params = new ArrayList<>();
+        String seekPredicate = null;
+        boolean reverse = false;
+        int skip = pageIndex * pageSize;
+        if (! ranked && anchor != null && anchor.isAnchorFor(queryId)) {
+            int distance = pageIndex - anchor.getIndex();
+            if (distance > 0) {
+                seekPredicate = keyset.predicate(anchor.getLastKey(), true, false, params);
+                skip = (distance - 1) * pageSize;
+            } else if (distance < 0 && (-distance - 1) * pageSize < skip) {
+                // Walk backwards from the anchor's first row and restore the order afterwards.
+                seekPredicate = keyset.predicate(anchor.getFirstKey(), false, false, params);
+                skip = (-distance - 1) * pageSize;
+                reverse = true;
+            } else if (distance == 0 && skip > 0) {
+                seekPredicate = keyset.predicate(anchor.getFirstKey(), true, true, params);
+                skip = 0;
             }
-        } else if (fromDate != null) {
-            stmt = overviewFromDateStmt;
-            for (int i = 1; i <= 3; ) {
-                stmt.setDate(i++, Date.valueOf(fromDate));
+        }
+
+        SQLQuery query = genSQLGenericPage(table, skip, pageSize, "hut_id", hut, dateField, fromDate, toDate,
+                                           ranked ? null : keyset.ordering(reverse), filterBy, search, seekPredicate,
+                                           params, countQuery);
+
+        ObservableList<T> items = FXCollections.observableArrayList();
+        Object[] firstKey = null;
+        Object[] lastKey = null;
+        int total = cachedTotal == null ? 0 : cachedTotal;
+        try (PooledConnection connection = connectionPool.borrow()) {
+            ResultSet resultSet = query.execute(connection, slowQueryLog);
+            int[] columns = rowMapper.columnsFor(query.getSQL(), resultSet);
+            int[] keyColumns = keyset.columnsOf(resultSet);
+            while (resultSet.next()) {
+                lastKey = keyset.readKey(resultSet, keyColumns);
+                if (firstKey == null) {
+                    firstKey = lastKey;
+                    if (countQuery != null) { total = resultSet.getInt("totals.total"); }
+                }
+                items.add(rowMapper.read(resultSet, columns));
             }
-        } else if (toDate != null) {
-            stmt = overviewToDateStmt;
-            for (int i = 1; i <= 3; ) {
-                stmt.setDate(i++, Date.valueOf(toDate));
+        }
+
+        // An empty page carries no total, unless it's the first page in which case there are no records at all.
+        if (countQuery != null) {
+            if (items.isEmpty() && (seekPredicate != null || skip > 0)) {
+                total = count(countQuery);
             }
-        } else {
-            stmt = overviewAllStmt;
+            countCache.put(filterKey, total, generation);
+        }
+
+        if (reverse) {
+            FXCollections.reverse(items);
+            Object[] key = firstKey;
+            firstKey = lastKey;
+            lastKey = key;
         }
-        return stmt;
+        return new Page<>(items, pageIndex, total, queryId, firstKey, lastKey);
     }
 
     /**
-     * Return the hut matching the given database ID if at all possible.
+     * Build the overview query for the given dates.
      *
-     * @param id the ID of the hut to return.
-     * @return the hut.
-     * @throws SQLException if an SQLException occurred.
+     * <p> Each figure is aggregated per hut from a range scan of a date-leading covering index, so only the records
+     * within the date range are read. The next reservation of each hut is found by a loose scan of the
+     * <code>(hut_id, date)</code> key of <code>hut_daily_occupancy</code>.
+     *
+     * @param fromDate  exclude all records before this date. Can optionally be <code>null</code>.
+     * @param toDate    exclude all records after this date. Can optionally be <code>null</code>.
+     * @param today     the date to look for the next reservation from.
+     * @return the overview query.
      */
-    private Hut hutFromId(Integer id) throws SQLException {
-        Hut hut = hutMap.get(id);
-        if (hut == null) {
-            hutForIdStmt.setInt(1, id);
-            ResultSet resultSet = hutForIdStmt.executeQuery();
-            resultSet.next();
-            hut = hutFromResultSet(resultSet);
-        }
-        return hut;
+    private SQLQuery genSQLOverview(LocalDate fromDate, LocalDate toDate, LocalDate today) {
+        SQLQuery occupancy = new SQLQuery("SELECT hut_id, SUM(guests) AS count FROM hut_daily_occupancy")
+                .whereDateBetween("date", fromDate, toDate)
+                .groupBy("hut_id");
+        SQLQuery next = new SQLQuery("SELECT hut_id, MIN(date) AS next FROM hut_daily_occupancy")
+                .where("date >= ?", Date.valueOf(today))
+                .groupBy("hut_id");
+        SQLQuery brokenCount = new SQLQuery("SELECT hut_id, COUNT(*) AS broken_count FROM broken_items")
+                .whereDateBetween("date", fromDate, toDate)
+                .groupBy("hut_id");
+        SQLQuery forgottenCount = new SQLQuery("SELECT hut_id, COUNT(*) AS forgotten_count FROM forgotten_items")
+                .whereDateBetween("date", fromDate, toDate)
+                .groupBy("hut_id");
+
+        return new SQLQuery("SELECT huts.id, R.count, N.next, B.broken_count, F.forgotten_count FROM huts")
+                .leftJoin(occupancy, "R", "R.hut_id = huts.id")
+                .leftJoin(next, "N", "N.hut_id = huts.id")
+                .leftJoin(brokenCount, "B", "B.hut_id = huts.id")
+                .leftJoin(forgottenCount, "F", "F.hut_id = huts.id");
     }
 
     /**
-     * Attempt to create a hut from the given result set.
+     * Return the canonical hut whose ID is in the given column of the given result set.
+     *
+     * <p> Should the hut not be known yet, the huts are reloaded on the result set's own connection.
      *
-     * @param resultSet a result set pointing at a valid hut record.
-     * @return a hut.
+     * @param resultSet a result set pointing at a row.
+     * @param column    the index of a column containing a hut ID.
+     * @return the hut.
      * @throws SQLException if an SQLException occurred.
      */
-    private Hut hutFromResultSet(ResultSet resultSet) throws SQLException {
-        return new Hut(resultSet.getInt("huts.id"),
-                       resultSet.getString("huts.name"),
-                       resultSet.getInt("huts.capacity"),
-                       resultSet.getInt("huts.firewood"));
+    private Hut hutFromResultSet(ResultSet resultSet, int column) throws SQLException {
+        return hutRegistry.get(resultSet.getInt(column), resultSet.getStatement().getConnection());
     }
 
-    private Reservation reservationFromResultSet(ResultSet resultSet) throws SQLException {
-        Hut hut = hutFromId(resultSet.getInt("reservations.hut_id"));
-        return new Reservation(resultSet.getInt("reservations.id"),
+    private Reservation reservationFromResultSet(ResultSet resultSet, int[] columns) throws SQLException {
+        Hut hut = hutFromResultSet(resultSet, columns[1]);
+        return new Reservation(resultSet.getInt(columns[0]),
                                hut,
-                               resultSet.getDate("reservations.date").toLocalDate(),
-                               resultSet.getString("reservations.name"),
-                               resultSet.getString("reservations.email"),
-                               resultSet.getInt("reservations.count"),
-                               resultSet.getString("reservations.comment"));
+                               resultSet.getDate(columns[2]).toLocalDate(),
+                               resultSet.getString(columns[3]),
+                               resultSet.getString(columns[4]),
+                               resultSet.getInt(columns[5]),
+                               resultSet.getString(columns[6]));
     }
 
-    private ForgottenItem forgottenItemFromResultSet(ResultSet resultSet) throws SQLException {
-        Hut hut = hutFromId(resultSet.getInt("forgotten_items.hut_id"));
-        return new ForgottenItem(resultSet.getInt("forgotten_items.id"),
+    private ForgottenItem forgottenItemFromResultSet(ResultSet resultSet, int[] columns) throws SQLException {
+        Hut hut = hutFromResultSet(resultSet, columns[1]);
+        return new ForgottenItem(resultSet.getInt(columns[0]),
                                  hut,
-                                 resultSet.getString("forgotten_items.item"),
-                                 resultSet.getString("forgotten_items.name"),
-                                 resultSet.getString("forgotten_items.contact"),
-                                 resultSet.getDate("forgotten_items.date").toLocalDate(),
-                                 resultSet.getBoolean("forgotten_items.delivered"),
-                                 resultSet.getString("forgotten_items.comment"));
+                                 resultSet.getString(columns[2]),
+                                 resultSet.getString(columns[3]),
+                                 resultSet.getString(columns[4]),
+                                 resultSet.getDate(columns[5]).toLocalDate(),
+                                 resultSet.getBoolean(columns[6]),
+                                 resultSet.getString(columns[7]));
     }
 
-    private BrokenItem brokenItemFromResultSet(ResultSet resultSet) throws SQLException {
-        Hut hut = hutFromId(resultSet.getInt("broken_items.hut_id"));
-        return new BrokenItem(resultSet.getInt("broken_items.id"),
+    private BrokenItem brokenItemFromResultSet(ResultSet resultSet, int[] columns) throws SQLException {
+        Hut hut = hutFromResultSet(resultSet, columns[1]);
+        return new BrokenItem(resultSet.getInt(columns[0]),
                               hut,
-                              resultSet.getString("broken_items.item"),
-                              resultSet.getDate("broken_items.date").toLocalDate(),
-                              resultSet.getBoolean("broken_items.fixed"),
-                              resultSet.getString("broken_items.comment"));
+                              resultSet.getString(columns[2]),
+                              resultSet.getDate(columns[3]).toLocalDate(),
+                              resultSet.getBoolean(columns[4]),
+                              resultSet.getString(columns[5]));
     }
 
-    private Equipment equipmentFromResultSet(ResultSet resultSet) throws SQLException {
-        Hut hut = hutFromId(resultSet.getInt("equipment.hut_id"));
-        return new Equipment(resultSet.getInt("equipment.id"),
+    private Equipment equipmentFromResultSet(ResultSet resultSet, int[] columns) throws SQLException {
+        Hut hut = hutFromResultSet(resultSet, columns[1]);
+        return new Equipment(resultSet.getInt(columns[0]),
                              hut,
-                             resultSet.getString("equipment.name"),
-                             resultSet.getDate("equipment.purchase_date").toLocalDate(),
-                             resultSet.getInt("equipment.count"));
+                             resultSet.getString(columns[2]),
+                             resultSet.getDate(columns[3]).toLocalDate(),
+                             resultSet.getInt(columns[4]));
     }
 
     private long daysInRange(LocalDate from, LocalDate to) {
@@ -594,121 +1456,44 @@ public class DataModel {
     }
 
     static {
-        String TODAY = Date.valueOf(LocalDate.now()).toString();
-        SQL_OVERVIEW_BETWEEN_DATES = "SELECT\n" +
-                                     "  huts.*, R.count, N.next, B.broken_count, F.forgotten_count\n" +
-                                     "FROM huts\n" +
-                                     "  LEFT JOIN (SELECT hut_id, date, SUM(count) AS count\n" +
-                                     "             FROM reservations\n" +
-                                     "             WHERE date BETWEEN ? AND ?\n" +
-                                     "             GROUP BY hut_id)\n" +
-                                     "    AS R ON R.hut_id = huts.id\n" +
-                                     "  LEFT JOIN (SELECT hut_id, date, MIN(date) AS next\n" +
-                                     "             FROM reservations\n" +
-                                     "             WHERE date >= '" + TODAY + "'\n" +
-                                     "             GROUP BY hut_id)\n" +
-                                     "    AS N ON N.hut_id = huts.id\n" +
-                                     "  LEFT JOIN (SELECT hut_id, date, COUNT(id) AS broken_count\n" +
-                                     "             FROM broken_items\n" +
-                                     "             WHERE date BETWEEN ? AND ?\n" +
-                                     "             GROUP BY hut_id)\n" +
-                                     "    AS B ON B.hut_id = huts.id\n" +
-                                     "  LEFT JOIN (SELECT hut_id, date, COUNT(id) AS forgotten_count\n" +
-                                     "             FROM forgotten_items\n" +
-                                     "             WHERE date BETWEEN ? AND ?\n" +
-                                     "             GROUP BY hut_id)\n" +
-                                     "    AS F ON F.hut_id = huts.id ;";
-
-        SQL_OVERVIEW_FROM_DATE = "SELECT\n" +
-                                 "  huts.*, R.count, N.next, B.broken_count, F.forgotten_count\n" +
-                                 "FROM huts\n" +
-                                 "  LEFT JOIN (SELECT hut_id, date, SUM(count) AS count\n" +
-                                 "             FROM reservations\n" +
-                                 "             WHERE date >= ?\n" +
-                                 "             GROUP BY hut_id)\n" +
-                                 "    AS R ON R.hut_id = huts.id\n" +
-                                 "  LEFT JOIN (SELECT hut_id, date, MIN(date) AS next\n" +
-                                 "             FROM reservations\n" +
-                                 "             WHERE date >= '" + TODAY + "'\n" +
-                                 "             GROUP BY hut_id)\n" +
-                                 "    AS N ON N.hut_id = huts.id\n" +
-                                 "  LEFT JOIN (SELECT hut_id, date, COUNT(id) AS broken_count\n" +
-                                 "             FROM broken_items\n" +
-                                 "             WHERE date >= ?\n" +
-                                 "             GROUP BY hut_id)\n" +
-                                 "    AS B ON B.hut_id = huts.id\n" +
-                                 "  LEFT JOIN (SELECT hut_id, date, COUNT(id) AS forgotten_count\n" +
-                                 "             FROM forgotten_items\n" +
-                                 "             WHERE date >= ?\n" +
-                                 "             GROUP BY hut_id)\n" +
-                                 "    AS F ON F.hut_id = huts.id ;";
-
-
-        SQL_OVERVIEW_TO_DATE = "SELECT\n" +
-                               "  huts.*, R.count, N.next, B.broken_count, F.forgotten_count\n" +
-                               "FROM huts\n" +
-                               "  LEFT JOIN (SELECT hut_id, date, SUM(count) AS count\n" +
-                               "             FROM reservations\n" +
-                               "             WHERE date <= ?\n" +
-                               "             GROUP BY hut_id)\n" +
-                               "    AS R ON R.hut_id = huts.id\n" +
-                               "  LEFT JOIN (SELECT hut_id, date, MIN(date) AS next\n" +
-                               "             FROM reservations\n" +
-                               "             WHERE date >= '" + TODAY + "'\n" +
-                               "             GROUP BY hut_id)\n" +
-                               "    AS N ON N.hut_id = huts.id\n" +
-                               "  LEFT JOIN (SELECT hut_id, date, COUNT(id) AS broken_count\n" +
-                               "             FROM broken_items\n" +
-                               "             WHERE date <= ?\n" +
-                               "             GROUP BY hut_id)\n" +
-                               "    AS B ON B.hut_id = huts.id\n" +
-                               "  LEFT JOIN (SELECT hut_id, date, COUNT(id) AS forgotten_count\n" +
-                               "             FROM forgotten_items\n" +
-                               "             WHERE date <= ?\n" +
-                               "             GROUP BY hut_id)\n" +
-                               "    AS F ON F.hut_id = huts.id ;";
-
-        SQL_OVERVIEW_ALL = "SELECT\n" +
-                           "  huts.*, R.count, N.next, B.broken_count, F.forgotten_count\n" +
-                           "FROM huts\n" +
-                           "  LEFT JOIN (SELECT hut_id, date, SUM(count) AS count\n" +
-                           "             FROM reservations\n" +
-                           "             GROUP BY hut_id)\n" +
-                           "    AS R ON R.hut_id = huts.id\n" +
-                           "  LEFT JOIN (SELECT hut_id, date, MIN(date) AS next\n" +
-                           "             FROM reservations\n" +
-                           "             WHERE date >= '" + TODAY + "'\n" +
-                           "             GROUP BY hut_id)\n" +
-                           "    AS N ON N.hut_id = huts.id\n" +
-                           "  LEFT JOIN (SELECT hut_id, date, COUNT(id) AS broken_count\n" +
-                           "             FROM broken_items\n" +
-                           "             GROUP BY hut_id)\n" +
-                           "    AS B ON B.hut_id = huts.id\n" +
-                           "  LEFT JOIN (SELECT hut_id, date, COUNT(id) AS forgotten_count\n" +
-                           "             FROM forgotten_items\n" +
-                           "             GROUP BY hut_id)\n" +
-                           "    AS F ON F.hut_id = huts.id ;";
-
+        // The inserts and updates are executed in batches, which the driver only rewrites into multi-row statements if
+        // they don't end with a semicolon.
         SQL_INSERT_RESERVATION =
-                "INSERT INTO reservations (hut_id, date, name, email, count, comment)\n" + "VALUES (?, ?, ?, ?, ?, ?);";
+                "INSERT INTO reservations (hut_id, date, name, email, count, comment)\n" + "VALUES (?, ?, ?, ?, ?, ?)";
 
         SQL_INSERT_FORGOTTEN_ITEM = "INSERT INTO forgotten_items\n" +
                                     "(hut_id, item, name, contact, date, delivered, comment)\n" +
-                                    "VALUES (?, ?, ?, ?, ?, ?, ?);";
+                                    "VALUES (?, ?, ?, ?, ?, ?, ?)";
 
         SQL_INSERT_BROKEN_ITEM =
-                "INSERT INTO broken_items (hut_id, item, date, fixed, comment)\n" + "VALUES (?, ?, ?, ?, ?);";
+                "INSERT INTO broken_items (hut_id, item, date, fixed, comment)\n" + "VALUES (?, ?, ?, ?, ?)";
 
         SQL_INSERT_EQUIPMENT =
                 "INSERT INTO equipment (hut_id, name, purchase_date, count)\n" +
-                "VALUES (?, ?, ?, ?);";
+                "VALUES (?, ?, ?, ?)";
+
+        SQL_UPDATE_BROKEN_ITEM_FIXED = "UPDATE broken_items SET fixed = ? WHERE id = ?";
+
+        SQL_UPDATE_FORGOTTEN_ITEM_DELIVERED = "UPDATE forgotten_items SET delivered = ? WHERE id = ?";
+
+        SQL_UPDATE_HUT_FIREWOOD = "UPDATE huts SET firewood = ? WHERE id = ?";
+
+        // See V5__item_search_indexes.sql, a full-text search must list exactly the columns of an index.
+        SEARCH_COLUMNS.put("broken_items", "broken_items.item, broken_items.comment");
+        SEARCH_COLUMNS.put("forgotten_items", "forgotten_items.item, forgotten_items.name, forgotten_items.contact, " +
+                                              "forgotten_items.comment");
+
+        SQL_OCCUPANCY_AT_DATE = "SELECT guests FROM hut_daily_occupancy WHERE hut_id = ? AND date = ?;";
+
+        SQL_ADD_OCCUPANCY = "INSERT INTO hut_daily_occupancy (hut_id, date, guests)\n" +
+                            "VALUES (?, ?, ?)\n" +
+                            "ON DUPLICATE KEY UPDATE guests = guests + VALUES(guests)";
 
-        SQL_ALL_HUTS = "SELECT * FROM huts;";
+        SQL_CLEAR_OCCUPANCY = "DELETE FROM hut_daily_occupancy;";
 
-        SQL_OCCUPANCY_AT_DATE = "SELECT SUM(reservations.count)\n" +
+        SQL_REBUILD_OCCUPANCY = "INSERT INTO hut_daily_occupancy (hut_id, date, guests)\n" +
+                                "SELECT hut_id, date, SUM(count)\n" +
                                 "FROM reservations\n" +
-                                "WHERE reservations.hut_id = ?\n" +
-                                "      AND reservations.date = ?;";
-        SQL_HUT_FOR_ID = "SELECT * FROM huts WHERE id = ?;";
+                                "GROUP BY hut_id, date;";
     }
 }
@@ -0,0 +1,130 @@
+package no.flaming_adventure.model;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The metrics of a {@link DataModel data model}: an {@link OperationMetrics} for each of its operations, created on
+ * first use, and a {@link CacheMetrics} for each of the caches it relies on.
+ *
+ * <p> Once {@link #register registered}, every metrics object is an MBean of the platform MBean server, named
+ * <code>no.flaming_adventure:type=Operation,dataModel=&lt;name&gt;,name=&lt;operation&gt;</code> or
+ * <code>no.flaming_adventure:type=Cache,dataModel=&lt;name&gt;,name=&lt;cache&gt;</code>. Operations first used
+ * after registration are registered as they are created.
+ */
+final class DataModelMetrics {
+
+    /************************************************************************
+     *
+     * Static fields
+     *
+     ************************************************************************/
+
+    static final String DOMAIN = "no.flaming_adventure";
+
+    private static final Logger LOGGER = Logger.getLogger(DataModelMetrics.class.getName());
+
+    /************************************************************************
+     *
+     * Fields
+     *
+     ************************************************************************/
+
+    private final Map<String, OperationMetrics> operations  = new ConcurrentHashMap<>();
+    private final Map<String, CacheMetrics>     caches      = new LinkedHashMap<>();
+
+    /**
+     * The name the metrics are registered with, or null if they aren't.
+     */
+    private String registeredName = null;
+
+    private final List<ObjectName> registered = new ArrayList<>();
+
+    /************************************************************************
+     *
+     * Package API
+     *
+     ************************************************************************/
+
+    /**
+     * Return the metrics of the operation with the given name, creating them on first use.
+     */
+    OperationMetrics operation(String name) {
+        OperationMetrics operation = operations.get(name);
+        return operation != null ? operation : createOperation(name);
+    }
+
+    /**
+     * Add the metrics of a cache.
+     */
+    synchronized void addCache(String name, CacheMetrics cache) {
+        caches.put(name, cache);
+        if (registeredName != null) { register("Cache", name, cache); }
+    }
+
+    /**
+     * Register every metrics object as an MBean of the platform MBean server.
+     *
+     * <p> Failures are only logged, the metrics are kept regardless.
+     *
+     * @param name the name distinguishing the data model from any others in the same process.
+     */
+    synchronized void register(String name) {
+        unregister();
+        registeredName = name;
+        operations.forEach((operation, metrics) -> register("Operation", operation, metrics));
+        caches.forEach((cache, metrics) -> register("Cache", cache, metrics));
+    }
+
+    /**
+     * Unregister the MBeans registered, if any.
+     */
+    synchronized void unregister() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName objectName : registered) {
+            try {
+                server.unregisterMBean(objectName);
+            } catch (JMException e) {
+                LOGGER.log(Level.FINE, "Failed to unregister MBean " + objectName + ".", e);
+            }
+        }
+        registered.clear();
+        registeredName = null;
+    }
+
+    /************************************************************************
+     *
+     * Private implementation
+     *
+     ************************************************************************/
+
+    private synchronized OperationMetrics createOperation(String name) {
+        OperationMetrics operation = operations.get(name);
+        if (operation == null) {
+            operation = new OperationMetrics();
+            operations.put(name, operation);
+            if (registeredName != null) { register("Operation", name, operation); }
+        }
+        return operation;
+    }
+
+    private void register(String type, String name, Object mbean) {
+        try {
+            ObjectName objectName = new ObjectName(DOMAIN + ":type=" + type + ",dataModel=" + registeredName
+                                                   + ",name=" + name);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(mbean, objectName);
+            registered.add(objectName);
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Failed to register MBean for " + name + ".", e);
+        }
+    }
+}
@@ -6,49 +6,56 @@ import java.time.LocalDate;
 
 /**
  * One or more pieces of equipment belonging to a hut.
+ *
+ * <p> The properties of equipment are only created when first asked for, see {@link Reservation}.
  */
 public class Equipment {
     /**
-     * The database ID (primary key) of the object.
-     *
-     * <p> This can contain null if the object has not been added to the database. */
-    private final IntegerProperty           id;
+     * The database ID (primary key) of the object, -1 if the object has not been added to the database.
+     */
+    private int       id;
 
     /**
      * The hut to which the equipment belongs.
      */
-    private final ObjectProperty<Hut>       hut;
+    private Hut       hut;
 
     /**
      * A short descriptive name (e.g. guitar).
      */
-    private final StringProperty            name;
+    private String    name;
 
     /**
      * The date at which the equipment was purchased. Can contain null.
      */
-    private final ObjectProperty<LocalDate> purchaseDate;
+    private LocalDate purchaseDate;
 
     /**
      * How many pieces of equipment belonging to the given hut was purchased at the given date.
      */
-    private final IntegerProperty           count;
+    private int       count;
+
+    private IntegerProperty           idProperty;
+    private ObjectProperty<Hut>       hutProperty;
+    private StringProperty            nameProperty;
+    private ObjectProperty<LocalDate> purchaseDateProperty;
+    private IntegerProperty           countProperty;
 
     /**
      * Construct an equipment object with the given fields.
      *
-     * @param id            the primary key of the database record. May be null if no database record exists.
+     * @param id            the primary key of the database record, -1 if no database record exists.
      * @param hut           the at which the equipment resides
      * @param name          a short descriptive name (e.g. canoe).
      * @param purchaseDate  the date at which the equipment was purchased.
      * @param count         a count for the given item at the given hut for the given purchase date.
      */
-    public Equipment(Integer id, Hut hut, String name, LocalDate purchaseDate, Integer count) {
-        this.id = new SimpleIntegerProperty(id);
-        this.hut = new SimpleObjectProperty<>(hut);
-        this.name = new SimpleStringProperty(name);
-        this.purchaseDate = new SimpleObjectProperty<>(purchaseDate);
-        this.count = new SimpleIntegerProperty(count);
+    public Equipment(int id, Hut hut, String name, LocalDate purchaseDate, int count) {
+        this.id = id;
+        this.hut = hut;
+        this.name = name;
+        this.purchaseDate = purchaseDate;
+        this.count = count;
     }
 
     /**
@@ -57,46 +64,65 @@ public class Equipment {
      * @param id the database ID of the matching record.
      */
     public void setId(int id) {
-        this.id.set(id);
+        if (idProperty == null) {
+            this.id = id;
+        } else {
+            idProperty.set(id);
+        }
     }
 
     public int getId() {
-        return id.get();
+        return idProperty == null ? id : idProperty.get();
     }
 
     public IntegerProperty idProperty() {
-        return id;
+        if (idProperty == null) {
+            idProperty = new SimpleIntegerProperty(this, "id", id);
+        }
+        return idProperty;
     }
 
     public Hut getHut() {
-        return hut.get();
+        return hutProperty == null ? hut : hutProperty.get();
     }
 
     public ObjectProperty<Hut> hutProperty() {
-        return hut;
+        if (hutProperty == null) {
+            hutProperty = new SimpleObjectProperty<>(this, "hut", hut);
+        }
+        return hutProperty;
     }
 
     public String getName() {
-        return name.get();
+        return nameProperty == null ? name : nameProperty.get();
     }
 
     public StringProperty nameProperty() {
-        return name;
+        if (nameProperty == null) {
+            nameProperty = new SimpleStringProperty(this, "name", name);
+        }
+        return nameProperty;
     }
 
     public LocalDate getPurchaseDate() {
-        return purchaseDate.get();
+        return purchaseDateProperty == null ? purchaseDate : purchaseDateProperty.get();
     }
 
     public ObjectProperty<LocalDate> purchaseDateProperty() {
-        return purchaseDate;
+        if (purchaseDateProperty == null) {
+            purchaseDateProperty = new SimpleObjectProperty<>(this, "purchaseDate", purchaseDate);
+        }
+        return purchaseDateProperty;
     }
 
     public int getCount() {
-        return count.get();
+        return countProperty == null ? count : countProperty.get();
     }
 
     public IntegerProperty countProperty() {
-        return count;
+        if (countProperty == null) {
+            countProperty = new SimpleIntegerProperty(this, "count", count);
+        }
+        return countProperty;
     }
 }
@@ -6,53 +6,63 @@ import java.time.LocalDate;
 
 /**
  * An item forgotten by someone at a hut.
+ *
+ * <p> The properties of a forgotten item are only created when first asked for, see {@link Reservation}.
  */
 public class ForgottenItem {
     /**
-     * The database ID (primary key) of the object.
-     *
-     * <p> This can contain null if the object has not been added to the database. */
-    private final IntegerProperty           id;
+     * The database ID (primary key) of the object, -1 if the object has not been added to the database.
+     */
+    private int       id;
 
     /**
      * The hut at which the item was forgotten.
      */
-    private final ObjectProperty<Hut>       hut;
+    private Hut       hut;
 
     /**
      * A short descriptive name for the item (e.g. jacket).
      */
-    private final StringProperty            item;
+    private String    item;
 
     /**
      * The name of the person to which the item belongs.
      */
-    private final StringProperty            name;
+    private String    name;
 
     /**
      * Contact information for the person to which the item belongs.
      */
-    private final StringProperty            contact;
+    private String    contact;
 
     /**
      * The date at which the item was forgotten. Can contain null.
      */
-    private final ObjectProperty<LocalDate> date;
+    private LocalDate date;
 
     /**
      * Whether the item has been delivered.
      */
-    private final BooleanProperty           delivered;
+    private boolean   delivered;
 
     /**
      * A comment. Can contain null.
      */
-    private final StringProperty            comment;
+    private String    comment;
+
+    private IntegerProperty           idProperty;
+    private ObjectProperty<Hut>       hutProperty;
+    private StringProperty            itemProperty;
+    private StringProperty            nameProperty;
+    private StringProperty            contactProperty;
+    private ObjectProperty<LocalDate> dateProperty;
+    private BooleanProperty           deliveredProperty;
+    private StringProperty            commentProperty;
 
     /**
      * Construct a forgotten item object with the given fields.
      *
-     * @param id        the primary key of the database record. May be null if no database record exists.
+     * @param id        the primary key of the database record, -1 if no database record exists.
      * @param hut       the hut at which the item was forgotten.
      * @param item      a short descriptive name for the forgotten item (e.g. shoe).
      * @param name      the name of the owner of the item.
@@ -61,16 +71,16 @@ public class ForgottenItem {
      * @param delivered whether the item has been delivered.
      * @param comment   a comment, can be null.
      */
-    public ForgottenItem(Integer id, Hut hut, String item, String name, String contact, LocalDate date,
-                         Boolean delivered, String comment) {
-        this.id = new SimpleIntegerProperty(id);
-        this.hut = new SimpleObjectProperty<>(hut);
-        this.item = new SimpleStringProperty(item);
-        this.name = new SimpleStringProperty(name);
-        this.contact = new SimpleStringProperty(contact);
-        this.date = new SimpleObjectProperty<>(date);
-        this.delivered = new SimpleBooleanProperty(delivered);
-        this.comment = new SimpleStringProperty(comment);
+    public ForgottenItem(int id, Hut hut, String item, String name, String contact, LocalDate date,
+                         boolean delivered, String comment) {
+        this.id = id;
+        this.hut = hut;
+        this.item = item;
+        this.name = name;
+        this.contact = contact;
+        this.date = date;
+        this.delivered = delivered;
+        this.comment = comment;
     }
 
     /**
@@ -79,70 +89,98 @@ public class ForgottenItem {
      * @param id the database ID of the matching record.
      */
     public void setId(int id) {
-        this.id.set(id);
+        if (idProperty == null) {
+            this.id = id;
+        } else {
+            idProperty.set(id);
+        }
     }
 
     public int getId() {
-        return id.get();
+        return idProperty == null ? id : idProperty.get();
     }
 
     public IntegerProperty idProperty() {
-        return id;
+        if (idProperty == null) {
+            idProperty = new SimpleIntegerProperty(this, "id", id);
+        }
+        return idProperty;
     }
 
     public Hut getHut() {
-        return hut.get();
+        return hutProperty == null ? hut : hutProperty.get();
     }
 
     public ObjectProperty<Hut> hutProperty() {
-        return hut;
+        if (hutProperty == null) {
+            hutProperty = new SimpleObjectProperty<>(this, "hut", hut);
+        }
+        return hutProperty;
     }
 
     public String getItem() {
-        return item.get();
+        return itemProperty == null ? item : itemProperty.get();
     }
 
     public StringProperty itemProperty() {
-        return item;
+        if (itemProperty == null) {
+            itemProperty = new SimpleStringProperty(this, "item", item);
+        }
+        return itemProperty;
     }
 
     public String getName() {
-        return name.get();
+        return nameProperty == null ? name : nameProperty.get();
     }
 
     public StringProperty nameProperty() {
-        return name;
+        if (nameProperty == null) {
+            nameProperty = new SimpleStringProperty(this, "name", name);
+        }
+        return nameProperty;
     }
 
     public String getContact() {
-        return contact.get();
+        return contactProperty == null ? contact : contactProperty.get();
     }
 
     public StringProperty contactProperty() {
-        return contact;
+        if (contactProperty == null) {
+            contactProperty = new SimpleStringProperty(this, "contact", contact);
+        }
+        return contactProperty;
     }
 
     public LocalDate getDate() {
-        return date.get();
+        return dateProperty == null ? date : dateProperty.get();
     }
 
     public ObjectProperty<LocalDate> dateProperty() {
-        return date;
+        if (dateProperty == null) {
+            dateProperty = new SimpleObjectProperty<>(this, "date", date);
+        }
+        return dateProperty;
     }
 
     public boolean getDelivered() {
-        return delivered.get();
+        return deliveredProperty == null ? delivered : deliveredProperty.get();
     }
 
     public BooleanProperty deliveredProperty() {
-        return delivered;
+        if (deliveredProperty == null) {
+            deliveredProperty = new SimpleBooleanProperty(this, "delivered", delivered);
+        }
+        return deliveredProperty;
     }
 
     public String getComment() {
-        return comment.get();
+        return commentProperty == null ? comment : commentProperty.get();
     }
 
     public StringProperty commentProperty() {
-        return comment;
+        if (commentProperty == null) {
+            commentProperty = new SimpleStringProperty(this, "comment", comment);
+        }
+        return commentProperty;
     }
 }
@@ -30,6 +30,22 @@ public class Hut {
      */
     private final IntegerProperty   firewood;
 
+    /**
+     * Whether the properties are being set to values loaded from the database, see {@link #isReloading()}.
+     */
+    private boolean reloading = false;
+
+    /**
+     * The number of edits of the hut queued to be written or being written, see {@link #writeQueued()}.
+     */
+    private volatile int pendingWrites = 0;
+
+    /**
+     * Incremented whenever an edit of the hut is queued or done being written, so that a reload can tell whether the
+     * values it loaded may predate an edit.
+     */
+    private volatile int writes = 0;
+
     /**
      * Constructor.
      *
@@ -85,4 +101,60 @@ public class Hut {
     public IntegerProperty firewoodProperty() {
         return firewood;
     }
+
+    /**
+     * Return whether the properties are being set to values loaded from the database.
+     *
+     * <p> Listeners saving the hut when its properties change should ignore the changes made while this is true, the
+     * values being already stored.
+     */
+    public boolean isReloading() {
+        return reloading;
+    }
+
+    /**
+     * Set the properties to those of the given hut, as loaded from the database.
+     */
+    void reload(Hut loaded) {
+        reloading = true;
+        try {
+            name.set(loaded.getName());
+            capacity.set(loaded.getCapacity());
+            firewood.set(loaded.getFirewood());
+        } finally {
+            reloading = false;
+        }
+    }
+
+    /**
+     * Record that an edit of the hut has been queued to be written, until it's {@link #writeDone() done}.
+     *
+     * <p> Edits are queued and done on a single thread, usually the JavaFX application thread.
+     */
+    void writeQueued() {
+        pendingWrites++;
+        writes++;
+    }
+
+    /**
+     * Record that a queued edit of the hut has been written, or failed to be.
+     */
+    void writeDone() {
+        pendingWrites--;
+        writes++;
+    }
+
+    /**
+     * Return whether an edit of the hut is queued to be written or being written.
+     */
+    boolean hasPendingWrites() {
+        return pendingWrites > 0;
+    }
+
+    /**
+     * Return the number of times an edit of the hut has been queued or done being written.
+     */
+    int writes() {
+        return writes;
+    }
 }
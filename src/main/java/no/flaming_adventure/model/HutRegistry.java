@@ -0,0 +1,231 @@
+package no.flaming_adventure.model;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The canonical instances of the huts, shared by every record and view retrieved through a {@link DataModel}.
+ *
+ * <p> The huts are loaded once and only reloaded when a probe of the <code>huts</code> table, a count and checksum of
+ * its rows, says they have changed, or when a record refers to a hut that isn't known yet. Reloading updates the
+ * existing instances in place rather than replacing them, so that an edit of a hut is seen everywhere it's shown.
+ * Since the huts are displayed, their properties are only read and updated through the executor given on
+ * construction, and {@link Hut#isReloading() flagged} so that the update isn't taken for an edit and saved back.
+ *
+ * <p> A hut with an edit still to be written, or written since the huts were loaded, isn't updated, as the loaded
+ * values may predate the edit. The huts are reloaded again the next time they're retrieved instead.
+ *
+ * <p> The registry can be used from several threads at the same time.
+ */
+final class HutRegistry {
+
+    /************************************************************************
+     *
+     * Static fields
+     *
+     ************************************************************************/
+
+    /*language=MySQL*/ private static final String SQL_ALL_HUTS = "SELECT * FROM huts ORDER BY id;";
+
+    /**
+     * A probe changing whenever a hut is added, removed or modified. It only reads a few bytes per hut, and there are
+     * only ever a few dozen huts.
+     */
+    /*language=MySQL*/ private static final String SQL_PROBE =
+            "SELECT COUNT(*), BIT_XOR(CRC32(CONCAT_WS(',', id, name, capacity, firewood))) FROM huts;";
+
+    private static final Logger LOGGER = Logger.getLogger(HutRegistry.class.getName());
+
+    /************************************************************************
+     *
+     * Fields
+     *
+     ************************************************************************/
+
+    private final Executor updateExecutor;
+
+    private final RowMapper<Hut> hutMapper = new RowMapper<>(
+            HutRegistry::hutFromResultSet, "huts.id", "huts.name", "huts.capacity", "huts.firewood");
+
+    private final Map<Integer, Hut> huts = new ConcurrentHashMap<>();
+
+    /**
+     * The huts ordered by ID.
+     */
+    private volatile List<Hut> hutList = Collections.emptyList();
+
+    /**
+     * The result of the probe when the huts were last loaded, or null if they never were.
+     */
+    private volatile String version = null;
+
+    /**
+     * Probes finding the huts unchanged are counted as hits, reloads as misses.
+     */
+    private final CacheMetrics metrics = new CacheMetrics();
+
+    /************************************************************************
+     *
+     * Constructors
+     *
+     ************************************************************************/
+
+    /**
+     * @param updateExecutor executor through which the properties of known huts are updated when reloaded, e.g.
+     *                       <code>Platform::runLater</code>.
+     */
+    HutRegistry(Executor updateExecutor) {
+        this.updateExecutor = updateExecutor;
+    }
+
+    /************************************************************************
+     *
+     * Package API
+     *
+     ************************************************************************/
+
+    /**
+     * Return every hut ordered by ID, reloading them first if the probe says they have changed.
+     *
+     * @param connection the connection to probe and reload the huts on.
+     * @return an unmodifiable list of the canonical huts.
+     * @throws SQLException if an SQLException occurred.
+     */
+    List<Hut> getHuts(PooledConnection connection) throws SQLException {
+        ResultSet resultSet = connection.prepareStatement(SQL_PROBE).executeQuery();
+        resultSet.next();
+        String probed = resultSet.getLong(1) + ":" + resultSet.getLong(2);
+        if (! probed.equals(version)) {
+            reload(connection.getConnection(), probed);
+        } else {
+            metrics.hit();
+        }
+        return hutList;
+    }
+
+    /**
+     * Return the hut with the given ID, reloading the huts if it isn't known.
+     *
+     * <p> The huts are reloaded with a statement of its own, so this can be called while reading another result set
+     * on the same connection.
+     *
+     * @param id            the ID of the hut.
+     * @param connection    the connection to reload the huts on, if needed.
+     * @return the canonical hut.
+     * @throws SQLException if there's no such hut or an SQLException occurred.
+     */
+    Hut get(int id, Connection connection) throws SQLException {
+        Hut hut = huts.get(id);
+        if (hut == null) {
+            reload(connection, null);
+            hut = huts.get(id);
+            if (hut == null) { throw new SQLException("No hut with ID " + id + "."); }
+        }
+        return hut;
+    }
+
+    /**
+     * Make the next {@link #getHuts} reload the huts whether or not the probe says they have changed, e.g. after an
+     * edit of a hut failed to be written, so that the edited value is replaced by the stored one.
+     */
+    void invalidate() {
+        version = null;
+    }
+
+    CacheMetrics metrics() {
+        return metrics;
+    }
+
+    /************************************************************************
+     *
+     * Private implementation
+     *
+     ************************************************************************/
+
+    /**
+     * Load every hut, adding the new ones and updating the known ones in place.
+     *
+     * @param probed the result of the probe, or null if the version should be probed again next time.
+     */
+    private synchronized void reload(Connection connection, String probed) throws SQLException {
+        metrics.miss();
+        // Taken before loading, an edit written since may or may not have been loaded.
+        Map<Integer, Integer> writes = new HashMap<>();
+        for (Hut known : huts.values()) {
+            writes.put(known.getId(), known.writes());
+        }
+
+        List<Hut> loaded = new ArrayList<>();
+        // Preparing the statement and executing it.
+        OperationMetrics.countRoundTrips(2);
+        try (PreparedStatement stmt = connection.prepareStatement(SQL_ALL_HUTS);
+             ResultSet resultSet = stmt.executeQuery()) {
+            int[] columns = hutMapper.columnsFor(SQL_ALL_HUTS, resultSet);
+            while (resultSet.next()) {
+                loaded.add(hutMapper.read(resultSet, columns));
+            }
+        }
+        LOGGER.log(Level.FINE, "Loaded {0} hut(s).", loaded.size());
+
+        List<Hut> list = new ArrayList<>();
+        List<Runnable> updates = new ArrayList<>();
+        for (Hut hut : loaded) {
+            Hut known = huts.putIfAbsent(hut.getId(), hut);
+            if (known == null) {
+                list.add(hut);
+            } else {
+                list.add(known);
+                int knownWrites = writes.get(known.getId());
+                updates.add(() -> update(known, hut, knownWrites));
+            }
+        }
+        // Removed huts are kept in the map, records referring to them may still be around.
+        hutList = Collections.unmodifiableList(list);
+        version = probed;
+        // After setting the version, which the updates may reset.
+        if (! updates.isEmpty()) {
+            updateExecutor.execute(() -> updates.forEach(Runnable::run));
+        }
+    }
+
+    /**
+     * Set the properties of a known hut to the values loaded, run through the update executor.
+     *
+     * <p> If the hut has been edited since the number of its writes was taken before loading, or an edit is still to
+     * be written, it's left as it is and the huts are reloaded again the next time they're retrieved.
+     *
+     * @param writes the number of {@link Hut#writes() writes} of the hut before loading.
+     */
+    private void update(Hut known, Hut loaded, int writes) {
+        if (sameValues(known, loaded)) { return; }
+        if (known.hasPendingWrites() || known.writes() != writes) {
+            LOGGER.log(Level.FINE, "Deferred the reload of hut {0}, which has been edited.", known.getId());
+            version = null;
+            return;
+        }
+        known.reload(loaded);
+    }
+
+    private static boolean sameValues(Hut a, Hut b) {
+        return a.getName().equals(b.getName()) && a.getCapacity() == b.getCapacity()
+               && a.getFirewood() == b.getFirewood();
+    }
+
+    private static Hut hutFromResultSet(ResultSet resultSet, int[] columns) throws SQLException {
+        return new Hut(resultSet.getInt(columns[0]),
+                       resultSet.getString(columns[1]),
+                       resultSet.getInt(columns[2]),
+                       resultSet.getInt(columns[3]));
+    }
+}
@@ -0,0 +1,171 @@
+package no.flaming_adventure.model;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The sort key of a paged query.
+ *
+ * <p> A keyset is created from an SQL ordering as produced by {@link no.flaming_adventure.util.SQLSortPolicy}, with
+ * the table's primary key appended as a tiebreaker so that every row has a unique position. It can then generate
+ * predicates selecting the rows before or after a given key, which is what allows {@link DataModel} to seek directly
+ * to a page instead of having the database skip past every preceding row.
+ *
+ * <p> Comparisons follow MySQL's ordering of <code>NULL</code> values, which sorts before everything else in
+ * ascending order and after everything else in descending order.
+ */
+final class Keyset {
+
+    /************************************************************************
+     *
+     * Fields
+     *
+     ************************************************************************/
+
+    private final List<String>  columns     = new ArrayList<>();
+    private final List<Boolean> ascending   = new ArrayList<>();
+
+    /************************************************************************
+     *
+     * Constructors
+     *
+     ************************************************************************/
+
+    /**
+     * Create a keyset from the given ordering.
+     *
+     * @param idColumn  the fully qualified primary key column of the table, used as tiebreaker.
+     * @param orderBy   parameter to the <code>ORDER BY</code> clause, can optionally be <code>null</code>.
+     */
+    Keyset(String idColumn, String orderBy) {
+        if (orderBy != null) {
+            for (String term : orderBy.split(",")) {
+                String[] parts = term.trim().split("\\s+");
+                if (parts[0].equals(idColumn)) { continue; }
+                columns.add(parts[0]);
+                ascending.add(parts.length < 2 || !parts[1].equalsIgnoreCase("DESC"));
+            }
+        }
+        columns.add(idColumn);
+        ascending.add(true);
+    }
+
+    /************************************************************************
+     *
+     * Package API
+     *
+     ************************************************************************/
+
+    /**
+     * Return the ordering of the keyset.
+     *
+     * @param reverse whether to return the reverse ordering.
+     * @return a parameter to an SQL <code>ORDER BY</code> clause.
+     */
+    String ordering(boolean reverse) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) { builder.append(", "); }
+            builder.append(columns.get(i))
+                   .append(ascending.get(i) != reverse ? " ASC" : " DESC");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Return the indexes of the keyset's columns in the given result set, so that keys can be read without looking
+     * the columns up on every row.
+     *
+     * @param resultSet a result set containing all the columns of the keyset.
+     * @return the column indexes, to be passed to {@link #readKey}.
+     * @throws SQLException if a column is missing from the result set.
+     */
+    int[] columnsOf(ResultSet resultSet) throws SQLException {
+        int[] indexes = new int[columns.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = resultSet.findColumn(columns.get(i));
+        }
+        return indexes;
+    }
+
+    /**
+     * Read the key of the current row of the given result set.
+     *
+     * @param resultSet a result set containing all the columns of the keyset.
+     * @param indexes   the indexes of the columns, as returned by {@link #columnsOf}.
+     * @return the key of the current row.
+     * @throws SQLException if an SQLException occurred.
+     */
+    Object[] readKey(ResultSet resultSet, int[] indexes) throws SQLException {
+        Object[] key = new Object[indexes.length];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = resultSet.getObject(indexes[i]);
+        }
+        return key;
+    }
+
+    /**
+     * Generate an SQL predicate matching every row positioned after (or before) the given key.
+     *
+     * @param key       a key previously returned by {@link #readKey}.
+     * @param after     whether to match the rows after the key rather than those before it.
+     * @param inclusive whether the row with the given key itself should match.
+     * @param params    list to which the values of the predicate's parameters are appended, in order.
+     * @return a string containing an SQL predicate (the part following a <code>WHERE</code> clause).
+     */
+    String predicate(Object[] key, boolean after, boolean inclusive, List<Object> params) {
+        // (c0 > k0) OR (c0 = k0 AND c1 > k1) OR ... with the comparisons adjusted for direction and NULL values.
+        StringBuilder builder = new StringBuilder("(");
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) { builder.append(" OR "); }
+            builder.append('(');
+            for (int j = 0; j < i; j++) {
+                builder.append(equal(j, key[j], params)).append(" AND ");
+            }
+            builder.append(beyond(i, key[i], ascending.get(i) == after, params)).append(')');
+        }
+        if (inclusive) {
+            builder.append(" OR (");
+            for (int j = 0; j < columns.size(); j++) {
+                if (j > 0) { builder.append(" AND "); }
+                builder.append(equal(j, key[j], params));
+            }
+            builder.append(')');
+        }
+        return builder.append(')').toString();
+    }
+
+    /************************************************************************
+     *
+     * Private implementation
+     *
+     ************************************************************************/
+
+    private String equal(int i, Object value, List<Object> params) {
+        if (value == null) {
+            return columns.get(i) + " IS NULL";
+        }
+        params.add(value);
+        return columns.get(i) + " = ?";
+    }
+
+    /**
+     * Generate a predicate matching the values of the given column that sort after (or before) the given value in
+     * ascending order.
+     */
+    private String beyond(int i, Object value, boolean greater, List<Object> params) {
+        String column = columns.get(i);
+        if (value == null) {
+            // NULL sorts first, so every other value is greater and none is smaller.
+            return greater ? column + " IS NOT NULL" : "FALSE";
+        }
+        params.add(value);
+        if (greater) {
+            return column + " > ?";
+        } else {
+            return '(' + column + " < ? OR " + column + " IS NULL)";
+        }
+    }
+}
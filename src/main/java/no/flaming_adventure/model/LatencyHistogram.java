@@ -0,0 +1,144 @@
+package no.flaming_adventure.model;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of durations, from which percentiles can be read.
+ *
+ * <p> Durations are counted in buckets of microseconds. Durations below {@link #SUB_BUCKETS} microseconds have a
+ * bucket each, and every power of two above is split into {@link #SUB_BUCKETS} buckets of equal width, so a
+ * percentile is never off by more than one part in {@link #SUB_BUCKETS}. The buckets cover durations of up to about
+ * a month with a fixed array of counters, and recording a duration only increments one of them, so the histogram can
+ * be recorded to from several threads at the same time without locking.
+ *
+ * <p> The values read while durations are being recorded are only approximately consistent with each other.
+ */
+final class LatencyHistogram {
+
+    /************************************************************************
+     *
+     * Static fields
+     *
+     ************************************************************************/
+
+    private static final int SUB_BITS = 4;
+
+    /**
+     * The number of buckets each power of two is split into.
+     */
+    static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    /**
+     * The exponent of the highest power of two with buckets of its own, longer durations are counted in the last one.
+     */
+    private static final int MAX_EXPONENT = 41;
+
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_BUCKETS;
+
+    /************************************************************************
+     *
+     * Fields
+     *
+     ************************************************************************/
+
+    private final AtomicLongArray   buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder         count   = new LongAdder();
+    private final LongAdder         total   = new LongAdder();
+    private final LongAccumulator   max     = new LongAccumulator(Math::max, 0);
+
+    /************************************************************************
+     *
+     * Package API
+     *
+     ************************************************************************/
+
+    void record(long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(Math.max(0, nanos));
+        buckets.incrementAndGet(index(micros));
+        count.increment();
+        total.add(micros);
+        max.accumulate(micros);
+    }
+
+    long getCount() {
+        return count.sum();
+    }
+
+    double getMeanMillis() {
+        long n = count.sum();
+        return n == 0 ? 0 : total.sum() / 1000.0 / n;
+    }
+
+    double getMaxMillis() {
+        return max.get() / 1000.0;
+    }
+
+    /**
+     * Return the duration that the given fraction of the recorded durations didn't exceed, rounded up to the end of
+     * its bucket.
+     *
+     * @param fraction the fraction, e.g. <code>0.95</code> for the 95th percentile.
+     * @return the duration in milliseconds, or zero if nothing has been recorded.
+     */
+    double getPercentileMillis(double fraction) {
+        long[] counts = new long[BUCKETS];
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            n += counts[i];
+        }
+        if (n == 0) { return 0; }
+
+        long rank = Math.max(1, (long) Math.ceil(fraction * n));
+        long seen = 0;
+        int i = 0;
+        while (i < BUCKETS - 1 && (seen += counts[i]) < rank) {
+            i++;
+        }
+        // The end of the bucket may lie beyond the longest duration actually recorded.
+        return Math.min(lowerBound(i + 1) - 1, max.get()) / 1000.0;
+    }
+
+    /**
+     * Forget every recorded duration.
+     *
+     * <p> Durations recorded while the histogram is being reset may be partly kept.
+     */
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        total.reset();
+        max.reset();
+    }
+
+    /************************************************************************
+     *
+     * Private implementation
+     *
+     ************************************************************************/
+
+    /**
+     * Return the bucket of the given duration in microseconds.
+     */
+    private static int index(long micros) {
+        if (micros < SUB_BUCKETS) { return (int) micros; }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int index = (exponent - SUB_BITS + 1) * SUB_BUCKETS
+                    + (int) ((micros >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1));
+        return Math.min(index, BUCKETS - 1);
+    }
+
+    /**
+     * Return the shortest duration in microseconds counted in the given bucket.
+     */
+    private static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) { return index; }
+        int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+        return (long) (SUB_BUCKETS + index % SUB_BUCKETS) << (exponent - SUB_BITS);
+    }
+}
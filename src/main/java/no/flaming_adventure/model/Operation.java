@@ -0,0 +1,112 @@
+package no.flaming_adventure.model;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A cancellable data model operation.
+ *
+ * <p> While an operation runs it is bound to the current thread, and every statement handed out by a
+ * {@link PooledConnection} on that thread is tracked by the operation until the connection is returned to the pool.
+ * Cancelling the operation cancels the statement currently being executed, if any, through
+ * {@link Statement#cancel()}.
+ */
+final class Operation {
+
+    /************************************************************************
+     *
+     * Static fields
+     *
+     ************************************************************************/
+
+    private static final ThreadLocal<Operation> CURRENT = new ThreadLocal<>();
+
+    private static final Logger LOGGER = Logger.getLogger(Operation.class.getName());
+
+    /************************************************************************
+     *
+     * Fields
+     *
+     ************************************************************************/
+
+    private boolean     cancelled   = false;
+    private Statement   statement   = null;
+
+    /************************************************************************
+     *
+     * Package API
+     *
+     ************************************************************************/
+
+    /**
+     * Run the given query as this operation on the current thread.
+     *
+     * @param query the query to run.
+     * @return the result of the query.
+     * @throws SQLException if an SQLException occurred or the operation was cancelled.
+     */
+    <T> T run(AsyncDataModel.Query<T> query, DataModel dataModel) throws SQLException {
+        Operation previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            checkCancelled();
+            return query.run(dataModel);
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+
+    synchronized void cancel() {
+        if (cancelled) { return; }
+        cancelled = true;
+        if (statement != null) {
+            try {
+                statement.cancel();
+            } catch (SQLException e) {
+                LOGGER.log(Level.FINE, "Unable to cancel statement.", e);
+            }
+        }
+    }
+
+    /**
+     * Track the given statement as the one about to be executed by the current operation, if any.
+     *
+     * @param statement a statement on a borrowed connection.
+     * @throws SQLException if the current operation has been cancelled.
+     */
+    static void track(Statement statement) throws SQLException {
+        Operation operation = CURRENT.get();
+        if (operation != null) { operation.setStatement(statement); }
+    }
+
+    /**
+     * Stop tracking the given statement, which must not be cancelled once its connection is back in the pool.
+     *
+     * @param statement a statement on a connection about to be returned.
+     */
+    static void untrack(Statement statement) {
+        Operation operation = CURRENT.get();
+        if (operation != null) { operation.clearStatement(statement); }
+    }
+
+    /************************************************************************
+     *
+     * Private implementation
+     *
+     ************************************************************************/
+
+    private synchronized void setStatement(Statement statement) throws SQLException {
+        checkCancelled();
+        this.statement = statement;
+    }
+
+    private synchronized void clearStatement(Statement statement) {
+        if (this.statement == statement) { this.statement = null; }
+    }
+
+    private synchronized void checkCancelled() throws SQLException {
+        if (cancelled) { throw new SQLException("The operation was cancelled."); }
+    }
+}
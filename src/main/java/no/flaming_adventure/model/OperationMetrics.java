@@ -0,0 +1,142 @@
+package no.flaming_adventure.model;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of a {@link DataModel data model} operation: the duration of its calls, the records they read or
+ * wrote and the number of statements they sent to the server.
+ *
+ * <p> Statements are counted per thread, by {@link #countRoundTrips} being called wherever one is sent. A call is
+ * charged with the statements sent on its thread between its start and its end. Recording a call only updates a few
+ * counters, so the metrics can be recorded to from several threads at the same time and are kept all the time.
+ */
+final class OperationMetrics implements OperationMetricsMBean {
+
+    /************************************************************************
+     *
+     * Static fields
+     *
+     ************************************************************************/
+
+    /**
+     * The number of statements sent to the server by the current thread.
+     */
+    private static final ThreadLocal<long[]> ROUND_TRIPS = ThreadLocal.withInitial(() -> new long[1]);
+
+    /************************************************************************
+     *
+     * Fields
+     *
+     ************************************************************************/
+
+    private final LatencyHistogram  latency         = new LatencyHistogram();
+    private final LongAdder         errors          = new LongAdder();
+    private final LongAdder         rows            = new LongAdder();
+    private final LongAdder         roundTrips      = new LongAdder();
+    private final LongAccumulator   maxRoundTrips   = new LongAccumulator(Math::max, 0);
+
+    /************************************************************************
+     *
+     * Public API
+     *
+     ************************************************************************/
+
+    @Override public long getCount() {
+        return latency.getCount();
+    }
+
+    @Override public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override public double getMeanMillis() {
+        return latency.getMeanMillis();
+    }
+
+    @Override public double getP50Millis() {
+        return latency.getPercentileMillis(0.50);
+    }
+
+    @Override public double getP95Millis() {
+        return latency.getPercentileMillis(0.95);
+    }
+
+    @Override public double getP99Millis() {
+        return latency.getPercentileMillis(0.99);
+    }
+
+    @Override public double getMaxMillis() {
+        return latency.getMaxMillis();
+    }
+
+    @Override public long getRows() {
+        return rows.sum();
+    }
+
+    @Override public double getMeanRows() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) rows.sum() / count;
+    }
+
+    @Override public long getRoundTrips() {
+        return roundTrips.sum();
+    }
+
+    @Override public double getMeanRoundTrips() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) roundTrips.sum() / count;
+    }
+
+    @Override public long getMaxRoundTrips() {
+        return maxRoundTrips.get();
+    }
+
+    @Override public void reset() {
+        latency.reset();
+        errors.reset();
+        rows.reset();
+        roundTrips.reset();
+        maxRoundTrips.reset();
+    }
+
+    /************************************************************************
+     *
+     * Package API
+     *
+     ************************************************************************/
+
+    /**
+     * Count statements sent to the server by the current thread.
+     *
+     * @param statements the number of statements, each waiting for a response from the server.
+     */
+    static void countRoundTrips(int statements) {
+        ROUND_TRIPS.get()[0] += statements;
+    }
+
+    /**
+     * Return the number of statements sent to the server by the current thread so far, to be passed to
+     * {@link #record} at the end of a call.
+     */
+    static long roundTrips() {
+        return ROUND_TRIPS.get()[0];
+    }
+
+    /**
+     * Record a call.
+     *
+     * @param startNanos        the {@link System#nanoTime()} at the start of the call.
+     * @param startRoundTrips   the {@link #roundTrips()} at the start of the call.
+     * @param rows              the number of records read or written by the call.
+     * @param failed            whether the call threw an exception.
+     */
+    void record(long startNanos, long startRoundTrips, long rows, boolean failed) {
+        latency.record(System.nanoTime() - startNanos);
+        long statements = roundTrips() - startRoundTrips;
+        roundTrips.add(statements);
+        maxRoundTrips.accumulate(statements);
+        this.rows.add(rows);
+        if (failed) { errors.increment(); }
+    }
+}
@@ -0,0 +1,54 @@
+package no.flaming_adventure.model;
+
+/**
+ * Management interface of the metrics of a {@link DataModel data model} operation, i.e. one of its public methods.
+ *
+ * <p> The figures are cumulative since the data model was created or the metrics were last reset. Durations are
+ * measured from the call to the return of the method, including the wait for a pooled connection.
+ *
+ * @see DataModel#registerMBeans(String)
+ */
+public interface OperationMetricsMBean {
+
+    /**
+     * @return the number of calls that have returned, successfully or not.
+     */
+    long getCount();
+
+    /**
+     * @return the number of calls that have thrown an exception.
+     */
+    long getErrors();
+
+    double getMeanMillis();
+
+    /**
+     * @return the median duration of a call.
+     */
+    double getP50Millis();
+
+    double getP95Millis();
+
+    double getP99Millis();
+
+    double getMaxMillis();
+
+    /**
+     * @return the number of records read or written by the calls, e.g. the rows of the pages retrieved.
+     */
+    long getRows();
+
+    double getMeanRows();
+
+    /**
+     * @return the number of statements sent to the server by the calls, including the preparation of statements not
+     *         yet cached and the statements beginning and ending transactions.
+     */
+    long getRoundTrips();
+
+    double getMeanRoundTrips();
+
+    long getMaxRoundTrips();
+
+    void reset();
+}
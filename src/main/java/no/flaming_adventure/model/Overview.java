@@ -0,0 +1,151 @@
+package no.flaming_adventure.model;
+
+import javafx.collections.ObservableList;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The overview of every hut for a date range, as retrieved by {@link DataModel#overview(LocalDate, LocalDate)}.
+ *
+ * <p> The overview is a {@link DataListener} that patches its rows in place as records are added, so it stays
+ * current without being queried again for as long as the date range stays the same. It should only be notified on
+ * the thread its rows are displayed from.
+ */
+public class Overview implements DataListener {
+
+    /************************************************************************
+     *
+     * Fields
+     *
+     ************************************************************************/
+
+    private final LocalDate                     fromDate;
+    private final LocalDate                     toDate;
+    private final LocalDate                     today;
+    private final ObservableList<OverviewRow>   rows;
+
+    /************************************************************************
+     *
+     * Constructors
+     *
+     ************************************************************************/
+
+    /**
+     * @param fromDate  the start of the date range, can optionally be <code>null</code>.
+     * @param toDate    the end of the date range, can optionally be <code>null</code>.
+     * @param today     the date the next reservations were looked for from.
+     * @param rows      a row for every hut.
+     */
+    Overview(LocalDate fromDate, LocalDate toDate, LocalDate today, ObservableList<OverviewRow> rows) {
+        this.fromDate   = fromDate;
+        this.toDate     = toDate;
+        this.today      = today;
+        this.rows       = rows;
+    }
+
+    /************************************************************************
+     *
+     * Public API
+     *
+     ************************************************************************/
+
+    public ObservableList<OverviewRow> getRows() {
+        return rows;
+    }
+
+    /**
+     * Return whether the overview is current for the given date range.
+     *
+     * <p> An overview retrieved on an earlier day is never current, as its next reservations may have passed.
+     */
+    public boolean isCurrentFor(LocalDate fromDate, LocalDate toDate) {
+        return today.equals(LocalDate.now())
+               && (this.fromDate == null ? fromDate == null : this.fromDate.equals(fromDate))
+               && (this.toDate == null ? toDate == null : this.toDate.equals(toDate));
+    }
+
+    /**
+     * Update the rows in place with the values of the given rows, retrieved again for the same date range, e.g. after
+     * other clients have added records. Only the values that differ are set.
+     *
+     * @param rows the rows retrieved again.
+     * @return false if the given rows are for other huts, in which case nothing is updated.
+     */
+    public boolean update(List<OverviewRow> rows) {
+        if (rows.size() != this.rows.size()) { return false; }
+        for (OverviewRow row : rows) {
+            if (rowFor(row.getHut()) == null) { return false; }
+        }
+
+        for (OverviewRow row : rows) {
+            OverviewRow displayed = rowFor(row.getHut());
+            if (displayed.getBrokenCount() != row.getBrokenCount()) {
+                displayed.setBrokenCount(row.getBrokenCount());
+            }
+            if (displayed.getForgottenCount() != row.getForgottenCount()) {
+                displayed.setForgottenCount(row.getForgottenCount());
+            }
+            if (Double.compare(displayed.getOccupancy(), row.getOccupancy()) != 0) {
+                displayed.setOccupancy(row.getOccupancy());
+            }
+            if (! Objects.equals(displayed.getNextReservation(), row.getNextReservation())) {
+                displayed.setNextReservation(row.getNextReservation());
+            }
+        }
+        return true;
+    }
+
+    @Override public void reservationAdded(Reservation reservation) {
+        OverviewRow row = rowFor(reservation.getHut());
+        if (row == null) { return; }
+
+        LocalDate date = reservation.getDate();
+        if (inRange(date) && fromDate != null && toDate != null) {
+            long days = ChronoUnit.DAYS.between(fromDate, toDate) + 1;
+            long totalCapacity = days * row.getHut().getCapacity();
+            if (totalCapacity > 0) {
+                double occupancy = Double.isNaN(row.getOccupancy()) ? 0 : row.getOccupancy();
+                row.setOccupancy(occupancy + (double) reservation.getCount() / totalCapacity);
+            }
+        }
+
+        LocalDate next = row.getNextReservation();
+        if (! date.isBefore(today) && (next == null || date.isBefore(next))) {
+            row.setNextReservation(date);
+        }
+    }
+
+    @Override public void brokenItemAdded(BrokenItem brokenItem) {
+        OverviewRow row = rowFor(brokenItem.getHut());
+        if (row != null && inRange(brokenItem.getDate())) {
+            row.setBrokenCount(row.getBrokenCount() + 1);
+        }
+    }
+
+    @Override public void forgottenItemAdded(ForgottenItem forgottenItem) {
+        OverviewRow row = rowFor(forgottenItem.getHut());
+        if (row != null && inRange(forgottenItem.getDate())) {
+            row.setForgottenCount(row.getForgottenCount() + 1);
+        }
+    }
+
+    /************************************************************************
+     *
+     * Private implementation
+     *
+     ************************************************************************/
+
+    private OverviewRow rowFor(Hut hut) {
+        for (OverviewRow row : rows) {
+            if (row.getHut().getId() == hut.getId()) { return row; }
+        }
+        return null;
+    }
+
+    private boolean inRange(LocalDate date) {
+        return (fromDate == null || ! date.isBefore(fromDate)) && (toDate == null || ! date.isAfter(toDate));
+    }
+}
@@ -3,12 +3,19 @@ package no.flaming_adventure.model;
 import javafx.beans.Observable;
 import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.util.Callback;
 
 import java.time.LocalDate;
 
+/**
+ * A row of the overview, summarizing a single hut.
+ *
+ * <p> The properties of a row are only created when first asked for, see {@link Reservation}.
+ */
 public class OverviewRow {
 
     public static class Extractor implements Callback<OverviewRow, Observable[]> {
@@ -17,58 +24,130 @@ public class OverviewRow {
         }
     }
 
-    private final ObjectProperty<Hut>           hut;
-    private final IntegerProperty               brokenCount;
-    private final IntegerProperty               forgottenCount;
-    private final ObjectProperty<Number>        occupancy;
-    private final ObjectProperty<LocalDate>     nextReservation;
-
-    public OverviewRow(Hut hut, Integer brokenCount, Integer forgottenCount, Number occupancy,
-                       LocalDate nextReservation) {
-        this.hut = new SimpleObjectProperty<>(hut);
-        this.brokenCount = new SimpleIntegerProperty(brokenCount);
-        this.forgottenCount = new SimpleIntegerProperty(forgottenCount);
-        this.occupancy = new SimpleObjectProperty<>(occupancy);
-        this.nextReservation = new SimpleObjectProperty<>(nextReservation);
+    private Hut         hut;
+    private int         brokenCount;
+    private int         forgottenCount;
+
+    /**
+     * The share of the hut's capacity reserved in the overview's date range, NaN if unknown.
+     */
+    private double      occupancy;
+
+    private LocalDate   nextReservation;
+
+    private ObjectProperty<Hut>             hutProperty;
+    private IntegerProperty                 brokenCountProperty;
+    private IntegerProperty                 forgottenCountProperty;
+    private ReadOnlyObjectWrapper<Number>   occupancyProperty;
+    private ObjectProperty<LocalDate>       nextReservationProperty;
+
+    /**
+     * @param occupancy the share of the hut's capacity reserved, NaN if unknown.
+     */
+    public OverviewRow(Hut hut, int brokenCount, int forgottenCount, double occupancy, LocalDate nextReservation) {
+        this.hut = hut;
+        this.brokenCount = brokenCount;
+        this.forgottenCount = forgottenCount;
+        this.occupancy = occupancy;
+        this.nextReservation = nextReservation;
     }
 
     public Hut getHut() {
-        return hut.get();
+        return hutProperty == null ? hut : hutProperty.get();
     }
 
     public ObjectProperty<Hut> hutProperty() {
-        return hut;
+        if (hutProperty == null) {
+            hutProperty = new SimpleObjectProperty<>(this, "hut", hut);
+        }
+        return hutProperty;
     }
 
     public int getBrokenCount() {
-        return brokenCount.get();
+        return brokenCountProperty == null ? brokenCount : brokenCountProperty.get();
+    }
+
+    public void setBrokenCount(int brokenCount) {
+        if (brokenCountProperty == null) {
+            this.brokenCount = brokenCount;
+        } else {
+            brokenCountProperty.set(brokenCount);
+        }
     }
 
     public IntegerProperty brokenCountProperty() {
-        return brokenCount;
+        if (brokenCountProperty == null) {
+            brokenCountProperty = new SimpleIntegerProperty(this, "brokenCount", brokenCount);
+        }
+        return brokenCountProperty;
     }
 
     public int getForgottenCount() {
-        return forgottenCount.get();
+        return forgottenCountProperty == null ? forgottenCount : forgottenCountProperty.get();
     }
 
-    public IntegerProperty forgottenCountProperty() {
-        return forgottenCount;
+    public void setForgottenCount(int forgottenCount) {
+        if (forgottenCountProperty == null) {
+            this.forgottenCount = forgottenCount;
+        } else {
+            forgottenCountProperty.set(forgottenCount);
+        }
     }
 
-    public Number getOccupancy() {
-        return occupancy.get();
+    public IntegerProperty forgottenCountProperty() {
+        if (forgottenCountProperty == null) {
+            forgottenCountProperty = new SimpleIntegerProperty(this, "forgottenCount", forgottenCount);
+        }
+        return forgottenCountProperty;
     }
 
-    public ObjectProperty<Number> occupancyProperty() {
+    /**
+     * @return the share of the hut's capacity reserved, NaN if unknown.
+     */
+    public double getOccupancy() {
         return occupancy;
     }
 
+    /**
+     * @param occupancy the share of the hut's capacity reserved, NaN if unknown.
+     */
+    public void setOccupancy(double occupancy) {
+        this.occupancy = occupancy;
+        if (occupancyProperty != null) {
+            occupancyProperty.set(boxOccupancy());
+        }
+    }
+
+    /**
+     * Return the occupancy as a property for display, holding null rather than NaN if unknown.
+     */
+    public ReadOnlyObjectProperty<Number> occupancyProperty() {
+        if (occupancyProperty == null) {
+            occupancyProperty = new ReadOnlyObjectWrapper<>(this, "occupancy", boxOccupancy());
+        }
+        return occupancyProperty.getReadOnlyProperty();
+    }
+
     public LocalDate getNextReservation() {
-        return nextReservation.get();
+        return nextReservationProperty == null ? nextReservation : nextReservationProperty.get();
+    }
+
+    public void setNextReservation(LocalDate nextReservation) {
+        if (nextReservationProperty == null) {
+            this.nextReservation = nextReservation;
+        } else {
+            nextReservationProperty.set(nextReservation);
+        }
     }
 
     public ObjectProperty<LocalDate> nextReservationProperty() {
-        return nextReservation;
+        if (nextReservationProperty == null) {
+            nextReservationProperty = new SimpleObjectProperty<>(this, "nextReservation", nextReservation);
+        }
+        return nextReservationProperty;
+    }
+
+    private Number boxOccupancy() {
+        return Double.isNaN(occupancy) ? null : occupancy;
     }
 }
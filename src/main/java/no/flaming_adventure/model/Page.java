@@ -0,0 +1,96 @@
+package no.flaming_adventure.model;
+
+import javafx.collections.ObservableList;
+
+/**
+ * A page of records from one of the paged tables.
+ *
+ * <p> In addition to the records themselves a page carries the total number of records matching its filter, and
+ * remembers the query it was produced by and the sort keys of its first and last record. When passed back to one of
+ * the page methods of {@link DataModel} as an anchor this lets the data model seek directly to the neighbouring
+ * pages, making deep pages as cheap to load as the first one.
+ *
+ * @param <T> the type of the records.
+ */
+public class Page<T> {
+
+    /************************************************************************
+     *
+     * Fields
+     *
+     ************************************************************************/
+
+    private final ObservableList<T> items;
+    private final int               index;
+    private final int               total;
+
+    /**
+     * Identifies the table, filter and ordering of the query that produced the page.
+     */
+    private final Object    query;
+    private final Object[]  firstKey;
+    private final Object[]  lastKey;
+
+    /************************************************************************
+     *
+     * Constructors
+     *
+     ************************************************************************/
+
+    Page(ObservableList<T> items, int index, int total, Object query, Object[] firstKey, Object[] lastKey) {
+        this.items      = items;
+        this.index      = index;
+        this.total      = total;
+        this.query      = query;
+        this.firstKey   = firstKey;
+        this.lastKey    = lastKey;
+    }
+
+    /************************************************************************
+     *
+     * Public API
+     *
+     ************************************************************************/
+
+    public ObservableList<T> getItems() {
+        return items;
+    }
+
+    /**
+     * @return the index of the page, counting from zero.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return the total number of records matching the page's filter.
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /************************************************************************
+     *
+     * Package API
+     *
+     ************************************************************************/
+
+    /**
+     * Return whether the page can be used as an anchor for the given query.
+     *
+     * @param query an object identifying the table, filter and ordering of a query.
+     * @return true if the page was produced by an equal query and isn't empty.
+     */
+    boolean isAnchorFor(Object query) {
+        return this.query.equals(query) && firstKey != null;
+    }
+
+    Object[] getFirstKey() {
+        return firstKey;
+    }
+
+    Object[] getLastKey() {
+        return lastKey;
+    }
+}
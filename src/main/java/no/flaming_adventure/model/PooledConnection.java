@@ -0,0 +1,249 @@
+package no.flaming_adventure.model;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A connection borrowed from a {@link ConnectionPool}.
+ *
+ * <p> Prepared statements are created on first use and cached by their SQL text, so every connection in the pool
+ * builds up its own set of statements. The pool asks the driver for server-side prepared statements, so a cached
+ * statement is parsed and planned by the server only once. The cache is bounded, the least recently used statement
+ * being closed once {@link #STATEMENT_CACHE_SIZE} statements are cached. A pooled connection is only ever used by one
+ * thread at a time and is returned to the pool by {@link #close() closing} it.
+ *
+ * <p> Statements handed out are tracked by the current {@link Operation}, if any, until the connection is returned.
+ * Every statement handed out is expected to be executed once, and is counted as a round trip to the server along
+ * with the preparation of the statements not cached, see {@link OperationMetrics#countRoundTrips(int)}.
+ */
+final class PooledConnection implements AutoCloseable {
+
+    /************************************************************************
+     *
+     * Static fields
+     *
+     ************************************************************************/
+
+    /**
+     * Connections used more recently than this are assumed to be valid when borrowed.
+     */
+    private static final long VALIDATION_THRESHOLD_MILLIS = 1000;
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+    /**
+     * The maximum number of prepared statements cached by each connection.
+     *
+     * <p> Every distinct query shape, i.e. table, combination of filters and ordering, takes up an entry.
+     */
+    static final int STATEMENT_CACHE_SIZE = 64;
+
+    private static final Logger LOGGER = Logger.getLogger(PooledConnection.class.getName());
+
+    /************************************************************************
+     *
+     * Fields
+     *
+     ************************************************************************/
+
+    private final ConnectionPool    pool;
+    private final Connection        connection;
+
+    private final Map<String, PreparedStatement> statements         = new StatementCache();
+    private final Map<String, PreparedStatement> insertStatements   = new StatementCache();
+
+    /**
+     * The statement most recently handed out, tracked by the current operation.
+     */
+    private Statement tracked = null;
+
+    private long lastUsed = System.currentTimeMillis();
+
+    /************************************************************************
+     *
+     * Constructors
+     *
+     ************************************************************************/
+
+    PooledConnection(ConnectionPool pool, Connection connection) {
+        this.pool       = pool;
+        this.connection = connection;
+    }
+
+    /************************************************************************
+     *
+     * Package API
+     *
+     ************************************************************************/
+
+    /**
+     * Return the underlying connection.
+     *
+     * <p> The connection must not be closed directly. Any changes to its state, e.g. disabling auto-commit, must be
+     * reverted before the pooled connection is returned.
+     */
+    Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Return a prepared statement for the given SQL, preparing it if this connection hasn't done so already.
+     */
+    PreparedStatement prepareStatement(String sql) throws SQLException {
+        PreparedStatement stmt = statements.get(sql);
+        if (stmt == null) {
+            stmt = prepared(connection.prepareStatement(sql));
+            statements.put(sql, stmt);
+        } else {
+            pool.statementCacheMetrics().hit();
+        }
+        return track(stmt);
+    }
+
+    /**
+     * Return a prepared statement for the given SQL that returns generated keys.
+     *
+     * @see #prepareStatement(String)
+     */
+    PreparedStatement prepareInsertStatement(String sql) throws SQLException {
+        PreparedStatement stmt = insertStatements.get(sql);
+        if (stmt == null) {
+            stmt = prepared(connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS));
+            insertStatements.put(sql, stmt);
+        } else {
+            pool.statementCacheMetrics().hit();
+        }
+        return track(stmt);
+    }
+
+    /**
+     * Return a new prepared statement for the given SQL whose results are streamed row by row instead of being read
+     * into memory at once.
+     *
+     * <p> The statement isn't cached and must be closed by the caller. No other statement can be executed on the
+     * connection until its result set has been read to the end or closed.
+     */
+    PreparedStatement prepareStreamingStatement(String sql) throws SQLException {
+        PreparedStatement stmt = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                                                             ResultSet.CONCUR_READ_ONLY);
+        // Connector/J only streams forward-only, read-only result sets with this fetch size.
+        stmt.setFetchSize(Integer.MIN_VALUE);
+        OperationMetrics.countRoundTrips(1);
+        return track(stmt);
+    }
+
+    /**
+     * Return the connection to its pool.
+     */
+    @Override public void close() {
+        if (tracked != null) {
+            Operation.untrack(tracked);
+            tracked = null;
+        }
+        lastUsed = System.currentTimeMillis();
+        pool.release(this);
+    }
+
+    /**
+     * Track the given statement, which must belong to this connection, with the current operation.
+     */
+    <T extends Statement> T track(T stmt) throws SQLException {
+        if (tracked != null && tracked != stmt) { Operation.untrack(tracked); }
+        tracked = stmt;
+        Operation.track(stmt);
+        OperationMetrics.countRoundTrips(1);
+        return stmt;
+    }
+
+    long idleMillis() {
+        return System.currentTimeMillis() - lastUsed;
+    }
+
+    boolean isClosed() {
+        try {
+            return connection.isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Check that the connection is still usable before it is handed out.
+     *
+     * <p> Only connections that have been idle for a while are checked with a round trip to the server.
+     */
+    boolean validate() {
+        if (idleMillis() < VALIDATION_THRESHOLD_MILLIS) {
+            return !isClosed();
+        }
+        return ping();
+    }
+
+    /**
+     * Check that the server still responds on the connection.
+     */
+    boolean ping() {
+        try {
+            OperationMetrics.countRoundTrips(1);
+            return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        } finally {
+            lastUsed = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Close the underlying connection, ignoring any errors.
+     */
+    void closeQuietly() {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Error while closing database connection.", e);
+        }
+    }
+
+    /************************************************************************
+     *
+     * Private implementation
+     *
+     ************************************************************************/
+
+    /**
+     * Count the preparation of a statement that wasn't cached.
+     */
+    private PreparedStatement prepared(PreparedStatement stmt) {
+        pool.statementCacheMetrics().miss();
+        OperationMetrics.countRoundTrips(1);
+        return stmt;
+    }
+
+    /**
+     * A map of prepared statements by SQL text, closing the least recently used statement when full. It's never
+     * serialized, prepared statements can't be.
+     */
+    @SuppressWarnings("serial")
+    private static final class StatementCache extends LinkedHashMap<String, PreparedStatement> {
+        StatementCache() {
+            super(16, 0.75f, true);
+        }
+
+        @Override protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+            if (size() <= STATEMENT_CACHE_SIZE) { return false; }
+            try {
+                eldest.getValue().close();
+            } catch (SQLException e) {
+                LOGGER.log(Level.FINE, "Error while closing prepared statement.", e);
+            }
+            return true;
+        }
+    }
+}
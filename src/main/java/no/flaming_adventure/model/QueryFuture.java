@@ -0,0 +1,41 @@
+package no.flaming_adventure.model;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The pending result of an {@link AsyncDataModel asynchronous data model} operation.
+ *
+ * <p> Cancelling a query future also cancels the SQL statement being executed on its behalf, if any, so that a
+ * superseded query doesn't keep the server and a pooled connection busy.
+ *
+ * @param <T> the type of the result.
+ */
+public class QueryFuture<T> extends CompletableFuture<T> {
+
+    private final Operation operation;
+
+    /**
+     * Run when the future is cancelled before it completes, if set.
+     */
+    private volatile Runnable cancelHook = null;
+
+    QueryFuture(Operation operation) {
+        this.operation = operation;
+    }
+
+    /**
+     * Run the given action when the future is cancelled while not yet completed, before any action chained onto the
+     * future sees the cancellation, e.g. to release what the operation would have released had it run.
+     */
+    void beforeCancel(Runnable hook) {
+        cancelHook = hook;
+    }
+
+    @Override public boolean cancel(boolean mayInterruptIfRunning) {
+        Runnable hook = cancelHook;
+        if (hook != null && ! isDone()) { hook.run(); }
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        if (cancelled) { operation.cancel(); }
+        return cancelled;
+    }
+}
@@ -4,82 +4,121 @@ import javafx.beans.property.*;
 
 import java.time.LocalDate;
 
+/**
+ * A reservation of one or more beds in a hut.
+ *
+ * <p> The fields are kept in plain fields and their properties are only created when first asked for, as most
+ * reservations are only ever read into a page and never bound to anything.
+ */
 public class Reservation {
-    private final IntegerProperty           id;
-    private final ObjectProperty<Hut>       hut;
-    private final ObjectProperty<LocalDate> date;
-    private final StringProperty            name;
-    private final StringProperty            email;
-    private final IntegerProperty           count;
-    private final StringProperty            comment;
-
-    public Reservation(Integer id, Hut hut, LocalDate date, String name, String email, Integer count, String comment) {
-        this.id = new SimpleIntegerProperty(id);
-        this.hut = new SimpleObjectProperty<>(hut);
-        this.date = new SimpleObjectProperty<>(date);
-        this.name = new SimpleStringProperty(name);
-        this.email = new SimpleStringProperty(email);
-        this.count = new SimpleIntegerProperty(count);
-        this.comment = new SimpleStringProperty(comment);
+    private int         id;
+    private Hut         hut;
+    private LocalDate   date;
+    private String      name;
+    private String      email;
+    private int         count;
+    private String      comment;
+
+    private IntegerProperty             idProperty;
+    private ObjectProperty<Hut>         hutProperty;
+    private ObjectProperty<LocalDate>   dateProperty;
+    private StringProperty              nameProperty;
+    private StringProperty              emailProperty;
+    private IntegerProperty             countProperty;
+    private StringProperty              commentProperty;
+
+    public Reservation(int id, Hut hut, LocalDate date, String name, String email, int count, String comment) {
+        this.id = id;
+        this.hut = hut;
+        this.date = date;
+        this.name = name;
+        this.email = email;
+        this.count = count;
+        this.comment = comment;
     }
 
     public void setId(int id) {
-        this.id.set(id);
+        if (idProperty == null) {
+            this.id = id;
+        } else {
+            idProperty.set(id);
+        }
     }
 
     public int getId() {
-        return id.get();
+        return idProperty == null ? id : idProperty.get();
     }
 
     public IntegerProperty idProperty() {
-        return id;
+        if (idProperty == null) {
+            idProperty = new SimpleIntegerProperty(this, "id", id);
+        }
+        return idProperty;
     }
 
     public Hut getHut() {
-        return hut.get();
+        return hutProperty == null ? hut : hutProperty.get();
     }
 
     public ObjectProperty<Hut> hutProperty() {
-        return hut;
+        if (hutProperty == null) {
+            hutProperty = new SimpleObjectProperty<>(this, "hut", hut);
+        }
+        return hutProperty;
     }
 
     public LocalDate getDate() {
-        return date.get();
+        return dateProperty == null ? date : dateProperty.get();
     }
 
     public ObjectProperty<LocalDate> dateProperty() {
-        return date;
+        if (dateProperty == null) {
+            dateProperty = new SimpleObjectProperty<>(this, "date", date);
+        }
+        return dateProperty;
     }
 
     public String getName() {
-        return name.get();
+        return nameProperty == null ? name : nameProperty.get();
     }
 
     public StringProperty nameProperty() {
-        return name;
+        if (nameProperty == null) {
+            nameProperty = new SimpleStringProperty(this, "name", name);
+        }
+        return nameProperty;
     }
 
     public String getEmail() {
-        return email.get();
+        return emailProperty == null ? email : emailProperty.get();
     }
 
     public StringProperty emailProperty() {
-        return email;
+        if (emailProperty == null) {
+            emailProperty = new SimpleStringProperty(this, "email", email);
+        }
+        return emailProperty;
     }
 
     public int getCount() {
-        return count.get();
+        return countProperty == null ? count : countProperty.get();
     }
 
     public IntegerProperty countProperty() {
-        return count;
+        if (countProperty == null) {
+            countProperty = new SimpleIntegerProperty(this, "count", count);
+        }
+        return countProperty;
     }
 
     public String getComment() {
-        return comment.get();
+        return commentProperty == null ? comment : commentProperty.get();
     }
 
     public StringProperty commentProperty() {
-        return comment;
+        if (commentProperty == null) {
+            commentProperty = new SimpleStringProperty(this, "comment", comment);
+        }
+        return commentProperty;
     }
 }
@@ -0,0 +1,130 @@
+package no.flaming_adventure.model;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps the rows of a result set to records, reading the columns by index.
+ *
+ * <p> Reading a column by label makes the driver look the label up for every column of every row. A row mapper
+ * instead resolves the index of each of its columns from the metadata of the first result set of a query shape, and
+ * reuses the indexes for every later result set of the same shape. The shape is identified by the query's SQL text,
+ * like the {@link PooledConnection prepared statement cache} does.
+ *
+ * @param <T> the type of the records.
+ */
+final class RowMapper<T> {
+
+    /************************************************************************
+     *
+     * Static fields
+     *
+     ************************************************************************/
+
+    /**
+     * Function reading a single record from the current row of a result set.
+     *
+     * @param <T> the type of the record.
+     */
+    @FunctionalInterface
+    interface Reader<T> {
+        /**
+         * @param resultSet a result set pointing at a row.
+         * @param columns   the indexes of the mapper's columns, in the order they were given to the mapper.
+         */
+        T read(ResultSet resultSet, int[] columns) throws SQLException;
+    }
+
+    /************************************************************************
+     *
+     * Fields
+     *
+     ************************************************************************/
+
+    private final Reader<T> reader;
+    private final String[]  columns;
+
+    /**
+     * Column indexes by SQL text.
+     */
+    private final Map<String, int[]> indexes = new ConcurrentHashMap<>();
+
+    /************************************************************************
+     *
+     * Constructors
+     *
+     ************************************************************************/
+
+    /**
+     * @param reader    function reading a record given the indexes of the columns.
+     * @param columns   the columns read, qualified by table name, e.g. <code>reservations.hut_id</code>.
+     */
+    RowMapper(Reader<T> reader, String... columns) {
+        this.reader     = reader;
+        this.columns    = columns;
+    }
+
+    /************************************************************************
+     *
+     * Package API
+     *
+     ************************************************************************/
+
+    /**
+     * Return the indexes of the mapper's columns in result sets of the given query, resolving them from the given
+     * result set if they aren't known yet.
+     *
+     * @param sql       the SQL text of the query.
+     * @param resultSet a result set of the query.
+     * @return the column indexes, to be passed to {@link #read}.
+     * @throws SQLException if a column is missing from the result set.
+     */
+    int[] columnsFor(String sql, ResultSet resultSet) throws SQLException {
+        int[] columns = indexes.get(sql);
+        if (columns == null) {
+            columns = resolve(resultSet.getMetaData());
+            indexes.put(sql, columns);
+        }
+        return columns;
+    }
+
+    /**
+     * Read a record from the current row of the given result set.
+     *
+     * @param resultSet a result set pointing at a row.
+     * @param columns   the column indexes returned by {@link #columnsFor} for the result set's query.
+     * @return the record.
+     * @throws SQLException if an SQLException occurred.
+     */
+    T read(ResultSet resultSet, int[] columns) throws SQLException {
+        return reader.read(resultSet, columns);
+    }
+
+    /************************************************************************
+     *
+     * Private implementation
+     *
+     ************************************************************************/
+
+    /**
+     * Find the index of each column, taking the first match if a column appears more than once.
+     */
+    private int[] resolve(ResultSetMetaData metaData) throws SQLException {
+        int[] resolved = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            for (int j = 1; j <= metaData.getColumnCount() && resolved[i] == 0; j++) {
+                if (columns[i].equalsIgnoreCase(metaData.getTableName(j) + '.' + metaData.getColumnName(j))) {
+                    resolved[i] = j;
+                }
+            }
+            if (resolved[i] == 0) {
+                throw new SQLException("Column " + columns[i] + " not found in " + Arrays.toString(columns) + ".");
+            }
+        }
+        return resolved;
+    }
+}
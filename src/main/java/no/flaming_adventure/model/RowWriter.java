@@ -0,0 +1,28 @@
+package no.flaming_adventure.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Destination of the rows of an exported table, e.g. a CSV or JSON file.
+ *
+ * <p> Rows are written one at a time as they are read from the database, so a writer should not keep them around.
+ *
+ * @see DataModel#exportReservations
+ */
+public interface RowWriter extends Closeable {
+
+    /**
+     * Write the names of the columns, before any rows.
+     */
+    void writeHeader(List<String> columns) throws IOException;
+
+    /**
+     * Write a row.
+     *
+     * @param values the values of the row in column order, as returned by {@link java.sql.ResultSet#getObject(int)}.
+     *               The list may be reused for the next row.
+     */
+    void writeRow(List<?> values) throws IOException;
+}
@@ -0,0 +1,241 @@
+package no.flaming_adventure.model;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Builder for parameterized SQL queries.
+ *
+ * <p> Values are never written into the SQL text, they are collected as parameters and bound when the query is
+ * {@link #prepare prepared}. The text of a query therefore only depends on its shape: the table, which filters are
+ * present and the ordering. Queries of the same shape share a prepared statement on each
+ * {@link PooledConnection pooled connection}, so the server doesn't have to parse and plan the query again just
+ * because e.g. the selected hut or dates changed.
+ */
+final class SQLQuery {
+
+    /************************************************************************
+     *
+     * Fields
+     *
+     ************************************************************************/
+
+    private final StringBuilder builder;
+    private final List<Object>  parameters  = new ArrayList<>();
+
+    private boolean hasWhere = false;
+
+    /************************************************************************
+     *
+     * Constructors
+     *
+     ************************************************************************/
+
+    /**
+     * Start a query with the given SQL.
+     *
+     * @param sql the start of the query, up to the point where a <code>WHERE</code> clause would follow.
+     */
+    SQLQuery(String sql) {
+        builder = new StringBuilder(sql);
+    }
+
+    /************************************************************************
+     *
+     * Package API
+     *
+     ************************************************************************/
+
+    /**
+     * Join the result of the given subquery.
+     *
+     * <p> Must be called before any predicate is added.
+     *
+     * @param join      the kind of join, e.g. <code>CROSS JOIN</code>.
+     * @param subquery  the query producing the derived table.
+     * @param alias     the name of the derived table.
+     * @return this query.
+     */
+    SQLQuery join(String join, SQLQuery subquery, String alias) {
+        builder.append(' ').append(join)
+               .append(" (").append(subquery.getSQL()).append(") AS ").append(alias);
+        parameters.addAll(subquery.parameters);
+        return this;
+    }
+
+    /**
+     * Left join the result of the given subquery.
+     *
+     * <p> Must be called before any predicate is added.
+     *
+     * @param subquery  the query producing the derived table.
+     * @param alias     the name of the derived table.
+     * @param condition the join condition.
+     * @return this query.
+     */
+    SQLQuery leftJoin(SQLQuery subquery, String alias, String condition) {
+        join("LEFT JOIN", subquery, alias);
+        builder.append(" ON ").append(condition);
+        return this;
+    }
+
+    /**
+     * Add a predicate to the <code>WHERE</code> clause.
+     *
+     * <p> Must be called before any {@link #orderBy ordering} or {@link #limit limit} is added.
+     *
+     * @param predicate  an SQL predicate with a placeholder for each of the given parameters, can optionally be
+     *                   <code>null</code> in which case nothing is added.
+     * @param parameters values of the predicate's placeholders, in order.
+     * @return this query.
+     */
+    SQLQuery where(String predicate, Object... parameters) {
+        if (predicate == null) { return this; }
+        builder.append(hasWhere ? " AND " : " WHERE ")
+               .append(predicate);
+        hasWhere = true;
+        Collections.addAll(this.parameters, parameters);
+        return this;
+    }
+
+    /**
+     * Add a predicate to the <code>WHERE</code> clause matching the given date range.
+     *
+     * @param field     the name of the field to filter on.
+     * @param fromDate  exclude all records before this date. Can optionally be <code>null</code>.
+     * @param toDate    exclude all records after this date. Can optionally be <code>null</code>.
+     * @return this query.
+     */
+    SQLQuery whereDateBetween(String field, LocalDate fromDate, LocalDate toDate) {
+        if (fromDate != null && toDate != null) {
+            return where(field + " BETWEEN ? AND ?", Date.valueOf(fromDate), Date.valueOf(toDate));
+        } else if (fromDate != null) {
+            return where(field + " >= ?", Date.valueOf(fromDate));
+        } else if (toDate != null) {
+            return where(field + " <= ?", Date.valueOf(toDate));
+        } else {
+            return this;
+        }
+    }
+
+    /**
+     * Add a <code>GROUP BY</code> clause.
+     *
+     * <p> Must be called after all predicates are added.
+     *
+     * @param groupBy the expressions to group by.
+     * @return this query.
+     */
+    SQLQuery groupBy(String groupBy) {
+        builder.append(" GROUP BY ")
+               .append(groupBy);
+        return this;
+    }
+
+    /**
+     * Add an <code>ORDER BY</code> clause.
+     *
+     * @param orderBy    ordering, can optionally be <code>null</code> in which case nothing is added.
+     * @param parameters values of the ordering's placeholders, in order.
+     * @return this query.
+     */
+    SQLQuery orderBy(String orderBy, Object... parameters) {
+        if (orderBy != null) {
+            builder.append(" ORDER BY ")
+                   .append(orderBy);
+            Collections.addAll(this.parameters, parameters);
+        }
+        return this;
+    }
+
+    /**
+     * Add a <code>LIMIT</code> clause.
+     *
+     * @param offset    the number of rows to skip.
+     * @param count     the maximum number of rows to return.
+     * @return this query.
+     */
+    SQLQuery limit(int offset, int count) {
+        builder.append(" LIMIT ?, ?");
+        parameters.add(offset);
+        parameters.add(count);
+        return this;
+    }
+
+    /**
+     * Return the SQL text of the query, which identifies its shape.
+     */
+    String getSQL() {
+        return builder.toString();
+    }
+
+    /**
+     * Return the values of the query's placeholders, in order.
+     */
+    List<Object> getParameters() {
+        return Collections.unmodifiableList(parameters);
+    }
+
+    /**
+     * Return a query for the plan of this query, with the same parameters.
+     */
+    SQLQuery explain() {
+        SQLQuery explain = new SQLQuery("EXPLAIN " + getSQL());
+        explain.parameters.addAll(parameters);
+        return explain;
+    }
+
+    /**
+     * Execute the query on the given connection, reporting how long it took to the given slow query log.
+     *
+     * @param connection    the connection to execute the query on.
+     * @param log           the log to report the execution to.
+     * @return the result of the query.
+     * @throws SQLException if an SQLException occurred.
+     */
+    ResultSet execute(PooledConnection connection, SlowQueryLog log) throws SQLException {
+        PreparedStatement stmt = prepare(connection);
+        long start = System.nanoTime();
+        ResultSet resultSet = stmt.executeQuery();
+        log.executed(connection, this, System.nanoTime() - start);
+        return resultSet;
+    }
+
+    /**
+     * Return a prepared statement for the query on the given connection, with all parameters bound.
+     *
+     * @param connection the connection to prepare the statement on.
+     * @return a prepared statement ready to be executed.
+     * @throws SQLException if an SQLException occurred.
+     */
+    PreparedStatement prepare(PooledConnection connection) throws SQLException {
+        return bind(connection.prepareStatement(getSQL()));
+    }
+
+    /**
+     * Return a new prepared statement for the query on the given connection streaming its results, with all
+     * parameters bound. The statement must be closed by the caller.
+     *
+     * @see PooledConnection#prepareStreamingStatement(String)
+     */
+    PreparedStatement prepareStreaming(PooledConnection connection) throws SQLException {
+        return bind(connection.prepareStreamingStatement(getSQL()));
+    }
+
+    @Override public String toString() {
+        return getSQL() + ' ' + parameters;
+    }
+
+    private PreparedStatement bind(PreparedStatement stmt) throws SQLException {
+        for (int i = 0; i < parameters.size(); i++) {
+            stmt.setObject(i + 1, parameters.get(i));
+        }
+        return stmt;
+    }
+}
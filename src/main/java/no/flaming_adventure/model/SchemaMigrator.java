@@ -0,0 +1,315 @@
+package no.flaming_adventure.model;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Upgrades the database schema by applying versioned migrations.
+ *
+ * <p> <pre>src/dist/schema.ddl</pre> is version 0 of the schema. Every later version is an SQL script in the
+ * <pre>migrations</pre> resource directory, named <code>V&lt;version&gt;__&lt;description&gt;.sql</code> and listed in
+ * {@link #MIGRATIONS}. Applied versions are recorded in the <code>schema_version</code> table, which is created on
+ * first migration, so every migration is applied exactly once per database.
+ *
+ * <p> The migrator is run at login, and can be run separately through {@link no.flaming_adventure.AdminTool} by a
+ * user with the privileges needed to alter the schema. Checking for pending migrations only reads the database, so
+ * users without those privileges can log in as long as the schema is current.
+ */
+public class SchemaMigrator {
+
+    /************************************************************************
+     *
+     * Static fields
+     *
+     ************************************************************************/
+
+    /**
+     * The migration scripts, in the order they are applied.
+     */
+    private static final String[] MIGRATIONS = {
+            "V1__performance_indexes.sql",
+            "V2__hut_daily_occupancy.sql",
+            "V3__overview_indexes.sql",
+            "V4__change_counters.sql",
+            "V5__item_search_indexes.sql",
+    };
+
+    private static final String MIGRATION_DIRECTORY = "migrations/";
+
+    /**
+     * Name of the server lock preventing several clients from migrating the same database at the same time.
+     */
+    private static final String LOCK_NAME = "flaming_adventure.schema_version";
+
+    private static final int LOCK_TIMEOUT_SECONDS = 60;
+
+    /*language=MySQL*/ private static final String SQL_CREATE_VERSION_TABLE =
+            "CREATE TABLE IF NOT EXISTS schema_version\n" +
+            "(\n" +
+            "    version INT PRIMARY KEY NOT NULL,\n" +
+            "    description VARCHAR(128) NOT NULL,\n" +
+            "    applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL\n" +
+            ");";
+    /*language=MySQL*/ private static final String SQL_VERSION_TABLE_EXISTS =
+            "SELECT COUNT(*) FROM information_schema.tables\n" +
+            "WHERE table_schema = DATABASE() AND table_name = 'schema_version';";
+    /*language=MySQL*/ private static final String SQL_APPLIED_VERSIONS = "SELECT version FROM schema_version;";
+    /*language=MySQL*/ private static final String SQL_RECORD_VERSION =
+            "INSERT INTO schema_version (version, description) VALUES (?, ?);";
+    /*language=MySQL*/ private static final String SQL_GET_LOCK = "SELECT GET_LOCK(?, ?);";
+    /*language=MySQL*/ private static final String SQL_RELEASE_LOCK = "SELECT RELEASE_LOCK(?);";
+
+    /**
+     * MySQL error codes of statements denied for lack of privileges.
+     */
+    private static final int ER_DBACCESS_DENIED_ERROR           = 1044;
+    private static final int ER_TABLEACCESS_DENIED_ERROR        = 1142;
+    private static final int ER_SPECIFIC_ACCESS_DENIED_ERROR    = 1227;
+
+    private static final Logger LOGGER = Logger.getLogger(SchemaMigrator.class.getName());
+
+    /**
+     * A single migration script.
+     */
+    private static final class Migration {
+        final int       version;
+        final String    description;
+        final String    resource;
+
+        Migration(String filename) {
+            int separator = filename.indexOf("__");
+            version     = Integer.parseInt(filename.substring(1, separator));
+            description = filename.substring(separator + 2, filename.lastIndexOf('.')).replace('_', ' ');
+            resource    = MIGRATION_DIRECTORY + filename;
+        }
+    }
+
+    /************************************************************************
+     *
+     * Fields
+     *
+     ************************************************************************/
+
+    private final ConnectionPool connectionPool;
+
+    /************************************************************************
+     *
+     * Constructors
+     *
+     ************************************************************************/
+
+    public SchemaMigrator(ConnectionPool connectionPool) {
+        this.connectionPool = connectionPool;
+    }
+
+    /************************************************************************
+     *
+     * Public API
+     *
+     ************************************************************************/
+
+    /**
+     * @return the version of the schema the application expects.
+     */
+    public int latestVersion() {
+        return new Migration(MIGRATIONS[MIGRATIONS.length - 1]).version;
+    }
+
+    /**
+     * Return the versions of the migrations that haven't been applied to the database yet.
+     *
+     * <p> The database is only read, so this requires no privileges beyond <code>SELECT</code>.
+     *
+     * @throws SQLException if an SQLException occurred.
+     */
+    public List<Integer> pendingVersions() throws SQLException {
+        try (PooledConnection connection = connectionPool.borrow()) {
+            List<Integer> pending = new ArrayList<>();
+            for (Migration migration : pendingMigrations(connection.getConnection())) {
+                pending.add(migration.version);
+            }
+            return pending;
+        }
+    }
+
+    /**
+     * Apply all pending migrations, in order.
+     *
+     * <p> The applied versions are read first, and nothing else is done if the schema is current. Otherwise the
+     * schema is locked against other clients while the migrations are applied.
+     *
+     * <p> Note that MySQL commits schema changes immediately, so if a migration fails the ones before it remain
+     * applied.
+     *
+     * @return the versions of the migrations applied.
+     * @throws SQLException if a migration failed, the user lacks the privileges to migrate the schema or the schema
+     *                      is being migrated by another client.
+     */
+    public List<Integer> migrate() throws SQLException {
+        List<Integer> appliedNow = new ArrayList<>();
+        try (PooledConnection pooledConnection = connectionPool.borrow()) {
+            Connection connection = pooledConnection.getConnection();
+            if (pendingMigrations(connection).isEmpty()) { return appliedNow; }
+
+            lock(connection);
+            try {
+                createVersionTable(connection);
+                // Another client may have migrated the schema while the lock was waited for.
+                for (Migration migration : pendingMigrations(connection)) {
+                    apply(connection, migration);
+                    appliedNow.add(migration.version);
+                }
+            } catch (SQLException e) {
+                if (! isAccessDenied(e)) { throw e; }
+                throw new SQLException("The database schema must be upgraded to version " + latestVersion() +
+                                       ", which this user isn't allowed to do. Ask an administrator to run the " +
+                                       "migrate command of the administration tool.", e.getSQLState(),
+                                       e.getErrorCode(), e);
+            } finally {
+                unlock(connection);
+            }
+        }
+        return appliedNow;
+    }
+
+    /************************************************************************
+     *
+     * Private implementation
+     *
+     ************************************************************************/
+
+    /**
+     * Return the migrations that haven't been applied to the database yet, in order.
+     */
+    private List<Migration> pendingMigrations(Connection connection) throws SQLException {
+        Set<Integer> applied = appliedVersions(connection);
+        List<Migration> pending = new ArrayList<>();
+        for (String filename : MIGRATIONS) {
+            Migration migration = new Migration(filename);
+            if (!applied.contains(migration.version)) { pending.add(migration); }
+        }
+        return pending;
+    }
+
+    /**
+     * Return the applied versions, none if the version table hasn't been created yet, without altering the schema.
+     */
+    private Set<Integer> appliedVersions(Connection connection) throws SQLException {
+        Set<Integer> versions = new HashSet<>();
+        try (Statement stmt = connection.createStatement()) {
+            ResultSet exists = stmt.executeQuery(SQL_VERSION_TABLE_EXISTS);
+            if (!exists.next() || exists.getInt(1) == 0) { return versions; }
+
+            ResultSet resultSet = stmt.executeQuery(SQL_APPLIED_VERSIONS);
+            while (resultSet.next()) {
+                versions.add(resultSet.getInt(1));
+            }
+        }
+        return versions;
+    }
+
+    private void createVersionTable(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate(SQL_CREATE_VERSION_TABLE);
+        }
+    }
+
+    /**
+     * Return whether the given failure, or the failure it wraps, is a statement denied for lack of privileges.
+     */
+    private static boolean isAccessDenied(SQLException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (! (cause instanceof SQLException)) { continue; }
+            int errorCode = ((SQLException) cause).getErrorCode();
+            if (errorCode == ER_DBACCESS_DENIED_ERROR || errorCode == ER_TABLEACCESS_DENIED_ERROR
+                || errorCode == ER_SPECIFIC_ACCESS_DENIED_ERROR) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void apply(Connection connection, Migration migration) throws SQLException {
+        LOGGER.log(Level.INFO, "Migrating database schema to version {0}: {1}.",
+                   new Object[]{migration.version, migration.description});
+        try (Statement stmt = connection.createStatement()) {
+            for (String sql : readStatements(migration.resource)) {
+                stmt.execute(sql);
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Unable to migrate the database schema to version " + migration.version + ": " +
+                                   e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+        }
+        try (PreparedStatement stmt = connection.prepareStatement(SQL_RECORD_VERSION)) {
+            stmt.setInt(1, migration.version);
+            stmt.setString(2, migration.description);
+            stmt.executeUpdate();
+        }
+    }
+
+    private void lock(Connection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(SQL_GET_LOCK)) {
+            stmt.setString(1, LOCK_NAME);
+            stmt.setInt(2, LOCK_TIMEOUT_SECONDS);
+            ResultSet resultSet = stmt.executeQuery();
+            if (!resultSet.next() || resultSet.getInt(1) != 1) {
+                throw new SQLException("Timed out waiting for another client to migrate the database schema.");
+            }
+        }
+    }
+
+    private void unlock(Connection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(SQL_RELEASE_LOCK)) {
+            stmt.setString(1, LOCK_NAME);
+            stmt.executeQuery();
+        }
+    }
+
+    /**
+     * Read the statements of the given migration script.
+     *
+     * <p> Statements are terminated by a semicolon at the end of a line. Lines starting with <code>--</code> are
+     * ignored.
+     */
+    private static List<String> readStatements(String resource) {
+        InputStream stream = SchemaMigrator.class.getClassLoader().getResourceAsStream(resource);
+        if (stream == null) {
+            throw new IllegalStateException("Missing migration script: " + resource);
+        }
+
+        List<String> statements = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            StringBuilder builder = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("--")) { continue; }
+                builder.append(line).append('\n');
+                if (trimmed.endsWith(";")) {
+                    statements.add(builder.toString());
+                    builder.setLength(0);
+                }
+            }
+            if (builder.toString().trim().length() > 0) {
+                statements.add(builder.toString());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read migration script: " + resource, e);
+        }
+        return statements;
+    }
+}
@@ -0,0 +1,130 @@
+package no.flaming_adventure.model;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An entry of the slow query report: a query shape that took longer than the threshold of the
+ * {@link DataModel#setSlowQueryThreshold slow query log}, with the plan the server chose for it.
+ *
+ * <p> Entries are snapshots, see {@link DataModel#slowQueries()}.
+ */
+public class SlowQuery {
+
+    /************************************************************************
+     *
+     * Fields
+     *
+     ************************************************************************/
+
+    private final String        sql;
+    private final String        parameters;
+    private final int           count;
+    private final long          totalNanos;
+    private final long          maxNanos;
+    private final LocalDateTime lastSeen;
+    private final List<String>  plan;
+    private final boolean       fullScan;
+    private final boolean       temporary;
+    private final boolean       filesort;
+
+    /************************************************************************
+     *
+     * Constructors
+     *
+     ************************************************************************/
+
+    SlowQuery(String sql, String parameters, int count, long totalNanos, long maxNanos, LocalDateTime lastSeen,
+              List<String> plan, boolean fullScan, boolean temporary, boolean filesort) {
+        this.sql        = sql;
+        this.parameters = parameters;
+        this.count      = count;
+        this.totalNanos = totalNanos;
+        this.maxNanos   = maxNanos;
+        this.lastSeen   = lastSeen;
+        this.plan       = plan;
+        this.fullScan   = fullScan;
+        this.temporary  = temporary;
+        this.filesort   = filesort;
+    }
+
+    /************************************************************************
+     *
+     * Public API
+     *
+     ************************************************************************/
+
+    /**
+     * @return the SQL text of the query, with placeholders for its parameters.
+     */
+    public String getSQL() {
+        return sql;
+    }
+
+    /**
+     * @return the values bound to the placeholders the last time the query was slow.
+     */
+    public String getParameters() {
+        return parameters;
+    }
+
+    /**
+     * @return the number of times the query was slow.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    public long getTotalMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalNanos);
+    }
+
+    public long getMaxMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxNanos);
+    }
+
+    public LocalDateTime getLastSeen() {
+        return lastSeen;
+    }
+
+    /**
+     * @return the rows of the query's <code>EXPLAIN</code> output, one line each, or an empty list if the query
+     *         couldn't be explained.
+     */
+    public List<String> getPlan() {
+        return plan;
+    }
+
+    /**
+     * @return whether the plan reads every row of a table or index.
+     */
+    public boolean isFullScan() {
+        return fullScan;
+    }
+
+    /**
+     * @return whether the plan builds a temporary table.
+     */
+    public boolean isTemporary() {
+        return temporary;
+    }
+
+    /**
+     * @return whether the plan sorts the rows rather than reading them in order from an index.
+     */
+    public boolean isFilesort() {
+        return filesort;
+    }
+
+    /**
+     * @return the problems flagged in the plan, comma separated, or an empty string if none.
+     */
+    public String getFlags() {
+        StringBuilder builder = new StringBuilder();
+        if (fullScan)   { builder.append("full scan, "); }
+        if (temporary)  { builder.append("temporary, "); }
+        if (filesort)   { builder.append("filesort, "); }
+        return builder.length() == 0 ? "" : builder.substring(0, builder.length() - 2);
+    }
+}
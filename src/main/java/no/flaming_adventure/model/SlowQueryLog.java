@@ -0,0 +1,198 @@
+package no.flaming_adventure.model;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Log of the generated queries taking longer than a threshold, along with their plans.
+ *
+ * <p> Every {@link SQLQuery#execute execution} of a generated query is timed. Once a query takes longer than the
+ * threshold it's logged with its parameters, and <code>EXPLAIN</code>ed on the same connection with the same
+ * parameters. Plans reading a whole table or index, building a temporary table or sorting the rows are flagged, as
+ * they are what makes a query slow on a large table. A plan is only looked up again once it's older than
+ * {@link #PLAN_TTL_NANOS}, so a query that's slow every time isn't explained every time.
+ *
+ * <p> The slow queries are kept by shape, up to {@link #CAPACITY} of them, the least recently slow being evicted
+ * first. The log is disabled until a threshold is set, and can be used from several threads at the same time.
+ */
+final class SlowQueryLog {
+
+    /************************************************************************
+     *
+     * Static fields
+     *
+     ************************************************************************/
+
+    /**
+     * The maximum number of query shapes kept.
+     */
+    static final int CAPACITY = 50;
+
+    /**
+     * How long the plan of a slow query is trusted before it's explained again.
+     */
+    static final long PLAN_TTL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private static final Logger LOGGER = Logger.getLogger(SlowQueryLog.class.getName());
+
+    /**
+     * The statistics of a slow query shape.
+     */
+    private static final class Statistics {
+        private String          parameters;
+        private int             count       = 0;
+        private long            totalNanos  = 0;
+        private long            maxNanos    = 0;
+        private LocalDateTime   lastSeen;
+        private List<String>    plan        = Collections.emptyList();
+        private long            explained   = 0;
+        private boolean         fullScan    = false;
+        private boolean         temporary   = false;
+        private boolean         filesort    = false;
+    }
+
+    /************************************************************************
+     *
+     * Fields
+     *
+     ************************************************************************/
+
+    private volatile long thresholdNanos = Long.MAX_VALUE;
+
+    private final Map<String, Statistics> entries = new LinkedHashMap<String, Statistics>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<String, Statistics> eldest) {
+            return size() > CAPACITY;
+        }
+    };
+
+    /************************************************************************
+     *
+     * Package API
+     *
+     ************************************************************************/
+
+    /**
+     * Set the duration above which queries are logged.
+     *
+     * @param threshold the duration, or a negative value to disable the log.
+     * @param unit      the unit of the duration.
+     */
+    void setThreshold(long threshold, TimeUnit unit) {
+        thresholdNanos = threshold < 0 ? Long.MAX_VALUE : unit.toNanos(threshold);
+    }
+
+    /**
+     * @return the duration above which queries are logged, or a negative value if the log is disabled.
+     */
+    long getThreshold(TimeUnit unit) {
+        long threshold = thresholdNanos;
+        return threshold == Long.MAX_VALUE ? -1 : unit.convert(threshold, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Record an execution of the given query, logging and explaining it if it was slow.
+     *
+     * <p> A query that can't be explained is still logged, failures are only logged as well.
+     *
+     * @param connection    the connection the query was executed on, which mustn't be streaming a result.
+     * @param query         the query.
+     * @param nanos         the duration of the execution.
+     */
+    void executed(PooledConnection connection, SQLQuery query, long nanos) {
+        if (nanos < thresholdNanos) { return; }
+
+        String sql = query.getSQL();
+        long now = System.nanoTime();
+        boolean explain;
+        synchronized (this) {
+            Statistics entry = entries.get(sql);
+            explain = entry == null || now - entry.explained > PLAN_TTL_NANOS;
+        }
+
+        List<String> plan = null;
+        boolean fullScan = false, temporary = false, filesort = false;
+        if (explain) {
+            plan = new ArrayList<>();
+            try {
+                ResultSet resultSet = query.explain().prepare(connection).executeQuery();
+                int tableColumn = resultSet.findColumn("table");
+                int typeColumn  = resultSet.findColumn("type");
+                int keyColumn   = resultSet.findColumn("key");
+                int rowsColumn  = resultSet.findColumn("rows");
+                int extraColumn = resultSet.findColumn("Extra");
+                while (resultSet.next()) {
+                    String table = resultSet.getString(tableColumn);
+                    String type  = resultSet.getString(typeColumn);
+                    String extra = resultSet.getString(extraColumn);
+                    if (extra == null) { extra = ""; }
+                    plan.add(table + ": " + type + ", key " + resultSet.getString(keyColumn) + ", rows "
+                             + resultSet.getString(rowsColumn) + (extra.isEmpty() ? "" : ", " + extra));
+                    // Derived tables, such as the count joined to a page, are only ever a few rows.
+                    boolean derived = table != null && table.startsWith("<");
+                    fullScan  |= ! derived && ("ALL".equals(type) || "index".equals(type));
+                    temporary |= extra.contains("Using temporary");
+                    filesort  |= extra.contains("Using filesort");
+                }
+            } catch (SQLException e) {
+                LOGGER.log(Level.FINE, "Failed to explain query: " + sql, e);
+            }
+        }
+
+        String flags;
+        synchronized (this) {
+            Statistics entry = entries.computeIfAbsent(sql, ignored -> new Statistics());
+            entry.parameters = query.getParameters().toString();
+            entry.count++;
+            entry.totalNanos += nanos;
+            entry.maxNanos = Math.max(entry.maxNanos, nanos);
+            entry.lastSeen = LocalDateTime.now();
+            if (plan != null) {
+                entry.plan = Collections.unmodifiableList(plan);
+                entry.explained = now;
+                entry.fullScan = fullScan;
+                entry.temporary = temporary;
+                entry.filesort = filesort;
+            }
+            flags = toReport(sql, entry).getFlags();
+        }
+
+        LOGGER.log(Level.WARNING, "Slow query ({0} ms{1}): {2} {3}",
+                   new Object[]{TimeUnit.NANOSECONDS.toMillis(nanos), flags.isEmpty() ? "" : ", " + flags, sql,
+                                query.getParameters()});
+    }
+
+    /**
+     * Return the slow queries, the one that took the longest in total first.
+     */
+    synchronized List<SlowQuery> report() {
+        List<SlowQuery> report = new ArrayList<>();
+        entries.forEach((sql, entry) -> report.add(toReport(sql, entry)));
+        report.sort(Comparator.comparingLong(SlowQuery::getTotalMillis).reversed());
+        return report;
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    /************************************************************************
+     *
+     * Private implementation
+     *
+     ************************************************************************/
+
+    private static SlowQuery toReport(String sql, Statistics entry) {
+        return new SlowQuery(sql, entry.parameters, entry.count, entry.totalNanos, entry.maxNanos, entry.lastSeen,
+                             entry.plan, entry.fullScan, entry.temporary, entry.filesort);
+    }
+}
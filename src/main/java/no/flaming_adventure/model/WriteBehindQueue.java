@@ -0,0 +1,276 @@
+package no.flaming_adventure.model;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Queue of pending single field edits, i.e. the fixed and delivered flags of items and the firewood of huts, written
+ * to the database behind the user's back.
+ *
+ * <p> Edits are held until {@link #DELAY_MILLIS} have passed since the first pending edit, or until the queue is
+ * {@link #flush() flushed}, and are then written in a single batched transaction. Repeated edits of the same record
+ * are coalesced, so toggling a checkbox back and forth only writes its final value, once. The values are taken when
+ * an edit is queued, so records should only be edited on the thread edits are queued from.
+ *
+ * <p> Every edit is given a future completed through the callback executor once it has been written, or failed if the
+ * transaction failed. Coalesced edits share a future.
+ */
+final class WriteBehindQueue {
+
+    /************************************************************************
+     *
+     * Static fields
+     *
+     ************************************************************************/
+
+    /**
+     * The time edits are held before being written.
+     */
+    static final long DELAY_MILLIS = 500;
+
+    private static final Logger LOGGER = Logger.getLogger(WriteBehindQueue.class.getName());
+
+    /**
+     * A pending edit of a record.
+     */
+    private static final class Edit<T, V> {
+        final T                 record;
+        final V                 value;
+        final QueryFuture<Void> future;
+
+        Edit(T record, V value, QueryFuture<Void> future) {
+            this.record = record;
+            this.value  = value;
+            this.future = future;
+        }
+    }
+
+    /************************************************************************
+     *
+     * Fields
+     *
+     ************************************************************************/
+
+    private final DataModel                 dataModel;
+    private final Executor                  callbackExecutor;
+    private final ScheduledExecutorService  timer;
+
+    /**
+     * Guards the pending edits and the scheduled flush.
+     */
+    private final Object lock = new Object();
+
+    /**
+     * Held while edits are written, so that a flush only returns once every edit queued before it has been written.
+     */
+    private final Object flushLock = new Object();
+
+    private Map<Integer, Edit<BrokenItem, Boolean>>     fixed       = new LinkedHashMap<>();
+    private Map<Integer, Edit<ForgottenItem, Boolean>>  delivered   = new LinkedHashMap<>();
+    private Map<Integer, Edit<Hut, Integer>>            firewood    = new LinkedHashMap<>();
+
+    /**
+     * The tables of the edits being written, if any.
+     */
+    private Set<String> writing = Collections.emptySet();
+
+    private ScheduledFuture<?> scheduledFlush = null;
+
+    /************************************************************************
+     *
+     * Constructors
+     *
+     ************************************************************************/
+
+    /**
+     * @param dataModel         the data model to write the edits through.
+     * @param callbackExecutor  executor used to complete the futures of the edits.
+     */
+    WriteBehindQueue(DataModel dataModel, Executor callbackExecutor) {
+        this.dataModel          = dataModel;
+        this.callbackExecutor   = callbackExecutor;
+
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /************************************************************************
+     *
+     * Package API
+     *
+     ************************************************************************/
+
+    QueryFuture<Void> updateBrokenItemFixed(BrokenItem item) {
+        synchronized (lock) {
+            return enqueue(fixed, item.getId(), item, item.getFixed());
+        }
+    }
+
+    QueryFuture<Void> updateForgottenItemDelivered(ForgottenItem item) {
+        synchronized (lock) {
+            return enqueue(delivered, item.getId(), item, item.getDelivered());
+        }
+    }
+
+    /**
+     * Queue the firewood of the given hut, which has {@link Hut#hasPendingWrites() pending writes} until the edit is
+     * done.
+     */
+    QueryFuture<Void> updateHutFirewood(Hut hut) {
+        synchronized (lock) {
+            if (! firewood.containsKey(hut.getId())) { hut.writeQueued(); }
+            return enqueue(firewood, hut.getId(), hut, hut.getFirewood());
+        }
+    }
+
+    /**
+     * Write the pending edits without waiting for the delay to pass, on the queue's own thread.
+     */
+    void flushLater() {
+        timer.execute(this::flush);
+    }
+
+    /**
+     * Write the pending edits on the current thread if any of them is to one of the given tables, so that a query
+     * reading those tables sees them, and wait for edits of those tables already being written by another thread.
+     * Queries reading other tables return right away instead of waiting for the edits to be written.
+     *
+     * @param tables the names of the tables read.
+     * @see #flush()
+     */
+    void flush(Collection<String> tables) {
+        boolean pending;
+        synchronized (lock) {
+            pending = ! Collections.disjoint(tables, tables(fixed, delivered, firewood));
+            if (! pending && Collections.disjoint(tables, writing)) { return; }
+        }
+        if (pending) {
+            flush();
+        } else {
+            // The edits being written are done once the lock is released.
+            synchronized (flushLock) { }
+        }
+    }
+
+    /**
+     * Write the pending edits on the current thread, waiting for edits already being written by another thread.
+     *
+     * <p> Failures are reported through the futures of the edits rather than thrown.
+     */
+    void flush() {
+        synchronized (flushLock) {
+            Map<Integer, Edit<BrokenItem, Boolean>>     fixed;
+            Map<Integer, Edit<ForgottenItem, Boolean>>  delivered;
+            Map<Integer, Edit<Hut, Integer>>            firewood;
+            synchronized (lock) {
+                if (scheduledFlush != null) {
+                    scheduledFlush.cancel(false);
+                    scheduledFlush = null;
+                }
+                if (this.fixed.isEmpty() && this.delivered.isEmpty() && this.firewood.isEmpty()) { return; }
+
+                fixed           = this.fixed;
+                delivered       = this.delivered;
+                firewood        = this.firewood;
+                this.fixed      = new LinkedHashMap<>();
+                this.delivered  = new LinkedHashMap<>();
+                this.firewood   = new LinkedHashMap<>();
+                writing         = tables(fixed, delivered, firewood);
+            }
+
+            List<QueryFuture<Void>> futures = new ArrayList<>();
+            Throwable error = null;
+            try {
+                dataModel.updateRecords(values(fixed, futures), values(delivered, futures),
+                                        values(firewood, futures));
+            } catch (SQLException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Failed to write " + futures.size() + " edit(s).", e);
+                error = e;
+            }
+            synchronized (lock) { writing = Collections.emptySet(); }
+
+            Throwable result = error;
+            callbackExecutor.execute(() -> {
+                // Before completing the futures, so that a reload started on completion isn't taken for stale.
+                firewood.values().forEach(edit -> edit.record.writeDone());
+                futures.forEach(future -> {
+                    if (result == null) {
+                        future.complete(null);
+                    } else {
+                        future.completeExceptionally(result);
+                    }
+                });
+            });
+        }
+    }
+
+    /**
+     * Write the pending edits and stop the queue's thread.
+     */
+    void shutdown() {
+        flush();
+        timer.shutdownNow();
+    }
+
+    /************************************************************************
+     *
+     * Private implementation
+     *
+     ************************************************************************/
+
+    /**
+     * Queue an edit, replacing any pending edit of the same record, and schedule a flush if none is scheduled.
+     *
+     * @return the future of the edit.
+     */
+    private <T, V> QueryFuture<Void> enqueue(Map<Integer, Edit<T, V>> edits, int id, T record, V value) {
+        Edit<T, V> pending = edits.get(id);
+        QueryFuture<Void> future = pending != null ? pending.future : new QueryFuture<>(new Operation());
+        edits.put(id, new Edit<>(record, value, future));
+
+        if (scheduledFlush == null) {
+            scheduledFlush = timer.schedule(() -> flush(), DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        return future;
+    }
+
+    /**
+     * Return the names of the tables the given edits are to.
+     */
+    private static Set<String> tables(Map<?, ?> fixed, Map<?, ?> delivered, Map<?, ?> firewood) {
+        Set<String> tables = new HashSet<>();
+        if (! fixed.isEmpty()) { tables.add("broken_items"); }
+        if (! delivered.isEmpty()) { tables.add("forgotten_items"); }
+        if (! firewood.isEmpty()) { tables.add("huts"); }
+        return tables;
+    }
+
+    /**
+     * Return the values of the given edits by record, adding their futures to the given list.
+     */
+    private static <T, V> Map<T, V> values(Map<Integer, Edit<T, V>> edits, List<QueryFuture<Void>> futures) {
+        Map<T, V> values = new LinkedHashMap<>();
+        for (Edit<T, V> edit : edits.values()) {
+            values.put(edit.record, edit.value);
+            futures.add(edit.future);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,133 @@
+package no.flaming_adventure.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming reader of comma-separated values as described by RFC 4180.
+ *
+ * <p> Records are read one at a time, so files of any size can be read in constant memory. Fields may be quoted
+ * with double quotes, in which case they can contain commas, line breaks and doubled double quotes.
+ */
+public class CsvReader implements Closeable {
+
+    /***************************************************************************
+     *                                                                         *
+     * Instance Variables                                                      *
+     *                                                                         *
+     **************************************************************************/
+
+    private final Reader reader;
+
+    /**
+     * The line the last record read started on, counting from one.
+     */
+    private long recordLine = 0;
+
+    private long line = 1;
+
+    /**
+     * A character read ahead, or -2 if none.
+     */
+    private int peeked = -2;
+
+    /***************************************************************************
+     *                                                                         *
+     * Constructors                                                            *
+     *                                                                         *
+     **************************************************************************/
+
+    /**
+     * @param reader the reader to read from, preferably buffered.
+     */
+    public CsvReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /***************************************************************************
+     *                                                                         *
+     * Public API                                                              *
+     *                                                                         *
+     **************************************************************************/
+
+    /**
+     * Read the next record.
+     *
+     * @return the fields of the record, or null at the end of the input.
+     * @throws IOException if an IOException occurred or a quoted field isn't terminated.
+     */
+    public List<String> next() throws IOException {
+        int c = read();
+        if (c == -1) { return null; }
+        recordLine = line;
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("Unterminated quoted field starting on line " + recordLine + ".");
+                } else if (c == '"') {
+                    if (peek() == '"') {
+                        field.append('"');
+                        read();
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\r' || c == '\n' || c == -1) {
+                if (c == '\r' && peek() == '\n') { read(); }
+                fields.add(field.toString());
+                return fields;
+            } else {
+                field.append((char) c);
+            }
+            c = read();
+        }
+    }
+
+    /**
+     * @return the line number the last record read started on, counting from one.
+     */
+    public long getLine() {
+        return recordLine;
+    }
+
+    @Override public void close() throws IOException {
+        reader.close();
+    }
+
+    /***************************************************************************
+     *                                                                         *
+     * Implementation                                                          *
+     *                                                                         *
+     **************************************************************************/
+
+    private int read() throws IOException {
+        int c;
+        if (peeked != -2) {
+            c = peeked;
+            peeked = -2;
+        } else {
+            c = reader.read();
+        }
+        if (c == '\n') { line++; }
+        return c;
+    }
+
+    private int peek() throws IOException {
+        if (peeked == -2) { peeked = reader.read(); }
+        return peeked;
+    }
+}
@@ -0,0 +1,96 @@
+package no.flaming_adventure.util;
+
+import no.flaming_adventure.model.RowWriter;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Writer of comma-separated values as described by RFC 4180, readable by {@link CsvReader}.
+ *
+ * <p> Fields are only quoted when they contain a comma, a double quote or a line break. Null fields are written as
+ * empty fields. As a {@link RowWriter} it writes exported tables with the column names as header record.
+ */
+public class CsvWriter implements RowWriter, Flushable {
+
+    /***************************************************************************
+     *                                                                         *
+     * Instance Variables                                                      *
+     *                                                                         *
+     **************************************************************************/
+
+    private final Writer writer;
+
+    /***************************************************************************
+     *                                                                         *
+     * Constructors                                                            *
+     *                                                                         *
+     **************************************************************************/
+
+    /**
+     * @param writer the writer to write to, preferably buffered.
+     */
+    public CsvWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    /***************************************************************************
+     *                                                                         *
+     * Public API                                                              *
+     *                                                                         *
+     **************************************************************************/
+
+    /**
+     * Write a record.
+     *
+     * @param fields the fields of the record.
+     * @throws IOException if an IOException occurred.
+     */
+    public void write(List<?> fields) throws IOException {
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) { writer.write(','); }
+            Object field = fields.get(i);
+            if (field != null) { writeField(field.toString()); }
+        }
+        writer.write("\r\n");
+    }
+
+    @Override public void writeHeader(List<String> columns) throws IOException {
+        write(columns);
+    }
+
+    @Override public void writeRow(List<?> values) throws IOException {
+        write(values);
+    }
+
+    @Override public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override public void close() throws IOException {
+        writer.close();
+    }
+
+    /***************************************************************************
+     *                                                                         *
+     * Implementation                                                          *
+     *                                                                         *
+     **************************************************************************/
+
+    private void writeField(String field) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < field.length() && ! quote; i++) {
+            char c = field.charAt(i);
+            quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (quote) {
+            writer.write('"');
+            writer.write(field.replace("\"", "\"\""));
+            writer.write('"');
+        } else {
+            writer.write(field);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package no.flaming_adventure.util;
+
+import javafx.scene.control.Alert;
+
+import java.io.UncheckedIOException;
+import java.sql.SQLException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Tells the user about expected failures, e.g. an edit that couldn't be saved because the database went away, and
+ * leaves the application running, unlike the {@link UnhandledExceptionDialog}.
+ *
+ * <p> The alert isn't modal, and a failure reported while the previous one is still displayed replaces it rather
+ * than stacking another alert on top. Must be used on the JavaFX application thread.
+ */
+public final class ErrorAlert {
+    private static final Logger LOGGER = Logger.getLogger(ErrorAlert.class.getName());
+
+    /**
+     * The alert currently displayed, if any.
+     */
+    private static Alert alert = null;
+
+    private ErrorAlert() {
+    }
+
+    /**
+     * Report the given failure, which is logged and ignored if the operation was cancelled.
+     *
+     * @param title     the title of the alert.
+     * @param header    what failed, in the user's terms.
+     * @param throwable the failure, possibly wrapped by an asynchronous operation.
+     */
+    public static void show(String title, String header, Throwable throwable) {
+        // Report the actual failure of asynchronous operations.
+        if (throwable instanceof CompletionException && throwable.getCause() != null) {
+            throwable = throwable.getCause();
+        }
+        if (throwable instanceof CancellationException) { return; }
+
+        LOGGER.log(Level.WARNING, header, throwable);
+
+        if (alert == null || ! alert.isShowing()) {
+            alert = new Alert(Alert.AlertType.ERROR);
+        }
+        alert.setTitle(title);
+        alert.setHeaderText(header);
+        alert.setContentText(throwable.getMessage());
+        if (! alert.isShowing()) { alert.show(); }
+    }
+
+    /**
+     * Report the given failure with the default title.
+     *
+     * @see #show(String, String, Throwable)
+     */
+    public static void show(String header, Throwable throwable) {
+        show("Feil", header, throwable);
+    }
+
+    /**
+     * Failure handler for asynchronous data model operations, e.g.
+     * <code>future.exceptionally(ErrorAlert.handler("Reservasjonen kunne ikke lagres."))</code>.
+     *
+     * <p> Database and I/O failures are expected and reported through an alert. Any other failure is a programming
+     * error, and reported through the {@link UnhandledExceptionDialog} which closes the application.
+     *
+     * @param header what failed, in the user's terms.
+     * @return a function returning null.
+     */
+    public static <T> Function<Throwable, T> handler(String header) {
+        return throwable -> {
+            if (isExpected(throwable)) {
+                show(header, throwable);
+            } else {
+                UnhandledExceptionDialog.handle(throwable);
+            }
+            return null;
+        };
+    }
+
+    /**
+     * Return whether the given failure, possibly wrapped by an asynchronous operation, is expected when talking to
+     * the database rather than a programming error.
+     */
+    public static boolean isExpected(Throwable throwable) {
+        if (throwable instanceof CompletionException && throwable.getCause() != null) {
+            throwable = throwable.getCause();
+        }
+        return throwable instanceof SQLException || throwable instanceof UncheckedIOException
+               || throwable instanceof CancellationException;
+    }
+}
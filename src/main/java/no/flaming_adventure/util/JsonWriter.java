@@ -0,0 +1,123 @@
+package no.flaming_adventure.util;
+
+import no.flaming_adventure.model.RowWriter;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writer of exported tables as a JSON array with an object per row, keyed by column name.
+ *
+ * <p> Numbers and booleans are written as such, null values as <code>null</code> and every other value, e.g. dates,
+ * as a string. The array is closed when the writer is closed, so rows can be written as they are read.
+ */
+public class JsonWriter implements RowWriter, Flushable {
+
+    /***************************************************************************
+     *                                                                         *
+     * Instance Variables                                                      *
+     *                                                                         *
+     **************************************************************************/
+
+    private final Writer writer;
+
+    /**
+     * The column names, already quoted and followed by a colon.
+     */
+    private final List<String> keys = new ArrayList<>();
+
+    private boolean firstRow = true;
+
+    /***************************************************************************
+     *                                                                         *
+     * Constructors                                                            *
+     *                                                                         *
+     **************************************************************************/
+
+    /**
+     * @param writer the writer to write to, preferably buffered.
+     */
+    public JsonWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    /***************************************************************************
+     *                                                                         *
+     * Public API                                                              *
+     *                                                                         *
+     **************************************************************************/
+
+    @Override public void writeHeader(List<String> columns) throws IOException {
+        keys.clear();
+        for (String column : columns) {
+            keys.add(quote(column) + ": ");
+        }
+        writer.write('[');
+    }
+
+    @Override public void writeRow(List<?> values) throws IOException {
+        writer.write(firstRow ? "\n  {" : ",\n  {");
+        firstRow = false;
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) { writer.write(", "); }
+            writer.write(keys.get(i));
+            writeValue(values.get(i));
+        }
+        writer.write('}');
+    }
+
+    @Override public void flush() throws IOException {
+        writer.flush();
+    }
+
+    /**
+     * Close the array and the underlying writer.
+     */
+    @Override public void close() throws IOException {
+        try {
+            writer.write(firstRow ? "]\n" : "\n]\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    /***************************************************************************
+     *                                                                         *
+     * Implementation                                                          *
+     *                                                                         *
+     **************************************************************************/
+
+    private void writeValue(Object value) throws IOException {
+        if (value == null) {
+            writer.write("null");
+        } else if (value instanceof Boolean || value instanceof Number) {
+            writer.write(value.toString());
+        } else {
+            writer.write(quote(value.toString()));
+        }
+    }
+
+    private static String quote(String string) {
+        StringBuilder builder = new StringBuilder(string.length() + 2).append('"');
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            switch (c) {
+                case '"':  builder.append("\\\""); break;
+                case '\\': builder.append("\\\\"); break;
+                case '\n': builder.append("\\n"); break;
+                case '\r': builder.append("\\r"); break;
+                case '\t': builder.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        builder.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+            }
+        }
+        return builder.append('"').toString();
+    }
+}
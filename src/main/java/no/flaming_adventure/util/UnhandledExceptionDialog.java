@@ -9,6 +9,8 @@ import javafx.scene.layout.Priority;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -16,6 +18,11 @@ public class UnhandledExceptionDialog {
     private static final Logger LOGGER = Logger.getLogger(UnhandledExceptionDialog.class.getName());
 
     public static void create(Throwable throwable) {
+        // Report the actual failure of asynchronous operations.
+        if (throwable instanceof CompletionException && throwable.getCause() != null) {
+            throwable = throwable.getCause();
+        }
+
         // Create the alert dialog.
         Alert alert = new Alert(Alert.AlertType.ERROR);
         alert.setTitle("Feil!");
@@ -50,4 +57,18 @@ public class UnhandledExceptionDialog {
         alert.showAndWait();
         Platform.exit();
     }
+
+    /**
+     * Failure handler for asynchronous operations, e.g.
+     * <code>future.exceptionally(UnhandledExceptionDialog::handle)</code>.
+     *
+     * <p> Cancelled operations are ignored.
+     *
+     * @return null.
+     */
+    public static <T> T handle(Throwable throwable) {
+        Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+        if (!(cause instanceof CancellationException)) { create(throwable); }
+        return null;
+    }
 }
@@ -0,0 +1,13 @@
+-- Composite indexes for the hut and date filters of the table tabs, the overview and the reservation form.
+-- Each of these also serves the hut_id foreign key, replacing the index created along with it.
+
+CREATE INDEX reservations_hut_id_date ON reservations (hut_id, date);
+CREATE INDEX reservations_date ON reservations (date);
+
+CREATE INDEX equipment_hut_id_purchase_date ON equipment (hut_id, purchase_date);
+
+CREATE INDEX broken_items_hut_id_date ON broken_items (hut_id, date);
+CREATE INDEX broken_items_fixed_hut_id_date ON broken_items (fixed, hut_id, date);
+
+CREATE INDEX forgotten_items_hut_id_date ON forgotten_items (hut_id, date);
+CREATE INDEX forgotten_items_delivered_hut_id_date ON forgotten_items (delivered, hut_id, date);
@@ -0,0 +1,16 @@
+-- The number of guests reserved for each hut and date, maintained by DataModel.insertReservation so that occupancy
+-- lookups don't have to aggregate the reservations table. Can be rebuilt with the rebuild-occupancy admin command.
+
+CREATE TABLE hut_daily_occupancy
+(
+    hut_id INT NOT NULL,
+    date DATE NOT NULL,
+    guests INT DEFAULT 0 NOT NULL,
+    PRIMARY KEY (hut_id, date),
+    FOREIGN KEY (hut_id) REFERENCES huts (id)
+);
+
+INSERT INTO hut_daily_occupancy (hut_id, date, guests)
+    SELECT hut_id, date, SUM(count)
+    FROM reservations
+    GROUP BY hut_id, date;
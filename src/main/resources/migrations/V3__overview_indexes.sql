@@ -0,0 +1,6 @@
+-- Date-leading covering indexes for the overview, which aggregates each table per hut over a date range. The next
+-- reservation of each hut is found by a loose scan of the hut_daily_occupancy primary key.
+
+CREATE INDEX hut_daily_occupancy_date_hut_id ON hut_daily_occupancy (date, hut_id, guests);
+CREATE INDEX broken_items_date_hut_id ON broken_items (date, hut_id);
+CREATE INDEX forgotten_items_date_hut_id ON forgotten_items (date, hut_id);
@@ -0,0 +1,11 @@
+-- A counter per table, incremented by DataModel in the same transaction as every insert or update of the table, so
+-- that clients can tell whether other clients have modified a table by polling this small table.
+
+CREATE TABLE change_counters
+(
+    table_name VARCHAR(32) PRIMARY KEY NOT NULL,
+    version BIGINT DEFAULT 0 NOT NULL
+);
+
+INSERT INTO change_counters (table_name)
+    VALUES ('huts'), ('reservations'), ('forgotten_items'), ('broken_items'), ('equipment');
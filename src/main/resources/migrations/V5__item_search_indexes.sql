@@ -0,0 +1,5 @@
+-- Full-text indexes over the free text of broken and forgotten items, searched by DataModel with MATCH ... AGAINST
+-- so that a search is an index lookup ranked by relevance rather than a scan of every comment.
+
+CREATE FULLTEXT INDEX broken_items_search ON broken_items (item, comment);
+CREATE FULLTEXT INDEX forgotten_items_search ON forgotten_items (item, name, contact, comment);